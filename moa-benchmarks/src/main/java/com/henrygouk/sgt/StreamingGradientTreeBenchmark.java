@@ -0,0 +1,110 @@
+/*
+ *    StreamingGradientTreeBenchmark.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.henrygouk.sgt;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.benchmarks.BenchmarkStreams;
+import moa.classifiers.trees.sgt.AttributeDiscretizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates and split search of a single StreamingGradientTree, in this package to reach the leaves.
+ *
+ * <p>The trees are trained on the squared error derivatives of a zero prediction against the indicator of the first
+ * class. update is measured on a tree that keeps growing, findBestSplit on the root of a tree that never splits, whose
+ * statistics hold the warm up instances.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingGradientTreeBenchmark {
+
+    @Param({"16", "64"})
+    public int bins;
+
+    @Param({"10", "50"})
+    public int attributes;
+
+    protected StreamingGradientTree tree;
+
+    protected StreamingGradientTree leafTree;
+
+    protected int[][] features;
+
+    protected double[] gradients;
+
+    protected int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Instance[] instances = BenchmarkStreams.take("generators.RandomRBFGenerator -r 1 -i 1 -a " + attributes,
+                BenchmarkStreams.WARM_UP + BenchmarkStreams.INSTANCES);
+        AttributeDiscretizer discretizer = new AttributeDiscretizer(bins);
+        for (int i = 0; i < BenchmarkStreams.WARM_UP; i++) {
+            discretizer.observe(instances[i]);
+        }
+        features = new int[instances.length][];
+        gradients = new double[instances.length];
+        for (int i = 0; i < instances.length; i++) {
+            features[i] = discretizer.getFeatures(instances[i]);
+            gradients[i] = instances[i].classValue() == 0 ? -1.0 : 0.0;
+        }
+
+        StreamingGradientTreeOptions options = new StreamingGradientTreeOptions();
+        tree = new StreamingGradientTree(discretizer.getFeatureInfo(), options);
+        StreamingGradientTreeOptions leafOptions = new StreamingGradientTreeOptions();
+        leafOptions.gracePeriod = Integer.MAX_VALUE;
+        leafTree = new StreamingGradientTree(discretizer.getFeatureInfo(), leafOptions);
+        for (int i = 0; i < BenchmarkStreams.WARM_UP; i++) {
+            tree.update(features[i], gradients[i], 1.0, 1.0);
+            leafTree.update(features[i], gradients[i], 1.0, 1.0);
+        }
+        next = BenchmarkStreams.WARM_UP;
+    }
+
+    @Benchmark
+    public void update() {
+        if (next == features.length) {
+            next = BenchmarkStreams.WARM_UP;
+        }
+        tree.update(features[next], gradients[next], 1.0, 1.0);
+        next++;
+    }
+
+    @Benchmark
+    public Object findBestSplit() {
+        return leafTree.mRoot.findBestSplit();
+    }
+}
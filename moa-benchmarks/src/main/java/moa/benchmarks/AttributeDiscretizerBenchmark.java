@@ -0,0 +1,79 @@
+/*
+ *    AttributeDiscretizerBenchmark.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.sgt.AttributeDiscretizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binning of the attributes of an instance by the discretizer of StreamingGradientTreePredictor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeDiscretizerBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int bins;
+
+    /** Number of numeric attributes, there are 5 nominal ones as well. */
+    @Param({"10", "100"})
+    public int numerics;
+
+    protected AttributeDiscretizer discretizer;
+
+    protected Instance[] instances;
+
+    protected int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instances = BenchmarkStreams.take("generators.RandomTreeGenerator -r 1 -i 1 -o 5 -u " + numerics,
+                BenchmarkStreams.INSTANCES);
+        discretizer = new AttributeDiscretizer(bins);
+        for (Instance inst : instances) {
+            discretizer.observe(inst);
+        }
+    }
+
+    @Benchmark
+    public int[] getFeatures() {
+        if (next == instances.length) {
+            next = 0;
+        }
+        return discretizer.getFeatures(instances[next++]);
+    }
+}
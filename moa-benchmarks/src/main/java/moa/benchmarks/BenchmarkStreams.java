@@ -0,0 +1,73 @@
+/*
+ *    BenchmarkStreams.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.InstanceStream;
+
+/**
+ * Seeded streams from moa.streams.generators, materialized up front so that the benchmarks do not time the
+ * generators.
+ */
+public class BenchmarkStreams {
+
+    /** Number of instances the learners are trained on before they are measured. */
+    public static final int WARM_UP = 5000;
+
+    /** Number of instances cycled through while measuring. */
+    public static final int INSTANCES = 10000;
+
+    /**
+     * Prepared stream for the command line of a generator, e.g. "generators.RandomTreeGenerator -i 1".
+     */
+    public static InstanceStream createStream(String cliString) {
+        try {
+            InstanceStream stream = (InstanceStream) ClassOption.cliStringToObject(cliString, InstanceStream.class, null);
+            ((OptionHandler) stream).prepareForUse();
+            return stream;
+        } catch (Exception e) {
+            throw new RuntimeException("Could not create stream " + cliString, e);
+        }
+    }
+
+    /**
+     * The first n instances of stream.
+     */
+    public static Instance[] take(InstanceStream stream, int n) {
+        Instance[] instances = new Instance[n];
+        for (int i = 0; i < n; i++) {
+            instances[i] = stream.nextInstance().getData();
+        }
+        return instances;
+    }
+
+    /**
+     * Header and the first n instances of the stream for cliString.
+     */
+    public static Instance[] take(String cliString, int n) {
+        return take(createStream(cliString), n);
+    }
+
+    public static InstancesHeader getHeader(Instance[] instances) {
+        return new InstancesHeader(instances[0].dataset());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *    BoostingBenchmark.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.meta.Boosting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training and prediction of Boosting with StreamingGradientTreePredictor stages, across stage counts, class counts
+ * and execution modes.
+ *
+ * <p>The model is trained on the warm up instances of the stream before it is measured, and keeps learning while
+ * trainOnInstance is measured. With pipelinedTraining the time is the one of handing the instance to the pipeline,
+ * which is bounded by the slowest worker once its queue is full.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoostingBenchmark {
+
+    @Param({"10", "50", "100"})
+    public int stages;
+
+    @Param({"2", "5", "10"})
+    public int classes;
+
+    /** Options of Boosting that choose how the stages are run. */
+    @Param({"-j 0", "-j -1", "-j -1 -P", "-j 0 -A"})
+    public String mode;
+
+    protected Boosting boosting;
+
+    protected Instance[] instances;
+
+    protected int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instances = BenchmarkStreams.take("generators.RandomTreeGenerator -r 1 -i 1 -c " + classes + " -o 5 -u 5",
+                BenchmarkStreams.WARM_UP + BenchmarkStreams.INSTANCES);
+        boosting = new Boosting();
+        boosting.getOptions().setViaCLIString("-N -s " + stages + " -m 75 " + mode
+                + " -l (trees.StreamingGradientTreePredictor -W 200 -G 50)");
+        boosting.prepareForUse();
+        boosting.setModelContext(BenchmarkStreams.getHeader(instances));
+        for (int i = 0; i < BenchmarkStreams.WARM_UP; i++) {
+            boosting.trainOnInstance(instances[i]);
+        }
+        next = BenchmarkStreams.WARM_UP;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // shuts down the executor and the pipeline
+        boosting.resetLearning();
+    }
+
+    protected Instance nextInstance() {
+        if (next == instances.length) {
+            next = BenchmarkStreams.WARM_UP;
+        }
+        return instances[next++];
+    }
+
+    @Benchmark
+    public void trainOnInstance() {
+        boosting.trainOnInstance(nextInstance());
+    }
+
+    @Benchmark
+    public double[] getVotesForInstance() {
+        return boosting.getVotesForInstance(nextInstance());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *    FIMTDDBenchmark.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.trees.FIMTDD;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training of FIMTDD with the options Boosting uses for its stages.
+ *
+ * <p>The generators only produce nominal classes, so the instances are relabelled with a numeric target, the index
+ * of their class, like the pseudo labels the stages of Boosting are trained on.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FIMTDDBenchmark {
+
+    @Param({"10", "50"})
+    public int attributes;
+
+    /** FIMTDD options, the first one is the base learner of the regression stages of Boosting. */
+    @Param({"-s VarianceReductionSplitCriterion -g 25 -c 0.05 -e -p", "-s VarianceReductionSplitCriterion -g 200 -c 0.05"})
+    public String options;
+
+    protected FIMTDD tree;
+
+    protected Instance[] instances;
+
+    protected int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Instance[] source = BenchmarkStreams.take("generators.RandomRBFGenerator -r 1 -i 1 -c 5 -a " + attributes,
+                BenchmarkStreams.WARM_UP + BenchmarkStreams.INSTANCES);
+        ArrayList<Attribute> targetAttributes = new ArrayList<>();
+        for (int i = 0; i < attributes; i++) {
+            targetAttributes.add(new Attribute("att" + (i + 1)));
+        }
+        targetAttributes.add(new Attribute("target"));
+        InstancesHeader header = new InstancesHeader(new Instances("regression", targetAttributes, 0));
+        header.setClassIndex(attributes);
+
+        instances = new Instance[source.length];
+        for (int i = 0; i < source.length; i++) {
+            double[] values = new double[attributes + 1];
+            for (int j = 0; j < attributes; j++) {
+                values[j] = source[i].valueInputAttribute(j);
+            }
+            values[attributes] = source[i].classValue();
+            instances[i] = new DenseInstance(1.0, values);
+            instances[i].setDataset(header);
+        }
+
+        tree = new FIMTDD();
+        tree.getOptions().setViaCLIString(options);
+        tree.prepareForUse();
+        tree.setModelContext(header);
+        for (int i = 0; i < BenchmarkStreams.WARM_UP; i++) {
+            tree.trainOnInstanceImpl(instances[i]);
+        }
+        next = BenchmarkStreams.WARM_UP;
+    }
+
+    @Benchmark
+    public void trainOnInstanceImpl() {
+        if (next == instances.length) {
+            next = BenchmarkStreams.WARM_UP;
+        }
+        tree.trainOnInstanceImpl(instances[next++]);
+    }
+}
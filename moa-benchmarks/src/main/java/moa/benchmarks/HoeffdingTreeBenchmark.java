@@ -0,0 +1,81 @@
+/*
+ *    HoeffdingTreeBenchmark.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.HoeffdingTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training of HoeffdingTree with each numeric attribute observer, on a stream with nominal and numeric attributes.
+ * The nominal attributes are observed by NominalAttributeClassObserver, the only nominal observer for classification.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HoeffdingTreeBenchmark {
+
+    @Param({"GaussianNumericAttributeClassObserver", "BinaryTreeNumericAttributeClassObserver",
+            "VFMLNumericAttributeClassObserver", "GreenwaldKhannaNumericAttributeClassObserver"})
+    public String numericEstimator;
+
+    protected HoeffdingTree tree;
+
+    protected Instance[] instances;
+
+    protected int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instances = BenchmarkStreams.take("generators.RandomTreeGenerator -r 1 -i 1 -o 5 -u 10",
+                BenchmarkStreams.WARM_UP + BenchmarkStreams.INSTANCES);
+        tree = new HoeffdingTree();
+        tree.getOptions().setViaCLIString("-n " + numericEstimator);
+        tree.prepareForUse();
+        tree.setModelContext(BenchmarkStreams.getHeader(instances));
+        for (int i = 0; i < BenchmarkStreams.WARM_UP; i++) {
+            tree.trainOnInstanceImpl(instances[i]);
+        }
+        next = BenchmarkStreams.WARM_UP;
+    }
+
+    @Benchmark
+    public void trainOnInstanceImpl() {
+        if (next == instances.length) {
+            next = BenchmarkStreams.WARM_UP;
+        }
+        tree.trainOnInstanceImpl(instances[next++]);
+    }
+}
@@ -7,22 +7,22 @@ public class BinaryCrossEntropy extends Objective implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Override
-    public GradHess[] computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions) {
-        GradHess[] result = new GradHess[raw.length];
-        double[] predictions = transfer(raw);
-
-        for(int i = 0; i < result.length; i++) {
-            result[i] = new GradHess(predictions[i] - groundTruth[i], predictions[i] * (1.0 - predictions[i]));
+    public void computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions, double[] gradients, double[] hessians) {
+        for(int i = 0; i < raw.length; i++) {
+            double prediction = 1.0 / (1.0 + Math.exp(-raw[i]));
+            gradients[i] = prediction - groundTruth[i];
+            hessians[i] = prediction * (1.0 - prediction);
         }
-
-        return result;
     }
     
     @Override
     public double[] transfer(double[] raw) {
-        double[] result = new double[raw.length];
+        return transfer(raw, new double[raw.length]);
+    }
 
-        for(int i = 0; i < result.length; i++) {
+    @Override
+    public double[] transfer(double[] raw, double[] result) {
+        for(int i = 0; i < raw.length; i++) {
             result[i] = 1.0 / (1.0 + Math.exp(-raw[i]));
         }
 
@@ -6,4 +6,6 @@ public class FeatureInfo implements Serializable {
     private static final long serialVersionUID = 1L;
     public FeatureType type;
     public int categories;
+    /** Category of the feature when a sparse FeatureVector does not hold it, i.e. the category of the value zero. */
+    public int defaultCategory;
 }
\ No newline at end of file
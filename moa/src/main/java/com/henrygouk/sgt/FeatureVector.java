@@ -0,0 +1,30 @@
+package com.henrygouk.sgt;
+
+import java.io.Serializable;
+
+/**
+ * The binned features of one instance, dense or sparse. A sparse vector only holds the features whose value is not
+ * zero, the others are in the defaultCategory of their FeatureInfo.
+ */
+public class FeatureVector implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Features held by the vector in increasing order, null when the vector holds every feature. */
+    public int[] indices;
+
+    /** Category of each feature held by the vector, -1 for missing values. */
+    public int[] bins;
+
+    public FeatureVector(int[] bins) {
+        this(null, bins);
+    }
+
+    public FeatureVector(int[] indices, int[] bins) {
+        this.indices = indices;
+        this.bins = bins;
+    }
+
+    public boolean isSparse() {
+        return indices != null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.henrygouk.sgt;
+
+import java.io.Serializable;
+
+/**
+ * Read-only array encoding of a StreamingGradientTree. Node 0 is the root and the children of a split node are
+ * stored next to each other, starting at firstChild.
+ */
+public class FlatTree implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Feature tested by each node, -1 for leaves. */
+    public int[] feature;
+
+    /** Last category of the left child of ordinal splits, -1 for nominal splits and leaves. */
+    public int[] index;
+
+    /** Position of the first child of each node, -1 for leaves. */
+    public int[] firstChild;
+
+    /** Prediction of each leaf. */
+    public double[] prediction;
+
+    public FlatTree(int numNodes) {
+        feature = new int[numNodes];
+        index = new int[numNodes];
+        firstChild = new int[numNodes];
+        prediction = new double[numNodes];
+    }
+
+    public int size() {
+        return feature.length;
+    }
+}
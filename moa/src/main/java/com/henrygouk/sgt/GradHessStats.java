@@ -52,15 +52,22 @@ public class GradHessStats implements Serializable {
     }
 
     public void addObservation(GradHess gradHess, Double weight) {
-        GradHess oldMean = getMean();
-        mSum.add(gradHess, weight.doubleValue());// multiply by weight
-        mObservations += weight.doubleValue(); // multiply by weight
-        GradHess newMean = getMean();
+        addObservation(gradHess.gradient, gradHess.hessian, weight.doubleValue());
+    }
+
+    public void addObservation(double gradient, double hessian, double weight) {
+        double oldMeanGradient = mObservations == 0 ? 0.0 : mSum.gradient / mObservations;
+        double oldMeanHessian = mObservations == 0 ? 0.0 : mSum.hessian / mObservations;
+        mSum.gradient += gradient * weight;// multiply by weight
+        mSum.hessian += hessian * weight;
+        mObservations += weight; // multiply by weight
+        double newMeanGradient = mObservations == 0 ? 0.0 : mSum.gradient / mObservations;
+        double newMeanHessian = mObservations == 0 ? 0.0 : mSum.hessian / mObservations;
 
-        mScaledVariance.gradient += (gradHess.gradient - oldMean.gradient) * (gradHess.gradient - newMean.gradient);
-        mScaledVariance.hessian += (gradHess.hessian - oldMean.hessian) * (gradHess.hessian - newMean.hessian);
+        mScaledVariance.gradient += (gradient - oldMeanGradient) * (gradient - newMeanGradient);
+        mScaledVariance.hessian += (hessian - oldMeanHessian) * (hessian - newMeanHessian);
 
-        mScaledCovariance += (gradHess.gradient - oldMean.gradient) * (gradHess.hessian - newMean.hessian);
+        mScaledCovariance += (gradient - oldMeanGradient) * (hessian - newMeanHessian);
     }
 
     public GradHess getMean() {
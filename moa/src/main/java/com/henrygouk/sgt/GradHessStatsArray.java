@@ -0,0 +1,243 @@
+package com.henrygouk.sgt;
+
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.ObjectSizes;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The statistics of GradHessStats for a fixed number of slots, stored as one primitive array per statistic.
+ */
+public class GradHessStatsArray implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected double[] mSumGradients;
+
+    protected double[] mSumHessians;
+
+    protected double[] mScaledVarianceGradients;
+
+    protected double[] mScaledVarianceHessians;
+
+    protected double[] mScaledCovariances;
+
+    protected int[] mObservations;
+
+    public GradHessStatsArray(int slots) {
+        mSumGradients = new double[slots];
+        mSumHessians = new double[slots];
+        mScaledVarianceGradients = new double[slots];
+        mScaledVarianceHessians = new double[slots];
+        mScaledCovariances = new double[slots];
+        mObservations = new int[slots];
+    }
+
+    public int size() {
+        return mObservations.length;
+    }
+
+    public long calcByteSize() {
+        return ObjectSizes.sizeOf(this) + ObjectSizes.sizeOf(mSumGradients) + ObjectSizes.sizeOf(mSumHessians)
+                + ObjectSizes.sizeOf(mScaledVarianceGradients) + ObjectSizes.sizeOf(mScaledVarianceHessians)
+                + ObjectSizes.sizeOf(mScaledCovariances) + ObjectSizes.sizeOf(mObservations);
+    }
+
+    /**
+     * Writes the statistics of the slots that have any, most slots of a young leaf are still empty. The reader has to
+     * know the number of slots.
+     */
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        int[] used = new int[size()];
+        int n = 0;
+
+        for(int slot = 0; slot < size(); slot++) {
+            if(mObservations[slot] != 0 || mSumGradients[slot] != 0.0 || mSumHessians[slot] != 0.0
+                    || mScaledVarianceGradients[slot] != 0.0 || mScaledVarianceHessians[slot] != 0.0
+                    || mScaledCovariances[slot] != 0.0) {
+                used[n++] = slot;
+            }
+        }
+
+        out.writeInt(n);
+        out.writeInts(used, 0, n);
+        double[] values = new double[n];
+        for(double[] statistic : new double[][] {mSumGradients, mSumHessians, mScaledVarianceGradients,
+                mScaledVarianceHessians, mScaledCovariances}) {
+            for(int k = 0; k < n; k++) {
+                values[k] = statistic[used[k]];
+            }
+            out.writeDoubles(values, 0, n);
+        }
+        int[] observations = new int[n];
+        for(int k = 0; k < n; k++) {
+            observations[k] = mObservations[used[k]];
+        }
+        out.writeInts(observations, 0, n);
+    }
+
+    /**
+     * Replaces the statistics with those written by writeCheckpoint from an array of the same size.
+     */
+    public void readCheckpoint(CheckpointInput in) throws IOException {
+        clear();
+        int n = in.readInt();
+        int[] used = new int[n];
+        in.readInts(used, 0, n);
+        double[] values = new double[n];
+        for(double[] statistic : new double[][] {mSumGradients, mSumHessians, mScaledVarianceGradients,
+                mScaledVarianceHessians, mScaledCovariances}) {
+            in.readDoubles(values, 0, n);
+            for(int k = 0; k < n; k++) {
+                statistic[used[k]] = values[k];
+            }
+        }
+        int[] observations = new int[n];
+        in.readInts(observations, 0, n);
+        for(int k = 0; k < n; k++) {
+            mObservations[used[k]] = observations[k];
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mSumGradients, 0.0);
+        Arrays.fill(mSumHessians, 0.0);
+        Arrays.fill(mScaledVarianceGradients, 0.0);
+        Arrays.fill(mScaledVarianceHessians, 0.0);
+        Arrays.fill(mScaledCovariances, 0.0);
+        Arrays.fill(mObservations, 0);
+    }
+
+    public void clear(int slot) {
+        mSumGradients[slot] = 0.0;
+        mSumHessians[slot] = 0.0;
+        mScaledVarianceGradients[slot] = 0.0;
+        mScaledVarianceHessians[slot] = 0.0;
+        mScaledCovariances[slot] = 0.0;
+        mObservations[slot] = 0;
+    }
+
+    public void copy(int slot, GradHessStatsArray stats, int statsSlot) {
+        mSumGradients[slot] = stats.mSumGradients[statsSlot];
+        mSumHessians[slot] = stats.mSumHessians[statsSlot];
+        mScaledVarianceGradients[slot] = stats.mScaledVarianceGradients[statsSlot];
+        mScaledVarianceHessians[slot] = stats.mScaledVarianceHessians[statsSlot];
+        mScaledCovariances[slot] = stats.mScaledCovariances[statsSlot];
+        mObservations[slot] = stats.mObservations[statsSlot];
+    }
+
+    /**
+     * Merges statsSlot of stats into slot, see GradHessStats.add.
+     */
+    public void add(int slot, GradHessStatsArray stats, int statsSlot) {
+        if(stats.mObservations[statsSlot] == 0) {
+            return;
+        }
+
+        if(mObservations[slot] == 0) {
+            copy(slot, stats, statsSlot);
+            return;
+        }
+
+        int n1 = mObservations[slot];
+        int n2 = stats.mObservations[statsSlot];
+        double meanDiffGradient = stats.mSumGradients[statsSlot] / n2 - mSumGradients[slot] / n1;
+        double meanDiffHessian = stats.mSumHessians[statsSlot] / n2 - mSumHessians[slot] / n1;
+
+        // Do scaled variance bit (see Wikipedia page on "Algorithms for calculating variance", section about parallel calculation)
+        mScaledVarianceGradients[slot] += stats.mScaledVarianceGradients[statsSlot] + Math.pow(meanDiffGradient, 2.0) * (n1 * n2) / (n1 + n2);
+        mScaledVarianceHessians[slot] += stats.mScaledVarianceHessians[statsSlot] + Math.pow(meanDiffHessian, 2.0) * (n1 * n2) / (n1 + n2);
+
+        // Do scaled covariance bit (see "Numerically Stable, Single-Pass, Parallel Statistics Algorithms" (Bennett et al, 2009))
+        mScaledCovariances[slot] += stats.mScaledCovariances[statsSlot] + meanDiffGradient * meanDiffHessian * (n1 * n2) / (n1 + n2);
+
+        // Do the other bits
+        mSumGradients[slot] += stats.mSumGradients[statsSlot];
+        mSumHessians[slot] += stats.mSumHessians[statsSlot];
+        mObservations[slot] += n2;
+    }
+
+    /**
+     * Sets slot to the stats of the observations in totalSlot of total that are not in partSlot of part,
+     * i.e. the inverse of add.
+     */
+    public void difference(int slot, GradHessStatsArray total, int totalSlot, GradHessStatsArray part, int partSlot) {
+        int n = total.mObservations[totalSlot];
+        int n1 = part.mObservations[partSlot];
+        int n2 = n - n1;
+
+        if(n1 == 0) {
+            copy(slot, total, totalSlot);
+            return;
+        }
+
+        if(n2 <= 0) {
+            clear(slot);
+            return;
+        }
+
+        double sumGradient = total.mSumGradients[totalSlot] - part.mSumGradients[partSlot];
+        double sumHessian = total.mSumHessians[totalSlot] - part.mSumHessians[partSlot];
+        double meanDiffGradient = sumGradient / n2 - part.mSumGradients[partSlot] / n1;
+        double meanDiffHessian = sumHessian / n2 - part.mSumHessians[partSlot] / n1;
+        double scale = (double) n1 * n2 / n;
+
+        mScaledVarianceGradients[slot] = Math.max(0.0, total.mScaledVarianceGradients[totalSlot] - part.mScaledVarianceGradients[partSlot] - meanDiffGradient * meanDiffGradient * scale);
+        mScaledVarianceHessians[slot] = Math.max(0.0, total.mScaledVarianceHessians[totalSlot] - part.mScaledVarianceHessians[partSlot] - meanDiffHessian * meanDiffHessian * scale);
+        mScaledCovariances[slot] = total.mScaledCovariances[totalSlot] - part.mScaledCovariances[partSlot] - meanDiffGradient * meanDiffHessian * scale;
+        mSumGradients[slot] = sumGradient;
+        mSumHessians[slot] = sumHessian;
+        mObservations[slot] = n2;
+    }
+
+    public void addObservation(int slot, double gradient, double hessian, double weight) {
+        int n = mObservations[slot];
+        double oldMeanGradient = n == 0 ? 0.0 : mSumGradients[slot] / n;
+        double oldMeanHessian = n == 0 ? 0.0 : mSumHessians[slot] / n;
+        mSumGradients[slot] += gradient * weight;// multiply by weight
+        mSumHessians[slot] += hessian * weight;
+        mObservations[slot] += weight; // multiply by weight
+        n = mObservations[slot];
+        double newMeanGradient = n == 0 ? 0.0 : mSumGradients[slot] / n;
+        double newMeanHessian = n == 0 ? 0.0 : mSumHessians[slot] / n;
+
+        mScaledVarianceGradients[slot] += (gradient - oldMeanGradient) * (gradient - newMeanGradient);
+        mScaledVarianceHessians[slot] += (hessian - oldMeanHessian) * (hessian - newMeanHessian);
+
+        mScaledCovariances[slot] += (gradient - oldMeanGradient) * (hessian - newMeanHessian);
+    }
+
+    public double getMeanGradient(int slot) {
+        return mObservations[slot] == 0 ? 0.0 : mSumGradients[slot] / mObservations[slot];
+    }
+
+    public double getMeanHessian(int slot) {
+        return mObservations[slot] == 0 ? 0.0 : mSumHessians[slot] / mObservations[slot];
+    }
+
+    public int getObservationCount(int slot) {
+        return mObservations[slot];
+    }
+
+    public double getDeltaLossMean(int slot, double deltaPrediction) {
+        return deltaPrediction * getMeanGradient(slot) + 0.5 * getMeanHessian(slot) * Math.pow(deltaPrediction, 2.0);
+    }
+
+    /*
+        Ignores the correlations between deltaPrediction and the gradients/hessians, see GradHessStats.getDeltaLossVariance.
+    */
+    public double getDeltaLossVariance(int slot, double deltaPrediction) {
+        int n = mObservations[slot];
+        double varianceGradient = n < 2 ? Double.POSITIVE_INFINITY : mScaledVarianceGradients[slot] / (n - 1);
+        double varianceHessian = n < 2 ? Double.POSITIVE_INFINITY : mScaledVarianceHessians[slot] / (n - 1);
+        double covariance = n < 2 ? Double.POSITIVE_INFINITY : mScaledCovariances[slot] / (n - 1);
+
+        double gradTermVariance = Math.pow(deltaPrediction, 2.0) * varianceGradient;
+        double hessTermVariance = 0.25 * varianceHessian * Math.pow(deltaPrediction, 4.0);
+
+        return Math.max(0.0, gradTermVariance + hessTermVariance + Math.pow(deltaPrediction, 3.0) * covariance);
+    }
+}
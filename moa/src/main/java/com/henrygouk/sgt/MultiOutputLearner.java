@@ -10,13 +10,36 @@ public interface MultiOutputLearner {
 
     public int getNumSplits();
 
+    /** Number of times a leaf was evaluated for a split, summed over all trees. */
+    public int getNumSplitAttempts();
+
+    public int getNumLeaves();
+
     public int getMaxDepth();
 
     public int getNumTrees();
 
+    /** Nanoseconds spent searching for splits, summed over all trees. */
+    public long getSplitEvaluationTime();
+
+    /** Running estimate of the bytes held by the nodes of all trees. */
+    public long getByteSize();
+
     public void randomlyInitialize(Random rng, double predBound);
 
     public void update(int[] features, GradHess[] gradHess, Double[] weights);
 
+    public void update(int[] features, double[] gradients, double[] hessians, double weight);
+
+    /** Trains on a mini-batch, gradients[b] and hessians[b] hold the derivatives of instance b for every output. */
+    public void update(int[][] features, double[][] gradients, double[][] hessians, double[] weights);
+
     public double[] predict(int[] features);
+
+    /** Trains on a dense or sparse feature vector, see StreamingGradientTree.update(FeatureVector, ...). */
+    public void update(FeatureVector features, double[] gradients, double[] hessians, double weight);
+
+    public void update(FeatureVector[] features, double[][] gradients, double[][] hessians, double[] weights);
+
+    public double[] predict(FeatureVector features);
 }
\ No newline at end of file
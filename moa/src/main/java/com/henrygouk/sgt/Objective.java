@@ -3,12 +3,89 @@ package com.henrygouk.sgt;
 public abstract class Objective {
 //    double[] predictions;
     public double lossForAllClasses = 0.0;
-    public abstract GradHess[] computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions);
+
+    /**
+     * Writes the gradient and hessian of each output into the caller supplied gradients and hessians arrays,
+     * which must be at least as long as raw.
+     */
+    public abstract void computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions, double[] gradients, double[] hessians);
+
+    public GradHess[] computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions) {
+        double[] gradients = new double[raw.length];
+        double[] hessians = new double[raw.length];
+        computeDerivatives(groundTruth, raw, computeNegativeResidual, clipPredictions, gradients, hessians);
+
+        GradHess[] result = new GradHess[raw.length];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = new GradHess(gradients[i], hessians[i]);
+        }
+
+        return result;
+    }
 
     public double[] transfer(double[] raw) {
         return raw;
     }
 
+    /**
+     * Writes the transferred raw scores into result and returns it.
+     */
+    public double[] transfer(double[] raw, double[] result) {
+        System.arraycopy(raw, 0, result, 0, raw.length);
+        return result;
+    }
+
+    /**
+     * Softmax over raw with an implicit last output fixed at zero, written into result (raw.length + 1 entries).
+     */
+    protected static double[] softmax(double[] raw, double[] result) {
+        for(int i = 0; i < raw.length; i++) {
+            result[i] = raw[i];
+        }
+        result[raw.length] = 0.0;
+
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0.0;
+
+        for(int i = 0; i <= raw.length; i++) {
+            max = Math.max(max, result[i]);
+        }
+
+        for(int i = 0; i <= raw.length; i++) {
+            result[i] = Math.exp(result[i] - max);
+            sum += result[i];
+        }
+
+        for(int i = 0; i <= raw.length; i++) {
+            result[i] /= sum;
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the softmax probabilities of the first raw.length outputs into probabilities, without
+     * needing room for the implicit last output.
+     */
+    protected static void softmaxWithoutLast(double[] raw, double[] probabilities) {
+        double max = 0.0; // the implicit last output
+        double sum = 0.0;
+
+        for(int i = 0; i < raw.length; i++) {
+            max = Math.max(max, raw[i]);
+        }
+
+        for(int i = 0; i < raw.length; i++) {
+            probabilities[i] = Math.exp(raw[i] - max);
+            sum += probabilities[i];
+        }
+        sum += Math.exp(-max);
+
+        for(int i = 0; i < raw.length; i++) {
+            probabilities[i] /= sum;
+        }
+    }
+
 //    public double loss (double[] groundTruth) {return 0.0;}
 //    public double loss (double[] groundTruth, double[] preds) {return 0.0;}
-}
\ No newline at end of file
+}
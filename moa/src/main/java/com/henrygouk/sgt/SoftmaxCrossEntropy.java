@@ -7,52 +7,35 @@ public class SoftmaxCrossEntropy extends Objective implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Override
-    public GradHess[] computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions) {
-        GradHess[] result = new GradHess[raw.length];
+    public void computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions, double[] gradients, double[] hessians) {
         super.lossForAllClasses = 0.0;
-        double[] predictions = transfer(raw);
+        // the hessians buffer holds the predictions until they are consumed below
+        softmaxWithoutLast(raw, hessians);
 
-        for(int i = 0; i < result.length; i++) {
+        for(int i = 0; i < raw.length; i++) {
+            double prediction = hessians[i];
             if (clipPredictions){
-                predictions[i] = Math.max(predictions[i] , 0.0001);
-                predictions[i] = Math.min(predictions[i] , 0.9999);
+                prediction = Math.max(prediction , 0.0001);
+                prediction = Math.min(prediction , 0.9999);
             }
             if (computeNegativeResidual){
-                result[i] = new GradHess(predictions[i] - groundTruth[i], predictions[i] * (1.0 - predictions[i]));
+                gradients[i] = prediction - groundTruth[i];
             }else{
-                result[i] = new GradHess(groundTruth[i] - predictions[i], predictions[i] * (1.0 - predictions[i]));
+                gradients[i] = groundTruth[i] - prediction;
             }
-            super.lossForAllClasses +=  -groundTruth[i] * Math.log(predictions[i]);
+            hessians[i] = prediction * (1.0 - prediction);
+            super.lossForAllClasses +=  -groundTruth[i] * Math.log(prediction);
         }
-
-        return result;
     }
     
     @Override
     public double[] transfer(double[] raw) {
-        double[] result = new double[raw.length + 1];
-
-        for(int i = 0; i < raw.length; i++) {
-            result[i] = raw[i];
-        }
-
-        double max = Double.NEGATIVE_INFINITY;
-        double sum = 0.0;
-
-        for(int i = 0; i < result.length; i++) {
-            max = Math.max(max, result[i]);
-        }
-
-        for(int i = 0; i < result.length; i++) {
-            result[i] = Math.exp(result[i] - max);
-            sum += result[i];
-        }
-
-        for(int i = 0; i < result.length; i++) {
-            result[i] /= sum;
-        }
+        return transfer(raw, new double[raw.length + 1]);
+    }
 
-        return result;
+    @Override
+    public double[] transfer(double[] raw, double[] result) {
+        return softmax(raw, result);
     }
 
 //    @Override
@@ -1,58 +1,60 @@
 package com.henrygouk.sgt;
 
 import java.io.Serializable;
-import java.util.stream.IntStream;
 
 public class SquaredError extends Objective implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-    @Override
-    public double[] transfer(double[] raw) {
-        double[] result = new double[raw.length + 1];
-//        double[] result = new double[raw.length];
+    /** Fit the raw scores to numeric targets, instead of their softmax to one-hot encoded classes. */
+    protected boolean mRegression;
 
-        for(int i = 0; i < raw.length; i++) {
-            result[i] = raw[i];
-        }
-
-        double max = Double.NEGATIVE_INFINITY;
-        double sum = 0.0;
+    public SquaredError() {
+        this(false);
+    }
 
-        for(int i = 0; i < result.length; i++) {
-            max = Math.max(max, result[i]);
-        }
+    public SquaredError(boolean regression) {
+        mRegression = regression;
+    }
 
-        for(int i = 0; i < result.length; i++) {
-            result[i] = Math.exp(result[i] - max);
-            sum += result[i];
-        }
+    public boolean isRegression() {
+        return mRegression;
+    }
 
-        for(int i = 0; i < result.length; i++) {
-            result[i] /= sum;
-        }
+    @Override
+    public double[] transfer(double[] raw) {
+        return mRegression ? raw : transfer(raw, new double[raw.length + 1]);
+    }
 
-        return result;
+    @Override
+    public double[] transfer(double[] raw, double[] result) {
+        return mRegression ? super.transfer(raw, result) : softmax(raw, result);
     }
 
     @Override
-	public GradHess[] computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions) {
-        GradHess[] result = new GradHess[raw.length];
-        double[] transfered = null;
-        if (computeNegativeResidual) {
-        }else{
-            transfered = transfer(raw);
+	public void computeDerivatives(double[] groundTruth, double[] raw, boolean computeNegativeResidual, boolean clipPredictions, double[] gradients, double[] hessians) {
+        if (mRegression) {
+            super.lossForAllClasses = 0.0;
+            for(int i = 0; i < raw.length; i++) {
+                double residual = groundTruth[i] - raw[i];
+                gradients[i] = computeNegativeResidual ? -residual : residual;
+                hessians[i] = 1.0;
+                super.lossForAllClasses += 0.5 * residual * residual;
+            }
         }
-
-        for(int i = 0; i < result.length; i++) {
-            if (computeNegativeResidual) {
-                result[i] = new GradHess(raw[i] - groundTruth[i], 1.0);
-            }else {
-                result[i] = new GradHess(groundTruth[i] - transfered[i], 1.0);
+        else if (computeNegativeResidual) {
+            for(int i = 0; i < raw.length; i++) {
+                gradients[i] = raw[i] - groundTruth[i];
+                hessians[i] = 1.0;
+            }
+        }else{
+            // the gradients buffer holds the transferred scores until they are consumed below
+            softmaxWithoutLast(raw, gradients);
+            for(int i = 0; i < raw.length; i++) {
+                gradients[i] = groundTruth[i] - gradients[i];
+                hessians[i] = 1.0;
             }
         }
-
-        return result;
 	}
 
 //    @Override
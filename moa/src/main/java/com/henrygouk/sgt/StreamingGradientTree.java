@@ -1,6 +1,15 @@
 package com.henrygouk.sgt;
 
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.ObjectSizes;
+
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 public class StreamingGradientTree implements Serializable {
@@ -19,11 +28,49 @@ public class StreamingGradientTree implements Serializable {
 
     protected int mNumSplits;
 
+    /** Number of times a leaf was evaluated for a split, whether or not it was applied. */
+    protected int mNumSplitAttempts;
+
     protected int mMaxDepth;
+
+    /** First split stats slot of each feature, the slots of a feature are indexed by its category. */
+    protected int[] mSplitStatsOffsets;
+
+    /** Slot holding the stats of all the observations of a node, after the slots of the features. */
+    protected int mUpdateStatsSlot;
+
+    /** Scratch space for the prefix sums of the ordinal split search, see the SWEEP_ slots. */
+    protected transient GradHessStatsArray mSplitSweepStats;
+
+    protected static final int SWEEP_TOTAL = 0;
+
+    protected static final int SWEEP_LEFT = 1;
+
+    protected static final int SWEEP_RIGHT = 2;
+
+    /** Whether the tree has been trained on sparse feature vectors, whose default categories are not counted. */
+    protected boolean mSparse;
+
+    /** Scratch space holding the counted stats of the default category of each feature while a split is searched. */
+    protected transient GradHessStatsArray mDefaultCategoryStats;
+
+    /** Nanoseconds spent in findBestSplit. */
+    protected long mSplitEvaluationTime;
+
+    /** Running estimate of the bytes held by the nodes, updated when nodes are created or split. */
+    protected long mByteSize;
     
     public StreamingGradientTree(FeatureInfo[] featureInfo, StreamingGradientTreeOptions options) {
         mFeatureInfo = featureInfo.clone();
         mOptions = options;
+        mSplitStatsOffsets = new int[mFeatureInfo.length];
+        mUpdateStatsSlot = 0;
+
+        for(int i = 0; i < mFeatureInfo.length; i++) {
+            mSplitStatsOffsets[i] = mUpdateStatsSlot;
+            mUpdateStatsSlot += mFeatureInfo[i].categories;
+        }
+
         boolean[] hasSplit = new boolean[mFeatureInfo.length];
 
         for(int i = 0; i < hasSplit.length; i++) {
@@ -45,12 +92,30 @@ public class StreamingGradientTree implements Serializable {
         return mNumSplits;
     }
 
+    public int getNumSplitAttempts() {
+        return mNumSplitAttempts;
+    }
+
+    public int getNumLeaves() {
+        // every split turns a leaf into an inner node, and every node was a leaf when it was created
+        return mNumNodes - mNumSplits;
+    }
+
     public int getDepth() {
         return mMaxDepth;
     }
 
+    public long getSplitEvaluationTime() {
+        return mSplitEvaluationTime;
+    }
+
+    public long getByteSize() {
+        return mByteSize;
+    }
+
     public void randomlyInitialize(Random rng, double predBound) {
         int fid = rng.nextInt(mFeatureInfo.length);
+        mByteSize -= mRoot.calcByteSize();
         mRoot.mSplit = new Split();
         mRoot.mSplit.feature = fid;
         mNumSplits++;
@@ -76,18 +141,103 @@ public class StreamingGradientTree implements Serializable {
             mRoot.mChildren[0] = new Node(predBound * (2.0 * rng.nextDouble() - 1.0), 2, hasSplit);
             mRoot.mChildren[1] = new Node(predBound * (2.0 * rng.nextDouble() - 1.0), 2, hasSplit);
         }
+        mByteSize += mRoot.calcByteSize();
     }
 
     public void update(int[] features, GradHess gradHess, Double weight) {
-        Node leaf = mRoot.getLeaf(features);
-        leaf.update(features, gradHess, weight);
+        update(features, gradHess.gradient, gradHess.hessian, weight.doubleValue());
+    }
+
+    public void update(int[] features, double gradient, double hessian, double weight) {
+        update(null, features, gradient, hessian, weight);
+    }
+
+    /**
+     * Trains on a dense or sparse feature vector. A sparse vector only touches the split stats of the features it
+     * holds, so the cost of the update is linear in the number of non-zero features.
+     */
+    public void update(FeatureVector features, double gradient, double hessian, double weight) {
+        mSparse |= features.isSparse();
+        update(features.indices, features.bins, gradient, hessian, weight);
+    }
+
+    protected void update(int[] indices, int[] bins, double gradient, double hessian, double weight) {
+        Node leaf = mRoot.getLeaf(indices, bins);
+        leaf.update(indices, bins, gradient, hessian, weight);
 
         if(leaf.mInstances % mOptions.gracePeriod != 0) {
             return;
         }
 
+        attemptSplit(leaf);
+    }
+
+    /**
+     * Trains on a mini-batch. All the instances are routed to the leaves before any of them is added, and each leaf
+     * looks for a split once after its share of the batch, if that share took it past a multiple of the grace period.
+     * A batch of one instance is the same as update.
+     */
+    public void update(int[][] features, double[] gradients, double[] hessians, double[] weights) {
+        update(null, features, gradients, hessians, weights);
+    }
+
+    public void update(FeatureVector[] features, double[] gradients, double[] hessians, double[] weights) {
+        int[][] indices = new int[features.length][];
+        int[][] bins = new int[features.length][];
+
+        for(int b = 0; b < features.length; b++) {
+            mSparse |= features[b].isSparse();
+            indices[b] = features[b].indices;
+            bins[b] = features[b].bins;
+        }
+
+        update(indices, bins, gradients, hessians, weights);
+    }
+
+    /**
+     * Batch update on the features in bins, indices holds the features of each sparse vector and is null when the
+     * whole batch is dense.
+     */
+    protected void update(int[][] indices, int[][] bins, double[] gradients, double[] hessians, double[] weights) {
+        Node[] leaves = new Node[bins.length];
+
+        for(int b = 0; b < bins.length; b++) {
+            leaves[b] = mRoot.getLeaf(indices == null ? null : indices[b], bins[b]);
+        }
+
+        // The instance count of each leaf before the batch, in the order the batch reaches them
+        Map<Node, Integer> instancesBefore = new LinkedHashMap<>();
+
+        for(int b = 0; b < bins.length; b++) {
+            instancesBefore.putIfAbsent(leaves[b], leaves[b].mInstances);
+            leaves[b].update(indices == null ? null : indices[b], bins[b], gradients[b], hessians[b], weights[b]);
+        }
+
+        for(Map.Entry<Node, Integer> entry : instancesBefore.entrySet()) {
+            Node leaf = entry.getKey();
+
+            if(leaf.mInstances / mOptions.gracePeriod != entry.getValue() / mOptions.gracePeriod) {
+                attemptSplit(leaf);
+            }
+        }
+    }
+
+    protected void attemptSplit(Node leaf) {
+        long start = System.nanoTime();
+        mNumSplitAttempts++;
+
+        if(mSparse) {
+            leaf.fillDefaultCategories();
+        }
+
         Split bestSplit = leaf.findBestSplit();
 
+        if(mSparse) {
+            leaf.restoreDefaultCategories();
+        }
+
+        mSplitEvaluationTime += System.nanoTime() - start;
+
         double p = computePValue(bestSplit, leaf.mInstances);
 
         if(p < mOptions.delta && bestSplit.lossMean < 0.0) {
@@ -96,7 +246,254 @@ public class StreamingGradientTree implements Serializable {
     }
 
     public double predict(int[] features) {
-        return mRoot.getLeaf(features).predict();
+        return mRoot.getLeaf(null, features).predict();
+    }
+
+    public double predict(FeatureVector features) {
+        return mRoot.getLeaf(features.indices, features.bins).predict();
+    }
+
+    /**
+     * Category of feature in the vector made of indices and bins, indices is null for dense vectors.
+     */
+    protected int getCategory(int[] indices, int[] bins, int feature) {
+        if(indices == null) {
+            return bins[feature];
+        }
+
+        int k = Arrays.binarySearch(indices, feature);
+
+        return k >= 0 ? bins[k] : mFeatureInfo[feature].defaultCategory;
+    }
+
+    /**
+     * Copies the current structure and leaf predictions of the tree into a FlatTree.
+     */
+    public FlatTree flatten() {
+        FlatTree flat = new FlatTree(mRoot.countNodes());
+        flatten(mRoot, flat, 0, 1);
+        return flat;
+    }
+
+    /**
+     * Writes node at position and its subtree, with the children blocks starting at next. Returns the first free
+     * position after the subtree.
+     */
+    protected int flatten(Node node, FlatTree flat, int position, int next) {
+        if(node.mChildren == null) {
+            flat.feature[position] = -1;
+            flat.index[position] = -1;
+            flat.firstChild[position] = -1;
+            flat.prediction[position] = node.mPrediction;
+            return next;
+        }
+
+        flat.feature[position] = node.mSplit.feature;
+        flat.index[position] = mFeatureInfo[node.mSplit.feature].type == FeatureType.ordinal ? node.mSplit.index : -1;
+        flat.firstChild[position] = next;
+        flat.prediction[position] = node.mPrediction;
+
+        int first = next;
+        next += node.mChildren.length;
+
+        for(int i = 0; i < node.mChildren.length; i++) {
+            next = flatten(node.mChildren[i], flat, first + i, next);
+        }
+
+        return next;
+    }
+
+    /**
+     * Writes the tree to a checkpoint: its features, options and counters, then its nodes in depth-first order as
+     * one primitive array per field, then the stats of the nodes that have them.
+     */
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        writeFeatureInfo(out, mFeatureInfo);
+        out.writeDouble(mOptions.delta);
+        out.writeInt(mOptions.gracePeriod);
+        out.writeDouble(mOptions.initialPrediction);
+        out.writeDouble(mOptions.lambda);
+        out.writeDouble(mOptions.gamma);
+
+        out.writeInt(mNumNodes);
+        out.writeInt(mNumNodeUpdates);
+        out.writeInt(mNumSplits);
+        out.writeInt(mMaxDepth);
+        out.writeBoolean(mSparse);
+        out.writeLong(mSplitEvaluationTime);
+        out.writeLong(mByteSize);
+        out.writeInt(mNumSplitAttempts);
+
+        ArrayList<Node> nodes = new ArrayList<>();
+        mRoot.collectNodes(nodes);
+        int n = nodes.size();
+        int words = (mFeatureInfo.length + 31) / 32;
+        int[] numChildren = new int[n];
+        int[] splitFeature = new int[n];
+        int[] splitIndex = new int[n];
+        int[] depth = new int[n];
+        int[] instances = new int[n];
+        int[] hasStats = new int[n];
+        int[] hasSplit = new int[n * words];
+        double[] prediction = new double[n];
+
+        for(int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            numChildren[i] = node.mChildren == null ? 0 : node.mChildren.length;
+            splitFeature[i] = node.mSplit == null ? -1 : node.mSplit.feature;
+            splitIndex[i] = node.mSplit == null ? -1 : node.mSplit.index;
+            depth[i] = node.mDepth;
+            instances[i] = node.mInstances;
+            hasStats[i] = node.mSplitStats == null ? 0 : 1;
+            prediction[i] = node.mPrediction;
+
+            for(int f = 0; f < mFeatureInfo.length; f++) {
+                if(node.mHasSplit[f]) {
+                    hasSplit[i * words + f / 32] |= 1 << (f % 32);
+                }
+            }
+        }
+
+        out.writeInt(n);
+        out.writeInts(numChildren, 0, n);
+        out.writeInts(splitFeature, 0, n);
+        out.writeInts(splitIndex, 0, n);
+        out.writeInts(depth, 0, n);
+        out.writeInts(instances, 0, n);
+        out.writeInts(hasStats, 0, n);
+        out.writeInts(hasSplit, 0, n * words);
+        out.writeDoubles(prediction, 0, n);
+
+        for(Node node : nodes) {
+            if(node.mSplitStats != null) {
+                node.mSplitStats.writeCheckpoint(out);
+            }
+        }
+    }
+
+    /**
+     * Reads a tree written by writeCheckpoint.
+     */
+    public static StreamingGradientTree readCheckpoint(CheckpointInput in) throws IOException {
+        FeatureInfo[] featureInfo = readFeatureInfo(in);
+        StreamingGradientTreeOptions options = new StreamingGradientTreeOptions();
+        options.delta = in.readDouble();
+        options.gracePeriod = in.readInt();
+        options.initialPrediction = in.readDouble();
+        options.lambda = in.readDouble();
+        options.gamma = in.readDouble();
+
+        StreamingGradientTree tree = new StreamingGradientTree(featureInfo, options);
+        tree.mNumNodes = in.readInt();
+        tree.mNumNodeUpdates = in.readInt();
+        tree.mNumSplits = in.readInt();
+        tree.mMaxDepth = in.readInt();
+        tree.mSparse = in.readBoolean();
+        tree.mSplitEvaluationTime = in.readLong();
+        tree.mByteSize = in.readLong();
+        tree.mNumSplitAttempts = in.readInt();
+
+        int n = in.readInt();
+        int words = (featureInfo.length + 31) / 32;
+        int[] numChildren = new int[n];
+        int[] splitFeature = new int[n];
+        int[] splitIndex = new int[n];
+        int[] depth = new int[n];
+        int[] instances = new int[n];
+        int[] hasStats = new int[n];
+        int[] hasSplit = new int[n * words];
+        double[] prediction = new double[n];
+        in.readInts(numChildren, 0, n);
+        in.readInts(splitFeature, 0, n);
+        in.readInts(splitIndex, 0, n);
+        in.readInts(depth, 0, n);
+        in.readInts(instances, 0, n);
+        in.readInts(hasStats, 0, n);
+        in.readInts(hasSplit, 0, n * words);
+        in.readDoubles(prediction, 0, n);
+
+        // the nodes are created in the order they were written, each one right before its subtree
+        Node[] nodes = new Node[n];
+        for(int i = 0; i < n; i++) {
+            boolean[] nodeHasSplit = new boolean[featureInfo.length];
+            for(int f = 0; f < featureInfo.length; f++) {
+                nodeHasSplit[f] = (hasSplit[i * words + f / 32] & (1 << (f % 32))) != 0;
+            }
+            nodes[i] = tree.new Node(prediction[i], depth[i], nodeHasSplit, instances[i], hasStats[i] != 0);
+            if(splitFeature[i] != -1) {
+                nodes[i].mSplit = tree.new Split();
+                nodes[i].mSplit.feature = splitFeature[i];
+                nodes[i].mSplit.index = splitIndex[i];
+            }
+            if(numChildren[i] > 0) {
+                nodes[i].mChildren = new Node[numChildren[i]];
+            }
+        }
+        tree.linkChildren(nodes, numChildren, 0);
+        tree.mRoot = nodes[0];
+
+        for(Node node : nodes) {
+            if(node.mSplitStats != null) {
+                node.mSplitStats.readCheckpoint(in);
+            }
+        }
+
+        return tree;
+    }
+
+    /**
+     * Sets the children of the node at position from the depth-first order of nodes, returns the position after its
+     * subtree.
+     */
+    protected int linkChildren(Node[] nodes, int[] numChildren, int position) {
+        Node node = nodes[position];
+        int next = position + 1;
+
+        for(int i = 0; i < numChildren[position]; i++) {
+            node.mChildren[i] = nodes[next];
+            next = linkChildren(nodes, numChildren, next);
+        }
+
+        return next;
+    }
+
+    public static void writeFeatureInfo(CheckpointOutput out, FeatureInfo[] featureInfo) throws IOException {
+        out.writeInt(featureInfo.length);
+
+        for(FeatureInfo info : featureInfo) {
+            out.writeByte(info.type.ordinal());
+            out.writeInt(info.categories);
+            out.writeInt(info.defaultCategory);
+        }
+    }
+
+    public static FeatureInfo[] readFeatureInfo(CheckpointInput in) throws IOException {
+        FeatureInfo[] featureInfo = new FeatureInfo[in.readInt()];
+
+        for(int i = 0; i < featureInfo.length; i++) {
+            featureInfo[i] = new FeatureInfo();
+            featureInfo[i].type = FeatureType.values()[in.readByte()];
+            featureInfo[i].categories = in.readInt();
+            featureInfo[i].defaultCategory = in.readInt();
+        }
+
+        return featureInfo;
+    }
+
+    protected GradHessStatsArray getSplitSweepStats() {
+        if(mSplitSweepStats == null) {
+            mSplitSweepStats = new GradHessStatsArray(3);
+        }
+
+        return mSplitSweepStats;
+    }
+
+    protected GradHessStatsArray getDefaultCategoryStats() {
+        if(mDefaultCategoryStats == null) {
+            mDefaultCategoryStats = new GradHessStatsArray(mFeatureInfo.length);
+        }
+
+        return mDefaultCategoryStats;
     }
 
     protected double computePValue(Split split, int instances) {
@@ -140,9 +537,8 @@ public class StreamingGradientTree implements Serializable {
 
         protected int mInstances;
 
-        protected GradHessStats mUpdateStats;
-
-        protected GradHessStats[][] mSplitStats;
+        /** The split stats of every feature followed by the update stats, see mSplitStatsOffsets and mUpdateStatsSlot. */
+        protected GradHessStatsArray mSplitStats;
 
         protected int mDepth;
 
@@ -156,38 +552,50 @@ public class StreamingGradientTree implements Serializable {
             mHasSplit = hasSplit.clone();
 
             reset();
+            mByteSize += calcByteSize();
         }
 
-        public void reset() {
-            mSplitStats = new GradHessStats[mFeatureInfo.length][];
-            mUpdateStats = new GradHessStats();
-            mInstances = 0;
+        /**
+         * Node read from a checkpoint, the counters of the tree are read along with it.
+         */
+        protected Node(double prediction, int depth, boolean[] hasSplit, int instances, boolean hasStats) {
+            mPrediction = prediction;
+            mDepth = depth;
+            mHasSplit = hasSplit;
+            mInstances = instances;
 
-            for(int i = 0; i < mSplitStats.length; i++) {
-                mSplitStats[i] = new GradHessStats[mFeatureInfo[i].categories];
+            if(hasStats) {
+                mSplitStats = new GradHessStatsArray(mUpdateStatsSlot + 1);
+            }
+        }
 
-                for(int j = 0; j < mSplitStats[i].length; j++) {
-                    mSplitStats[i][j] = new GradHessStats();
-                }
+        public void reset() {
+            if(mSplitStats == null) {
+                mSplitStats = new GradHessStatsArray(mUpdateStatsSlot + 1);
             }
+            else {
+                mSplitStats.clear();
+            }
+            mInstances = 0;
         }
 
-        public Node getLeaf(int[] features) {
+        public Node getLeaf(int[] indices, int[] bins) {
             if(mChildren == null) {
                 return this;
             }
             else {
                 FeatureType featureType = mFeatureInfo[mSplit.feature].type;
+                int category = getCategory(indices, bins, mSplit.feature);
                 Node c = null;
                 
-                if(features[mSplit.feature] == -1) {
+                if(category == -1) {
                     c = mChildren[0];
                 }
                 else if(featureType == FeatureType.nominal) {
-                    c = mChildren[features[mSplit.feature]];
+                    c = mChildren[category];
                 }
                 else if(featureType == FeatureType.ordinal) {
-                    if(features[mSplit.feature] <= mSplit.index) {
+                    if(category <= mSplit.index) {
                         c = mChildren[0];
                     }
                     else {
@@ -198,114 +606,169 @@ public class StreamingGradientTree implements Serializable {
                     System.err.println("Unhandled attribute type");
                 }
 
-                return c.getLeaf(features);
+                return c.getLeaf(indices, bins);
             }
         }
 
-        void update(int[] features, GradHess gradHess, Double weight) {
+        void update(int[] indices, int[] bins, double gradient, double hessian, double weight) {
             mInstances++;
 
-            for(int i = 0; i < features.length; i++) {
-                if(features[i] == -1) {
+            for(int k = 0; k < bins.length; k++) {
+                if(bins[k] == -1) {
                     continue;
                 }
 
-                mSplitStats[i][features[i]].addObservation(gradHess, weight);
+                int i = indices == null ? k : indices[k];
+                mSplitStats.addObservation(mSplitStatsOffsets[i] + bins[k], gradient, hessian, weight);
             }
 
-            mUpdateStats.addObservation(gradHess, weight);
+            mSplitStats.addObservation(mUpdateStatsSlot, gradient, hessian, weight);
+        }
+
+        /**
+         * Derives the stats of the default category of every feature from the node totals, as the total minus the
+         * other categories of the feature. The stats counted in the default slots are kept aside for
+         * restoreDefaultCategories, so sparse updates only ever count the features they hold.
+         */
+        void fillDefaultCategories() {
+            GradHessStatsArray counted = getDefaultCategoryStats();
+            GradHessStatsArray sweep = getSplitSweepStats();
+
+            for(int i = 0; i < mFeatureInfo.length; i++) {
+                int defaultSlot = mSplitStatsOffsets[i] + mFeatureInfo[i].defaultCategory;
+                counted.copy(i, mSplitStats, defaultSlot);
+                sweep.clear(SWEEP_LEFT);
+
+                for(int j = 0; j < mFeatureInfo[i].categories; j++) {
+                    if(j != mFeatureInfo[i].defaultCategory) {
+                        sweep.add(SWEEP_LEFT, mSplitStats, mSplitStatsOffsets[i] + j);
+                    }
+                }
+
+                mSplitStats.difference(defaultSlot, mSplitStats, mUpdateStatsSlot, sweep, SWEEP_LEFT);
+            }
+        }
+
+        void restoreDefaultCategories() {
+            GradHessStatsArray counted = getDefaultCategoryStats();
+
+            for(int i = 0; i < mFeatureInfo.length; i++) {
+                mSplitStats.copy(mSplitStatsOffsets[i] + mFeatureInfo[i].defaultCategory, counted, i);
+            }
         }
 
         public double predict() {
             return mPrediction;
         }
 
+        /**
+         * Adds the nodes of this subtree to nodes, in depth-first order.
+         */
+        void collectNodes(ArrayList<Node> nodes) {
+            nodes.add(this);
+
+            if(mChildren != null) {
+                for(Node child : mChildren) {
+                    child.collectNodes(nodes);
+                }
+            }
+        }
+
+        int countNodes() {
+            int count = 1;
+
+            if(mChildren != null) {
+                for(Node child : mChildren) {
+                    count += child.countNodes();
+                }
+            }
+
+            return count;
+        }
+
         public Split findBestSplit() {
-            
-            Split best = new Split();
+            // Only the winner is materialised as a Split, candidates are tracked in these locals
+            double bestLossMean;
+            double bestLossVariance;
+            int bestFeature = -1;
+            int bestIndex = -1;
+            double bestDeltaPredLeft = 0.0;
+            double bestDeltaPredRight = 0.0;
 
             // We can try to update the prediction using the new gradient information
-            best.deltaPredictions = new double[] {computeDeltaPrediction(mUpdateStats.getMean())};
-            best.lossMean = mUpdateStats.getDeltaLossMean(best.deltaPredictions[0]);
-            best.lossVariance = mUpdateStats.getDeltaLossVariance(best.deltaPredictions[0]);
-            best.feature = -1;
-            best.index = -1;
+            double deltaPrediction = computeDeltaPrediction(mSplitStats, mUpdateStatsSlot);
+            bestLossMean = mSplitStats.getDeltaLossMean(mUpdateStatsSlot, deltaPrediction);
+            bestLossVariance = mSplitStats.getDeltaLossVariance(mUpdateStatsSlot, deltaPrediction);
+
+            GradHessStatsArray sweep = getSplitSweepStats();
 
-            for(int i = 0; i < mSplitStats.length; i++) {
-                Split candidate = new Split();
-                candidate.feature = i;
+            for(int i = 0; i < mFeatureInfo.length; i++) {
+                int offset = mSplitStatsOffsets[i];
+                double candidateLossMean = 0.0;
+                double candidateLossVariance = 0.0;
+                int candidateIndex = -1;
+                double candidateDeltaPredLeft = 0.0;
+                double candidateDeltaPredRight = 0.0;
 
                 if(mFeatureInfo[i].type == FeatureType.nominal) {
                     if(mHasSplit[i]) {
                         continue;
                     }
 
-                    candidate.deltaPredictions = new double[mSplitStats[i].length];
                     double lossMean = 0.0;
                     double lossVar = 0.0;
                     int observations = 0;
 
-                    for(int j = 0; j < mSplitStats[i].length; j++) {
-                        double p = computeDeltaPrediction(mSplitStats[i][j].getMean());
-                        double m = mSplitStats[i][j].getDeltaLossMean(p);
-                        double s = mSplitStats[i][j].getDeltaLossVariance(p);
-                        int n = mSplitStats[i][j].getObservationCount();
-                        candidate.deltaPredictions[j] = p;
+                    for(int j = 0; j < mFeatureInfo[i].categories; j++) {
+                        int slot = offset + j;
+                        double p = computeDeltaPrediction(mSplitStats, slot);
+                        double m = mSplitStats.getDeltaLossMean(slot, p);
+                        double s = mSplitStats.getDeltaLossVariance(slot, p);
+                        int n = mSplitStats.getObservationCount(slot);
 
                         lossMean = GradHessStats.combineMean(lossMean, observations, m, n);
                         lossVar = GradHessStats.combineVariance(lossMean, lossVar, observations, m, s, n);
                         observations += n;
                     }
 
-                    candidate.lossMean = lossMean + mSplitStats[i].length * mOptions.gamma / mInstances;
-                    candidate.lossVariance = lossVar;
+                    candidateLossMean = lossMean + mFeatureInfo[i].categories * mOptions.gamma / mInstances;
+                    candidateLossVariance = lossVar;
                 }
                 else if(mFeatureInfo[i].type == FeatureType.ordinal) {
-                    GradHessStats[] forwardCumulativeSum = new GradHessStats[mFeatureInfo[i].categories - 1];
-                    GradHessStats[] backwardCumulativeSum = new GradHessStats[mFeatureInfo[i].categories - 1];
-
-                    // Compute the split stats for each possible split point
-                    for(int j = 0; j < mFeatureInfo[i].categories - 1; j++) {
-                        forwardCumulativeSum[j] = new GradHessStats();
-                        forwardCumulativeSum[j].add(mSplitStats[i][j]);
+                    int splitPoints = mFeatureInfo[i].categories - 1;
 
-                        if(j > 0) {
-                            forwardCumulativeSum[j].add(forwardCumulativeSum[j - 1]);
-                        }
+                    // The right hand side of every split point is the total of the feature minus its prefix sum
+                    sweep.clear(SWEEP_TOTAL);
+                    for(int j = 0; j <= splitPoints; j++) {
+                        sweep.add(SWEEP_TOTAL, mSplitStats, offset + j);
                     }
+                    sweep.clear(SWEEP_LEFT);
 
-                    for(int j = mFeatureInfo[i].categories - 2; j >= 0; j--) {
-                        backwardCumulativeSum[j] = new GradHessStats();
-                        backwardCumulativeSum[j].add(mSplitStats[i][j + 1]);
+                    candidateLossMean = Double.POSITIVE_INFINITY;
 
-                        if(j + 1 < backwardCumulativeSum.length) {
-                            backwardCumulativeSum[j].add(backwardCumulativeSum[j + 1]);
-                        }
-                    }
+                    for(int j = 0; j < splitPoints; j++) {
+                        sweep.add(SWEEP_LEFT, mSplitStats, offset + j);
+                        sweep.difference(SWEEP_RIGHT, sweep, SWEEP_TOTAL, sweep, SWEEP_LEFT);
 
-                    candidate.lossMean = Double.POSITIVE_INFINITY;
-                    candidate.deltaPredictions = new double[2];
+                        double deltaPredLeft = computeDeltaPrediction(sweep, SWEEP_LEFT);
+                        double lossMeanLeft = sweep.getDeltaLossMean(SWEEP_LEFT, deltaPredLeft);
+                        double lossVarLeft = sweep.getDeltaLossVariance(SWEEP_LEFT, deltaPredLeft);
+                        int numLeft = sweep.getObservationCount(SWEEP_LEFT);
 
-                    for(int j = 0; j < forwardCumulativeSum.length; j++) {
-                        double deltaPredLeft = computeDeltaPrediction(forwardCumulativeSum[j].getMean());
-                        double lossMeanLeft = forwardCumulativeSum[j].getDeltaLossMean(deltaPredLeft);
-                        double lossVarLeft = forwardCumulativeSum[j].getDeltaLossVariance(deltaPredLeft);
-                        int numLeft = forwardCumulativeSum[j].getObservationCount();
-
-                        double deltaPredRight = computeDeltaPrediction(backwardCumulativeSum[j].getMean());
-                        double lossMeanRight = backwardCumulativeSum[j].getDeltaLossMean(deltaPredRight);
-                        double lossVarRight = backwardCumulativeSum[j].getDeltaLossVariance(deltaPredRight);
-                        int numRight = backwardCumulativeSum[j].getObservationCount();
+                        double deltaPredRight = computeDeltaPrediction(sweep, SWEEP_RIGHT);
+                        double lossMeanRight = sweep.getDeltaLossMean(SWEEP_RIGHT, deltaPredRight);
+                        double lossVarRight = sweep.getDeltaLossVariance(SWEEP_RIGHT, deltaPredRight);
+                        int numRight = sweep.getObservationCount(SWEEP_RIGHT);
 
                         double lossMean = GradHessStats.combineMean(lossMeanLeft, numLeft, lossMeanRight, numRight);
                         double lossVar = GradHessStats.combineVariance(lossMeanLeft, lossVarLeft, numLeft, lossMeanRight, lossVarRight, numRight);
 
-                        if(lossMean < candidate.lossMean) {
-                            candidate.lossMean = lossMean + 2.0 * mOptions.gamma / mInstances;
-                            candidate.lossVariance = lossVar;
-                            candidate.index = j;
-                            candidate.deltaPredictions[0] = deltaPredLeft;
-                            candidate.deltaPredictions[1] = deltaPredRight;
+                        if(lossMean < candidateLossMean) {
+                            candidateLossMean = lossMean + 2.0 * mOptions.gamma / mInstances;
+                            candidateLossVariance = lossVar;
+                            candidateIndex = j;
+                            candidateDeltaPredLeft = deltaPredLeft;
+                            candidateDeltaPredRight = deltaPredRight;
                         }
                     }
                 }
@@ -313,10 +776,35 @@ public class StreamingGradientTree implements Serializable {
                     System.err.println("Unhandled attribute type");
                 }
 
-                if(candidate.lossMean < best.lossMean) {
-                    best = candidate;
+                if(candidateLossMean < bestLossMean) {
+                    bestLossMean = candidateLossMean;
+                    bestLossVariance = candidateLossVariance;
+                    bestFeature = i;
+                    bestIndex = candidateIndex;
+                    bestDeltaPredLeft = candidateDeltaPredLeft;
+                    bestDeltaPredRight = candidateDeltaPredRight;
                 }
             }
+
+            Split best = new Split();
+            best.lossMean = bestLossMean;
+            best.lossVariance = bestLossVariance;
+            best.feature = bestFeature;
+            best.index = bestIndex;
+
+            if(bestFeature == -1) {
+                best.deltaPredictions = new double[] {deltaPrediction};
+            }
+            else if(mFeatureInfo[bestFeature].type == FeatureType.nominal) {
+                best.deltaPredictions = new double[mFeatureInfo[bestFeature].categories];
+
+                for(int j = 0; j < best.deltaPredictions.length; j++) {
+                    best.deltaPredictions[j] = computeDeltaPrediction(mSplitStats, mSplitStatsOffsets[bestFeature] + j);
+                }
+            }
+            else {
+                best.deltaPredictions = new double[] {bestDeltaPredLeft, bestDeltaPredRight};
+            }
             
             return best;
         }
@@ -331,6 +819,7 @@ public class StreamingGradientTree implements Serializable {
                 return;
             }
 
+            mByteSize -= calcByteSize();
             mSplit = split;
             mNumSplits++;
             mHasSplit[split.feature] = true;
@@ -354,10 +843,40 @@ public class StreamingGradientTree implements Serializable {
 
             //Free up memory used by the split stats
             mSplitStats = null;
+            mByteSize += calcByteSize();
+        }
+
+        /**
+         * Shallow size of the node and the arrays it owns, the children count themselves.
+         */
+        protected long calcByteSize() {
+            long size = ObjectSizes.sizeOf(this) + ObjectSizes.sizeOf(mHasSplit);
+
+            if(mSplitStats != null) {
+                size += mSplitStats.calcByteSize();
+            }
+
+            if(mChildren != null) {
+                size += ObjectSizes.sizeOf(mChildren);
+            }
+
+            if(mSplit != null) {
+                size += ObjectSizes.sizeOf(mSplit);
+
+                if(mSplit.deltaPredictions != null) {
+                    size += ObjectSizes.sizeOf(mSplit.deltaPredictions);
+                }
+            }
+
+            return size;
         }
 
         protected double computeDeltaPrediction(GradHess gradHess) {
             return -gradHess.gradient / (gradHess.hessian + Double.MIN_NORMAL + mOptions.lambda);
         }
+
+        protected double computeDeltaPrediction(GradHessStatsArray stats, int slot) {
+            return -stats.getMeanGradient(slot) / (stats.getMeanHessian(slot) + Double.MIN_NORMAL + mOptions.lambda);
+        }
     }
 }
\ No newline at end of file
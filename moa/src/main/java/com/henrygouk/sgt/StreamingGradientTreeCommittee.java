@@ -1,13 +1,18 @@
 package com.henrygouk.sgt;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Random;
-import java.util.stream.IntStream;
+
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.CommitteeExecutor;
 
 public class StreamingGradientTreeCommittee implements Serializable, MultiOutputLearner {
 
     private static final long serialVersionUID = 8961897277670201943L;
     public StreamingGradientTree[] mTrees;
+    protected transient CommitteeExecutor mExecutor;
 
     public StreamingGradientTreeCommittee(FeatureInfo[] featureInfo, StreamingGradientTreeOptions options, int numTrees) {
         mTrees = new StreamingGradientTree[numTrees];
@@ -17,6 +22,36 @@ public class StreamingGradientTreeCommittee implements Serializable, MultiOutput
         }
     }
 
+    protected StreamingGradientTreeCommittee(StreamingGradientTree[] trees) {
+        mTrees = trees;
+    }
+
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        out.writeInt(mTrees.length);
+
+        for(StreamingGradientTree tree : mTrees) {
+            tree.writeCheckpoint(out);
+        }
+    }
+
+    public static StreamingGradientTreeCommittee readCheckpoint(CheckpointInput in) throws IOException {
+        StreamingGradientTree[] trees = new StreamingGradientTree[in.readInt()];
+
+        for(int i = 0; i < trees.length; i++) {
+            trees[i] = StreamingGradientTree.readCheckpoint(in);
+        }
+
+        return new StreamingGradientTreeCommittee(trees);
+    }
+
+    public void setExecutor(CommitteeExecutor executor) {
+        mExecutor = executor;
+    }
+
+    protected CommitteeExecutor getExecutor() {
+        return mExecutor != null ? mExecutor : CommitteeExecutor.getDefault();
+    }
+
     public int getNumNodes() {
         int result = 0;
 
@@ -47,6 +82,26 @@ public class StreamingGradientTreeCommittee implements Serializable, MultiOutput
         return result;
     }
 
+    public int getNumSplitAttempts() {
+        int result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getNumSplitAttempts();
+        }
+
+        return result;
+    }
+
+    public int getNumLeaves() {
+        int result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getNumLeaves();
+        }
+
+        return result;
+    }
+
     public int getMaxDepth() {
         int result = 0;
 
@@ -57,6 +112,26 @@ public class StreamingGradientTreeCommittee implements Serializable, MultiOutput
         return result;
     }
 
+    public long getSplitEvaluationTime() {
+        long result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getSplitEvaluationTime();
+        }
+
+        return result;
+    }
+
+    public long getByteSize() {
+        long result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getByteSize();
+        }
+
+        return result;
+    }
+
     public int getNumTrees() {
         return mTrees.length;
     }
@@ -68,16 +143,64 @@ public class StreamingGradientTreeCommittee implements Serializable, MultiOutput
     }
 
     public void update(int[] features, GradHess[] gradHesses, Double weights[]) {
-        IntStream.range(0, mTrees.length)
-                 .parallel()
-                 .forEach(i -> mTrees[i].update(features, gradHesses[i], weights[i]));
+        getExecutor().forEach(mTrees.length, i -> mTrees[i].update(features, gradHesses[i], weights[i]));
+    }
+
+    public void update(int[] features, double[] gradients, double[] hessians, double weight) {
+        getExecutor().forEach(mTrees.length, i -> mTrees[i].update(features, gradients[i], hessians[i], weight));
+    }
+
+    public void update(int[][] features, double[][] gradients, double[][] hessians, double[] weights) {
+        getExecutor().forEach(mTrees.length, i -> {
+            double[] treeGradients = new double[features.length];
+            double[] treeHessians = new double[features.length];
+
+            for(int b = 0; b < features.length; b++) {
+                treeGradients[b] = gradients[b][i];
+                treeHessians[b] = hessians[b][i];
+            }
+
+            mTrees[i].update(features, treeGradients, treeHessians, weights);
+        });
+    }
+
+    public void update(FeatureVector features, double[] gradients, double[] hessians, double weight) {
+        getExecutor().forEach(mTrees.length, i -> mTrees[i].update(features, gradients[i], hessians[i], weight));
+    }
+
+    public void update(FeatureVector[] features, double[][] gradients, double[][] hessians, double[] weights) {
+        getExecutor().forEach(mTrees.length, i -> {
+            double[] treeGradients = new double[features.length];
+            double[] treeHessians = new double[features.length];
+
+            for(int b = 0; b < features.length; b++) {
+                treeGradients[b] = gradients[b][i];
+                treeHessians[b] = hessians[b][i];
+            }
+
+            mTrees[i].update(features, treeGradients, treeHessians, weights);
+        });
+    }
+
+    public FlatTree[] flatten() {
+        FlatTree[] result = new FlatTree[mTrees.length];
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result[i] = mTrees[i].flatten();
+        }
+
+        return result;
     }
 
     public double[] predict(int[] features) {
         double[] v = new double[mTrees.length];
-        IntStream.range(0, mTrees.length)
-                        .parallel()
-                        .forEach(i -> v[i] = mTrees[i].predict(features));
+        getExecutor().forEach(mTrees.length, i -> v[i] = mTrees[i].predict(features));
+        return v;
+    }
+
+    public double[] predict(FeatureVector features) {
+        double[] v = new double[mTrees.length];
+        getExecutor().forEach(mTrees.length, i -> v[i] = mTrees[i].predict(features));
         return v;
     }
 }
\ No newline at end of file
@@ -51,6 +51,26 @@ public class StreamingGradientTreeNetwork implements Serializable, MultiOutputLe
         return result;
     }
 
+    public int getNumSplitAttempts() {
+        int result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getNumSplitAttempts();
+        }
+
+        return result;
+    }
+
+    public int getNumLeaves() {
+        int result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getNumLeaves();
+        }
+
+        return result;
+    }
+
     public int getMaxDepth() {
         int result = 0;
 
@@ -61,6 +81,26 @@ public class StreamingGradientTreeNetwork implements Serializable, MultiOutputLe
         return result;
     }
 
+    public long getSplitEvaluationTime() {
+        long result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getSplitEvaluationTime();
+        }
+
+        return result;
+    }
+
+    public long getByteSize() {
+        long result = 0;
+
+        for(int i = 0; i < mTrees.length; i++) {
+            result += mTrees[i].getByteSize();
+        }
+
+        return result;
+    }
+
     public int getNumTrees() {
         return mTrees.length;
     }
@@ -93,6 +133,29 @@ public class StreamingGradientTreeNetwork implements Serializable, MultiOutputLe
                  .forEach(i -> mTrees[i].update(features, finalGradHesses[i], weights[i]));
     }
 
+    public void update(int[] features, double[] gradients, double[] hessians, double weight) {
+        // the layers back-propagate GradHess objects, so wrap the primitive derivatives once here
+        GradHess[] gradHesses = new GradHess[gradients.length];
+        Double[] weights = new Double[mTrees.length];
+
+        for(int i = 0; i < gradHesses.length; i++) {
+            gradHesses[i] = new GradHess(gradients[i], hessians[i]);
+        }
+
+        for(int i = 0; i < weights.length; i++) {
+            weights[i] = weight;
+        }
+
+        update(features, gradHesses, weights);
+    }
+
+    public void update(int[][] features, double[][] gradients, double[][] hessians, double[] weights) {
+        // the layers are updated with the activations of each instance, so the batch is trained in order
+        for(int b = 0; b < features.length; b++) {
+            update(features[b], gradients[b], hessians[b], weights[b]);
+        }
+    }
+
     public double[] predict(int[] features) {
         double[][] activations = new double[mLayers.length + 1][];
         activations[0] = IntStream.range(0, mTrees.length)
@@ -106,4 +169,52 @@ public class StreamingGradientTreeNetwork implements Serializable, MultiOutputLe
 
         return activations[activations.length - 1];
     }
+
+    public void update(FeatureVector features, double[] gradients, double[] hessians, double weight) {
+        double[][] activations = new double[mLayers.length + 1][];
+        activations[0] = IntStream.range(0, mTrees.length)
+                                  .parallel()
+                                  .mapToDouble(i -> mTrees[i].predict(features))
+                                  .toArray();
+
+        for(int i = 0; i < mLayers.length; i++) {
+            activations[i + 1] = mLayers[i].predict(activations[i]);
+        }
+
+        GradHess[] gradHesses = new GradHess[gradients.length];
+
+        for(int i = 0; i < gradHesses.length; i++) {
+            gradHesses[i] = new GradHess(gradients[i], hessians[i]);
+        }
+
+        for(int i = mLayers.length - 1; i >= 0; i--) {
+            gradHesses = mLayers[i].update(activations[i], gradHesses);
+        }
+
+        final GradHess[] finalGradHesses = gradHesses;
+
+        IntStream.range(0, mTrees.length)
+                 .parallel()
+                 .forEach(i -> mTrees[i].update(features, finalGradHesses[i].gradient, finalGradHesses[i].hessian, weight));
+    }
+
+    public void update(FeatureVector[] features, double[][] gradients, double[][] hessians, double[] weights) {
+        for(int b = 0; b < features.length; b++) {
+            update(features[b], gradients[b], hessians[b], weights[b]);
+        }
+    }
+
+    public double[] predict(FeatureVector features) {
+        double[][] activations = new double[mLayers.length + 1][];
+        activations[0] = IntStream.range(0, mTrees.length)
+                                  .parallel()
+                                  .mapToDouble(i -> mTrees[i].predict(features))
+                                  .toArray();
+
+        for(int i = 0; i < mLayers.length; i++) {
+            activations[i + 1] = mLayers[i].predict(activations[i]);
+        }
+
+        return activations[activations.length - 1];
+    }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@
 
 package moa.classifiers;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,6 +30,8 @@ import moa.MOAObject;
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
 import moa.core.Example;
 
 import com.yahoo.labs.samoa.instances.InstancesHeader;
@@ -182,7 +185,6 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
 
     @Override
     public Measurement[] getModelMeasurements() {
-        System.gc();
         double modelMeasureByteSize =  measureByteSize();
 //        double modelMeasureByteSize = GraphLayout.parseInstance(this).totalSize();
         return getModelMeasurements(modelMeasureByteSize);
@@ -247,6 +249,24 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         return (Classifier) super.copy();
     }
 
+    /**
+     * Writes the state kept by this class, for subclasses that implement
+     * Checkpointable.
+     */
+    protected void writeClassifierCheckpoint(CheckpointOutput out) throws IOException {
+        out.writeObject(this.modelContext);
+        out.writeDouble(this.trainingWeightSeenByModel);
+        out.writeInt(this.randomSeed);
+        out.writeObject(this.classifierRandom);
+    }
+
+    protected void readClassifierCheckpoint(CheckpointInput in) throws IOException {
+        this.modelContext = (InstancesHeader) in.readObject();
+        this.trainingWeightSeenByModel = in.readDouble();
+        this.randomSeed = in.readInt();
+        this.classifierRandom = (Random) in.readObject();
+    }
+
    
     @Override
     public MOAObject getModel(){
@@ -19,8 +19,9 @@
  */
 package moa.classifiers;
 
-import com.henrygouk.sgt.GradHess;
 import com.yahoo.labs.samoa.instances.Instance;
+import moa.core.CommitteeExecutor;
+import moa.core.StageLatency;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -33,15 +34,81 @@ import java.util.HashMap;
  */
 public abstract class BoostingCommittee extends AbstractClassifier{
     public int committeeSize = 0;
+
+    /** Runs the members of the committee, not serialized. */
+    protected transient CommitteeExecutor executor;
+
+    public void setExecutor(CommitteeExecutor executor) {
+        this.executor = executor;
+    }
+
+    public CommitteeExecutor getExecutor() {
+        return executor != null ? executor : CommitteeExecutor.getDefault();
+    }
+
+    /** Sampled latency of the phases of training this committee as a boosting stage, not written to checkpoints. */
+    protected transient StageLatency latency;
+
+    public void setLatency(StageLatency latency) {
+        this.latency = latency;
+    }
+
+    public StageLatency getLatency() {
+        return latency != null ? latency : StageLatency.DISABLED;
+    }
+
+    /** Number of leaves of the trees of the committee, 0 for members that are not trees. */
+    public long getNumLeaves() {
+        return 0;
+    }
+
+    /** Number of times the trees of the committee evaluated a leaf for a split. */
+    public long getNumSplitAttempts() {
+        return 0;
+    }
+
+    /** Number of splits made by the trees of the committee. */
+    public long getNumSplitsApplied() {
+        return 0;
+    }
+
     public static double[] getScoresWhenNullTree(int outputSize){
         return new double[outputSize];
     }
     public abstract double[] getScoresForInstance(Instance inst);
 
-    public abstract void trainOnInstanceImpl(Instance[] instances, int multipleIterationByHessianCeiling, GradHess[] gradHess);
+    public abstract void trainOnInstanceImpl(Instance[] instances, int multipleIterationByHessianCeiling, double[] hessians);
 
 //    public abstract void trainOnInstanceImpl(Instance[] instances);
-    public abstract void trainOnInstanceImpl(Instance inst, GradHess[] gradHess, double[] raw /* only for semiSupervisedOption */);
+    public abstract void trainOnInstanceImpl(Instance inst, double[] gradients, double[] hessians, double[] raw /* only for semiSupervisedOption */);
+
+    /**
+     * Trains on a mini-batch, gradients[b] and hessians[b] are the derivatives of instances[b] for every member.
+     * Committees that can share work across the batch override this, by default the instances are trained in order.
+     */
+    public void trainOnBatch(Instance[] instances, double[][] gradients, double[][] hessians) {
+        for (int b = 0; b < instances.length; b++) {
+            trainOnInstanceImpl(instances[b], gradients[b], hessians[b], null);
+        }
+    }
+
+    /**
+     * Mini-batch version of trainOnInstanceImpl(Instance[], int, double[]), instances[b] holds the sub instances of
+     * the members for the b th instance of the batch.
+     */
+    public void trainOnBatch(Instance[][] instances, int multipleIterationByHessianCeiling, double[][] hessians) {
+        for (int b = 0; b < instances.length; b++) {
+            trainOnInstanceImpl(instances[b], multipleIterationByHessianCeiling, hessians[b]);
+        }
+    }
+
+    public double[][] getScoresForBatch(Instance[] instances) {
+        double[][] scores = new double[instances.length][];
+        for (int b = 0; b < instances.length; b++) {
+            scores[b] = getScoresForInstance(instances[b]);
+        }
+        return scores;
+    }
 
     public abstract ArrayList<ArrayList<HashMap<String,String>>> getCommitteeInfo();
 }
@@ -0,0 +1,50 @@
+/*
+ *    ClassifierFactory.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers;
+
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.options.OptionHandlerFactory;
+
+/**
+ * Creates fresh, untrained copies of a classifier: same class, options and model context, prepared for use.
+ *
+ * <p>This is what copy() followed by resetLearning() gives, without the serialization round trip of copy(), whose
+ * cost grows with the size of the model. Fields that are not options, such as the committee size of a
+ * BoostingCommittee, are not copied and have to be set on the classifiers created.</p>
+ */
+public class ClassifierFactory extends OptionHandlerFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final InstancesHeader modelContext;
+
+    public ClassifierFactory(Classifier prototype) {
+        super(prototype);
+        modelContext = prototype.getModelContext();
+    }
+
+    public Classifier create() {
+        Classifier classifier = (Classifier) newInstance();
+        classifier.prepareForUse();
+        if (modelContext != null) {
+            classifier.setModelContext(modelContext);
+        }
+        return classifier;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ *    ReplicatedTrainingLearner.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Learner that can train on several replicas of an instance in one update, instead of being trained on the same
+ * instance again and again.
+ */
+public interface ReplicatedTrainingLearner {
+
+    /**
+     * Trains on replications copies of inst, where replications may be fractional. The copies are counted as
+     * the weight of one instance, so the statistics of the model are the same as after training on inst
+     * replications times. Learners whose split statistics ignore the instance weight, as the attribute observers
+     * of HoeffdingRegressionTree do, must not implement it.
+     */
+    public void trainOnReplicatedInstance(Instance inst, double replications);
+}
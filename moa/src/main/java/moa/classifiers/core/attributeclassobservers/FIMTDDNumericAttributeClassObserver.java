@@ -26,15 +26,23 @@
 
 package moa.classifiers.core.attributeclassobservers;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.Checkpointable;
 import moa.core.DoubleVector;
 import moa.core.ObjectRepository;
+import moa.core.ObjectSizes;
 import moa.tasks.TaskMonitor;
 
-public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttributeClassObserver implements NumericAttributeClassObserver {
+public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttributeClassObserver implements NumericAttributeClassObserver, Checkpointable {
 
     private static final long serialVersionUID = 1L;
 
@@ -54,10 +62,14 @@ public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttrib
         public Node right;
 
         public Node(double val, double label, double weight) {
+            this(val, label, weight, 1);
+        }
+
+        public Node(double val, double label, double weight, double copies) {
             this.cut_point = val;
-            this.leftStatistics.addToValue(0, 1);
-            this.leftStatistics.addToValue(1, label);
-            this.leftStatistics.addToValue(2, label * label);
+            this.leftStatistics.addToValue(0, copies);
+            this.leftStatistics.addToValue(1, copies * label);
+            this.leftStatistics.addToValue(2, copies * label * label);
         }
 
         /**
@@ -65,36 +77,45 @@ public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttrib
          * sum of squared values arrays
          */
         public void insertValue(double val, double label, double weight) {
+            insertValue(val, label, weight, 1);
+        }
+
+        /**
+         * Insert copies of a value at once, as if insertValue had been called copies times
+         */
+        public void insertValue(double val, double label, double weight, double copies) {
 
 		// If the new value equals the value stored in a node, update
             // the left (<=) node information
             if (val == this.cut_point) {
-                this.leftStatistics.addToValue(0, 1);
-                this.leftStatistics.addToValue(1, label);
-                this.leftStatistics.addToValue(2, label * label);
+                this.leftStatistics.addToValue(0, copies);
+                this.leftStatistics.addToValue(1, copies * label);
+                this.leftStatistics.addToValue(2, copies * label * label);
             } // If the new value is less than the value in a node, update the
             // left distribution and send the value down to the left child node.
             // If no left child exists, create one
             else if (val <= this.cut_point) {
-                this.leftStatistics.addToValue(0, 1);
-                this.leftStatistics.addToValue(1, label);
-                this.leftStatistics.addToValue(2, label * label);
+                this.leftStatistics.addToValue(0, copies);
+                this.leftStatistics.addToValue(1, copies * label);
+                this.leftStatistics.addToValue(2, copies * label * label);
                 if (this.left == null) {
-                    this.left = new Node(val, label, weight);
+                    this.left = new Node(val, label, weight, copies);
+                    numNodes++;
                 } else {
-                    this.left.insertValue(val, label, weight);
+                    this.left.insertValue(val, label, weight, copies);
                 }
             } // If the new value is greater than the value in a node, update the
             // right (>) distribution and send the value down to the right child node.
             // If no right child exists, create one
             else { // val > cut_point
-                this.rightStatistics.addToValue(0, 1);
-                this.rightStatistics.addToValue(1, label);
-                this.rightStatistics.addToValue(2, label * label);
+                this.rightStatistics.addToValue(0, copies);
+                this.rightStatistics.addToValue(1, copies * label);
+                this.rightStatistics.addToValue(2, copies * label * label);
                 if (this.right == null) {
-                    this.right = new Node(val, label, weight);
+                    this.right = new Node(val, label, weight, copies);
+                    numNodes++;
                 } else {
-                    this.right.insertValue(val, label, weight);
+                    this.right.insertValue(val, label, weight, copies);
                 }
             }
         }
@@ -103,6 +124,12 @@ public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttrib
     // Root node of the E-BST structure for this attribute
     protected Node root = null;
 
+    // Number of nodes in the E-BST, used for the byte size estimate
+    protected int numNodes = 0;
+
+    // Size of one E-BST node with its statistics, measured once
+    protected static long nodeByteSize = -1;
+
     // Global variables for use in the FindBestSplit algorithm
     double sumTotalLeft;
     double sumTotalRight;
@@ -112,12 +139,20 @@ public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttrib
     double countLeftTotal;
 
     public void observeAttributeClass(double attVal, double classVal, double weight) {
+        observeAttributeClass(attVal, classVal, weight, 1);
+    }
+
+    /**
+     * Observes copies of the same value at once, the E-BST counts each copy as one observation
+     */
+    public void observeAttributeClass(double attVal, double classVal, double weight, double copies) {
         if (Double.isNaN(attVal)) { //Instance.isMissingValue(attVal)
         } else {
             if (this.root == null) {
-                this.root = new Node(attVal, classVal, weight);
+                this.root = new Node(attVal, classVal, weight, copies);
+                numNodes++;
             } else {
-                this.root.insertValue(attVal, classVal, weight);
+                this.root.insertValue(attVal, classVal, weight, copies);
             }
         }
     }
@@ -186,6 +221,118 @@ public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttrib
         return currentBestOption;
     }
 
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Estimate of the bytes held by this observer, from the number of nodes in
+     * the E-BST instead of a walk over it
+     */
+    public long calcByteSizeEstimate() {
+        return ObjectSizes.sizeOf(this) + numNodes * getNodeByteSize();
+    }
+
+    /**
+     * Size of one E-BST node with its statistics
+     */
+    public static long getNodeByteSize() {
+        if (nodeByteSize < 0) {
+            Node node = new FIMTDDNumericAttributeClassObserver().new Node(0.0, 0.0, 1.0);
+            // the right statistics are still empty, they grow to the size of the left ones
+            nodeByteSize = ObjectSizes.sizeOf(node) + 2 * ObjectSizes.sizeOf(node.leftStatistics);
+        }
+        return nodeByteSize;
+    }
+
+    /**
+     * Writes the E-BST in depth-first order, as one array of child flags, one
+     * of split points and one of statistics
+     */
+    @Override
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        out.writeInt(numNodes);
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        // iterative, the E-BST of a sorted attribute is as deep as it is large
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        if (this.root != null) {
+            stack.push(this.root);
+        }
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            nodes.add(node);
+            if (node.right != null) {
+                stack.push(node.right);
+            }
+            if (node.left != null) {
+                stack.push(node.left);
+            }
+        }
+
+        int n = nodes.size();
+        int[] flags = new int[n];
+        double[] cutPoints = new double[n];
+        double[] statistics = new double[6 * n];
+        for (int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            flags[i] = (node.left != null ? 1 : 0) | (node.right != null ? 2 : 0)
+                    | (node.rightStatistics.numValues() > 0 ? 4 : 0);
+            cutPoints[i] = node.cut_point;
+            for (int j = 0; j < 3; j++) {
+                statistics[6 * i + j] = node.leftStatistics.getValue(j);
+                statistics[6 * i + 3 + j] = node.rightStatistics.getValue(j);
+            }
+        }
+        out.writeInt(n);
+        out.writeInts(flags, 0, n);
+        out.writeDoubles(cutPoints, 0, n);
+        out.writeDoubles(statistics, 0, 6 * n);
+    }
+
+    @Override
+    public void readCheckpoint(CheckpointInput in) throws IOException {
+        numNodes = in.readInt();
+        int n = in.readInt();
+        int[] flags = new int[n];
+        double[] cutPoints = new double[n];
+        double[] statistics = new double[6 * n];
+        in.readInts(flags, 0, n);
+        in.readDoubles(cutPoints, 0, n);
+        in.readDoubles(statistics, 0, 6 * n);
+
+        this.root = null;
+        // nodes still waiting for a child, the top one gets the next node
+        ArrayDeque<Node> parents = new ArrayDeque<Node>();
+        ArrayDeque<Integer> parentFlags = new ArrayDeque<Integer>();
+        for (int i = 0; i < n; i++) {
+            Node node = new Node(cutPoints[i], 0.0, 1.0, 0);
+            node.leftStatistics = new DoubleVector(Arrays.copyOfRange(statistics, 6 * i, 6 * i + 3));
+            node.rightStatistics = (flags[i] & 4) != 0
+                    ? new DoubleVector(Arrays.copyOfRange(statistics, 6 * i + 3, 6 * i + 6)) : new DoubleVector();
+            if (i == 0) {
+                this.root = node;
+            } else {
+                Node parent = parents.peek();
+                int parentFlag = parentFlags.peek();
+                if ((parentFlag & 1) != 0 && parent.left == null) {
+                    parent.left = node;
+                    if ((parentFlag & 2) == 0) {
+                        parents.pop();
+                        parentFlags.pop();
+                    }
+                } else {
+                    parent.right = node;
+                    parents.pop();
+                    parentFlags.pop();
+                }
+            }
+            if ((flags[i] & 3) != 0) {
+                parents.push(node);
+                parentFlags.push(flags[i]);
+            }
+        }
+    }
+
     /**
      * A method to remove all nodes in the E-BST in which it and all it's
      * children represent 'bad' split points
@@ -98,13 +98,10 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier implement
     @Override
     public void resetLearningImpl() {
         this.classifier = ((Classifier) getPreparedClassOption(this.baseLearnerOption)).copy();
-        System.gc();
         this.newclassifier = this.classifier.copy();
-        System.gc();
         this.classifier.resetLearning();
         this.newclassifier.resetLearning();
         this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftDetectionMethodOption)).copy();
-        System.gc();
         this.newClassifierReset = false;
     }
 
@@ -189,14 +186,12 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier implement
             	//System.out.println("DDM_OUTCONTROL_LEVEL");
                 this.changeDetected++;
                 this.classifier = null;
-                System.gc();
                 System.out.println("DDM_OUTCONTROL_LEVEL Using alternate classifier. "+ examplesSeen + " examplesSeenSinceLastWarningInThisDrift " +examplesSeenSinceLastWarningInThisDrift);
                 this.classifier = this.newclassifier;
                 if (this.classifier instanceof WEKAClassifier) {
                     ((WEKAClassifier) this.classifier).buildClassifier();
                 }
                 this.newclassifier = ((Classifier) getPreparedClassOption(this.baseLearnerOption)).copy();
-                System.gc();
                 this.newclassifier.resetLearning();
                 this.examplesSeen = 0.0;
                 this.sumOfValues = 0.0;
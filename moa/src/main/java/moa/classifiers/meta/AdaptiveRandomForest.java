@@ -24,6 +24,7 @@ import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.AbstractClassifier;
+import moa.classifiers.ClassifierFactory;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
 import moa.core.InstanceExample;
@@ -281,12 +282,13 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         
         ARFHoeffdingTree treeLearner = (ARFHoeffdingTree) getPreparedClassOption(this.treeLearnerOption);
         treeLearner.resetLearning();
+        treeLearner.subspaceSizeOption.setValue(this.subspaceSize);
+        ClassifierFactory treeFactory = new ClassifierFactory(treeLearner);
         
         for(int i = 0 ; i < ensembleSize ; ++i) {
-            treeLearner.subspaceSizeOption.setValue(this.subspaceSize);
             this.ensemble[i] = new ARFBaseLearner(
                 i, 
-                (ARFHoeffdingTree) treeLearner.copy(), 
+                (ARFHoeffdingTree) treeFactory.create(), 
                 (BasicClassificationPerformanceEvaluator) classificationEvaluator.copy(), 
                 this.instancesSeen, 
                 ! this.disableBackgroundLearnerOption.isSet(),
@@ -407,8 +409,8 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                         this.lastWarningOn = instancesSeen;
                         this.numberOfWarningsDetected++;
                         // Create a new bkgTree classifier
-                        ARFHoeffdingTree bkgClassifier = (ARFHoeffdingTree) this.classifier.copy();
-                        bkgClassifier.resetLearning();
+                        // Only the options of the tree are copied, not its model
+                        ARFHoeffdingTree bkgClassifier = (ARFHoeffdingTree) new ClassifierFactory(this.classifier).create();
                         
                         // Resets the evaluator
                         BasicClassificationPerformanceEvaluator bkgEvaluator = (BasicClassificationPerformanceEvaluator) this.evaluator.copy();
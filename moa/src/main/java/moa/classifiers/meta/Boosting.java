@@ -20,33 +20,46 @@
 package moa.classifiers.meta;
 
 import com.github.javacliparser.*;
-import com.henrygouk.sgt.GradHess;
+import com.henrygouk.sgt.FeatureVector;
 import com.henrygouk.sgt.Objective;
 import com.henrygouk.sgt.SoftmaxCrossEntropy;
 import com.henrygouk.sgt.SquaredError;
 import com.yahoo.labs.samoa.instances.Attribute;
-import com.yahoo.labs.samoa.instances.DenseInstance;
 import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.Instances;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.*;
+import moa.classifiers.trees.StreamingGradientTreePredictor;
 import moa.classifiers.core.driftdetection.ADWIN;
+import moa.classifiers.core.driftdetection.ChangeDetector;
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.Checkpointable;
+import moa.core.CommitteeExecutor;
 import moa.core.DoubleVector;
+import moa.core.LatencyHistogram;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ObjectSizes;
+import moa.core.StageLatency;
+import moa.core.TimingUtils;
 import moa.core.Utils;
 import moa.options.ClassOption;
 import moa.tasks.TaskMonitor;
-import org.openjdk.jol.vm.VM;
+import org.openjdk.jol.info.GraphLayout;
 
 
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.stream.IntStream;
 
 import static moa.core.Measurement.getMeasurementNamed;
 
-public class Boosting extends AbstractClassifier implements MultiClassClassifier {
+public class Boosting extends AbstractClassifier implements MultiClassClassifier, Regressor, Checkpointable, AutoCloseable {
 
     private static final long serialVersionUID = 1L;
     
@@ -88,17 +101,55 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
     public IntOption subspaceSizeOption = new IntOption("subspaceSize", 'm',
             "# attributes per subset for each classifier. Negative values = totalAttributes - #attributes", 100, Integer.MIN_VALUE, Integer.MAX_VALUE);
 
+    public MultiChoiceOption executionStrategyOption = new MultiChoiceOption("executionStrategy", 'X',
+            "How the boosting stages and the members of each committee are run.",
+            CommitteeExecutor.STRATEGY_NAMES, CommitteeExecutor.STRATEGY_DESCRIPTIONS, 2);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", -1, -1, Integer.MAX_VALUE);
+
+    public IntOption minParallelSizeOption = new IntOption("minParallelSize", 'T',
+            "Stages or committee members below which work is run inline on the calling thread.", 4, 2, Integer.MAX_VALUE);
+
+    public FlagOption pipelinedTraining = new FlagOption("pipelinedTraining", 'P',
+            "Train the boosting stages as a pipeline of numberOfJobs workers. Ignored with skipOnLoss3SD.");
+
+    public IntOption pipelineQueueSizeOption = new IntOption("pipelineQueueSize", 'Q',
+            "Number of instances each pipeline worker can hold back.", 64, 1, Integer.MAX_VALUE);
+
+    public FlagOption exactByteSize = new FlagOption("exactByteSize", 'E',
+            "Measure the model size by walking the whole object graph instead of summing the running estimates of the trees. Slow, for validating the estimates.");
+
+    public IntOption compiledModelRefreshOption = new IntOption("compiledModelRefresh", 'F',
+            "Predict with a compiled array encoding of the model, recompiled every this many training instances. 0 predicts with the live model. Needs StreamingGradientTreePredictor stages.", 0, 0, Integer.MAX_VALUE);
+
+    public FlagOption sharedDiscretization = new FlagOption("sharedDiscretization", 'A',
+            "Bin the attributes of each instance once for all the stages, with the discretizer options of the base learner. Needs StreamingGradientTreePredictor stages. The instances of the warm start are kept and the stages are trained on them once the bins are fixed, as with replayWarmStart. Sparse instances are trained in time linear in their non-zero attributes.");
+
     public IntOption skipTrainingRoughly = new IntOption("skipTrainingRoughly", 'S',
             "skip training roughly (specified # instances) - 1. Specified value needs to be > 1, for skipp training to happen.", 1, 1, Integer.MAX_VALUE);
 
 //    public FlagOption resetEnsemble = new FlagOption("resetEnsemble", 'r', "Reset ensemble");
 
-//    public FlagOption partialReset = new FlagOption("partialReset", 'p', "partial reset");
-//    public IntOption skipResetAfterDrift = new IntOption("skipResetAfterDrift", 'R',
-//            "skip reset after drift for R instances", 1, 1, Integer.MAX_VALUE);
+    public FlagOption partialReset = new FlagOption("partialReset", 'p',
+            "Rebuild the stages from resetFromStage onwards when the drift detector sees the loss of the boosted score go up. The new stages train in the background while the current ones keep predicting, and replace them after rebuildWarmUp instances if their loss over the second half of the warm up is lower. Trains one instance at a time, pipelinedTraining is not used.");
+    public IntOption skipResetAfterDrift = new IntOption("skipResetAfterDrift", 'R',
+            "skip reset after drift for R instances", 1, 1, Integer.MAX_VALUE);
+
+    public ClassOption driftDetectionMethodOption = new ClassOption("driftDetectionMethod", 'x',
+            "Change detector for drifts and its parameters", ChangeDetector.class, "ADWINChangeDetector -a 1.0E-6");
+
+    public IntOption resetFromStageOption = new IntOption("resetFromStage", 'f',
+            "First stage rebuilt by partialReset, the stages before it are kept.", 0, 0, Integer.MAX_VALUE);
+
+    public IntOption rebuildWarmUpOption = new IntOption("rebuildWarmUp", 'u',
+            "Number of instances the stages rebuilt by partialReset are trained on before they replace the current ones.", 1000, 1, Integer.MAX_VALUE);
 
-//    public ClassOption driftDetectionMethodOption = new ClassOption("driftDetectionMethod", 'x',
-//            "Change detector for drifts and its parameters", ChangeDetector.class, "ADWINChangeDetector -a 1.0E-6");
+    public IntOption latencySamplingOption = new IntOption("latencySampling", 'y',
+            "Time the projection, derivatives, update and scoring of every stage on one training instance in this many, 0 to disable. Intervals of 100 or more keep the overhead under 1%. The mini-batch path is not timed.", 0, 0, Integer.MAX_VALUE);
+
+    public FlagOption registerMBean = new FlagOption("registerMBean", 'J',
+            "Register the stage latencies, split counts and leaves as a JMX MBean, see BoostingStatsMBean.");
 
 
 //    public IntOption driftGap = new IntOption("driftGap", 'G',
@@ -140,21 +191,74 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
     protected BoostingCommittee baseLearner;
     private int committeeSize;
 
+    /** Whether the class attribute is numeric, the stages then fit the residuals of one raw score. */
+    protected boolean regression;
+
     protected ArrayList<ArrayList<Integer>> subspaces;
     protected ArrayList<ArrayList<Integer>> subSpacesForEachBoostingIteration;
+    protected SubspaceProjection[] projections;
+    protected SharedDiscretization sharedDiscretizer;
     protected Objective mObjective;
 
+    /** Shared by the booster and its committees, rebuilt from the options after deserialization. */
+    protected transient CommitteeExecutor executor;
+
+    protected transient BoostingPipeline pipeline;
+
+    /** Latest compiled snapshot of the model, swapped atomically so that scoring threads never see a partial one. */
+    protected transient volatile CompiledBoosting compiledModel;
+
+    private long instancesSinceCompile;
+
     protected double[] lastPrediction = null;
 //    protected ChangeDetector driftDetectorForBooster = null;
 //    protected ArrayList<ChangeDetector> driftDetectorForEachEnsemble;
     private long instancesSeenAtTrainSinceReset;
     private long instancesSeenAtTrain;
 
+    /** Change detector on the loss of the boosted score of the training instances, for partialReset. */
+    protected ChangeDetector driftDetector;
+
+    /** Stages replacing the last rebuild.size() stages of the booster after a drift, null when none is running. */
+    protected ArrayList<BoostingCommittee> rebuild;
+
+    /** Trains the rebuild on its own thread, rebuilt from rebuild after deserialization. */
+    protected transient BoostingPipeline rebuildPipeline;
+
+    private long rebuildInstances;
+
+    /** Losses of the boosted score of the rebuild and of the booster over the second half of the warm up. */
+    private double rebuildLoss;
+
+    private double rebuildBoosterLoss;
+
+    private long driftsDetected;
+
+    private long rebuildsCompleted;
+
+    private long rebuildsDiscarded;
+
+    /** CPU time of the threads that trained the completed rebuilds, in nanoseconds. */
+    private long rebuildCPUTime;
+
+    /** Loss estimate before the last drift and the instances trained since, -1 once the loss is back to it. */
+    private double preDriftLoss;
+
+    private long instancesSinceDrift = -1;
+
+    private long recoveries;
+
+    private long instancesToRecover;
+
+    /** Name of the registered BoostingStats MBean, null when it is not registered. */
+    protected transient ObjectName mBeanName;
+
 
     int [] baseLearnerIndex = null;
     @Override
     public void resetLearningImpl() {
         System.out.println("Re-setting booster.");
+        close();
         if(this.booster != null){
             while (this.booster.size() > 0) {
                 this.booster.remove(0);
@@ -170,6 +274,10 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
             }
             this.subSpacesForEachBoostingIteration = null;
         }
+        this.projections = null;
+        this.sharedDiscretizer = null;
+        this.compiledModel = null;
+        this.instancesSinceCompile = 0;
 //        if(this.driftDetectorForEachEnsemble != null){
 //            while (this.driftDetectorForEachEnsemble.size() > 0) {
 //                this.driftDetectorForEachEnsemble.remove(0);
@@ -179,7 +287,46 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
         this.mObjective = null;
 //        this.driftDetectorForBooster = null;
         this.instancesSeenAtTrainSinceReset = 0;
+        this.rebuild = null;
+        this.driftDetector = null;
+        this.rebuildInstances = 0;
+        this.rebuildLoss = 0.0;
+        this.rebuildBoosterLoss = 0.0;
+        this.driftsDetected = 0;
+        this.rebuildsCompleted = 0;
+        this.rebuildsDiscarded = 0;
+        this.rebuildCPUTime = 0;
+        this.instancesSinceDrift = -1;
+        this.recoveries = 0;
+        this.instancesToRecover = 0;
+    }
+
+    /**
+     * Finishes the pipelined training, stops the threads of the model and unregisters its MBean. Copies have their
+     * own threads and are not registered, and a closed model starts new threads when it is trained or read again.
+     */
+    @Override
+    public void close() {
+        if (this.pipeline != null) {
+            this.pipeline.shutdown();
+            this.pipeline = null;
+        }
+        if (this.rebuildPipeline != null) {
+            this.rebuildPipeline.drain();
+            this.rebuildCPUTime += this.rebuildPipeline.getCPUTime();
+            this.rebuildPipeline.shutdown();
+            this.rebuildPipeline = null;
+        }
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+        if (this.mBeanName != null) {
+            BoostingStats.unregister(this.mBeanName);
+            this.mBeanName = null;
+        }
     }
+
     @Override
     public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
 
@@ -240,90 +387,13 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
 //        return inst.numInputAttributes() + totalOneHotEncodedSize - totalOneHotEncodedInstances;
 //    }
 
-    public static Instance getSubInstance(Instance instance, double weight, ArrayList<Integer> subSpaceFeaturesIndexes, boolean setLabel, double labelValue, boolean useOneHotEncoding){
-        Instances subset;
-        ArrayList<Attribute> attSub = new ArrayList<>();
-        ArrayList<Double> v = new ArrayList<>();
-        Attribute classAttribute;
-        int totalOneHotEncodedSize = 0;
-        int totalOneHotEncodedInstances = 0;
-        int i = 0;
-        // Add attributes of the selected subset
-        for (Integer featuresIndex : subSpaceFeaturesIndexes) {
-//            attSub.add(instance.attribute(featuresIndex));
-            int index = i + totalOneHotEncodedSize - totalOneHotEncodedInstances;
-            if (useOneHotEncoding && instance.attribute(featuresIndex).isNominal() && (instance.attribute(featuresIndex).numValues() > 2) ){
-                // Do one hot-encoding
-//                featureValuesArrayToSet[index + (int)instance.value(i)] = 1.0f;
-                for (int j = 0; j < instance.attribute(featuresIndex).numValues(); j++){
-//                    attSub.set(index + j, new Attribute(""));
-//                    v.set(index + j, Double.valueOf(0.0));
-                    attSub.add(new Attribute(""));
-                    v.add(Double.valueOf(0.0));
-                }
-                v.set(index + (int)instance.value(featuresIndex), Double.valueOf(1.0));
-
-                totalOneHotEncodedSize += instance.attribute(featuresIndex).numValues();
-                totalOneHotEncodedInstances ++;
-//                attSub.set(index + (int)instance.value(i), new Attribute(""));
-            }else {
-//                featureValuesArrayToSet[index] = inst.value(i);
-//                attSub.set(index, instance.attribute(featuresIndex));
-//                v.set(index, Double.valueOf(instance.value(subSpaceFeaturesIndexes.get(featuresIndex))));
-                attSub.add(instance.attribute(featuresIndex));
-                v.add(Double.valueOf(instance.value(featuresIndex)));
-            }
-            i++;
-        }
-        // add class attribute
-        if (setLabel){
-            // adds a numeric class attribute
-            classAttribute = new Attribute("classAttribute");
-        }else{
-            classAttribute = instance.classAttribute();
-        }
-        attSub.add(classAttribute);
-        v.add(Double.valueOf(setLabel ? labelValue : instance.classValue()));
-        subset = new Instances("Subsets Candidate Instances", attSub, 100);
-        subset.setClassIndex(subset.numAttributes()-1);
-
-//        prepareRandomSubspaceInstance(instance,1);
-        // If there is any instance lingering in the subset, remove it.
-//        while(subset.numInstances() > 0)
-//            subset.delete(0);
-
-//        double[] values = new double[subset.numAttributes()];
-//        for(int j = 0 ; j < subset.numAttributes() -1; ++j) {
-//            values[j] = instance.value(subSpaceFeaturesIndexes.get(j));
-//        }
-
-        // Set the class value for each value array.
-//        values[values.length-1] = setLabel ? labelValue : instance.classValue();
-        double[] values = new double[v.size()];
-        for (int k=0; k < v.size(); k++) {
-            values[k] = v.get(k).doubleValue();
-        }
-//        double[] values = v.stream()
-//                .mapToDouble(Double::doubleValue).toArray();
-        DenseInstance subInstance = new DenseInstance(weight, values);
-        subInstance.setWeight(weight);
-        subInstance.setDataset(subset);
-
-        subset.add(subInstance);
-        return subInstance;
-    }
-
     public void initEnsemble(Instance inst){
         System.out.println("Initializing booster.");
         Attribute target = inst.classAttribute();
 
-        if (useSquaredLoss.isSet()){
-            System.out.println("Using SquaredError");
-            mObjective = new SquaredError();
-        }else{
-            System.out.println("Using SoftmaxCrossEntropy");
-            mObjective = new SoftmaxCrossEntropy();
-        }
+        regression = target.isNumeric();
+        System.out.println(useSquaredLoss.isSet() || regression ? "Using SquaredError" : "Using SoftmaxCrossEntropy");
+        mObjective = createObjective();
 
 
         if (booster == null){
@@ -345,13 +415,13 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
             }else {
                 committeeSize = target.numValues() - 1;
             }
-            baseLearner.committeeSize = committeeSize;
-            for (int i=0; i < this.baseLearnerArray.size(); i++){
-                this.baseLearnerArray.get(i).committeeSize = committeeSize;
-            }
         } else {
-            String currentMethod = new Exception().getStackTrace()[0].getMethodName();
-            throw new UnsupportedOperationException(this.getClass().getName() + " " +currentMethod+ " " + "Regression/Numeric targets are not supported yet");
+            // one raw score, the prediction itself
+            committeeSize = 1;
+        }
+        baseLearner.committeeSize = committeeSize;
+        for (int i=0; i < this.baseLearnerArray.size(); i++){
+            this.baseLearnerArray.get(i).committeeSize = committeeSize;
         }
         System.out.println("CommitteeSize: " + committeeSize);
 
@@ -361,12 +431,12 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
         lossEstimator = new ADWIN(1.0E-3);
 
         baseLearnerIndex = this.classifierRandom.ints(0, baseLearnerArray.size()).limit(numberOfboostingIterations.getValue()).toArray();
-        for (int i = 0; i< numberOfboostingIterations.getValue(); i ++) {
-            if (useGradientOverHessianLabels.isSet() && useHeterogeneousEnsemble.isSet()){
-                booster.add((BoostingCommittee) baseLearnerArray.get(baseLearnerIndex[i]).copy());
-            }else {
-                booster.add((BoostingCommittee) baseLearner.copy());
-            }
+        booster.addAll(createStages(0, numberOfboostingIterations.getValue()));
+        if (partialReset.isSet()) {
+            driftDetector = ((ChangeDetector) getPreparedClassOption(this.driftDetectionMethodOption)).copy();
+        }
+        if (registerMBean.isSet() && mBeanName == null) {
+            mBeanName = BoostingStats.register(this);
         }
 
 //        for (int i=0; i< ensembleSize.getValue(); i ++) {
@@ -425,45 +495,229 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
         for (int i = 0; i < numberOfboostingIterations.getValue(); i++){
             subSpacesForEachBoostingIteration.add(this.subspaces.get(subSpaceIndexes[i]));
         }
+        // build the header of each sub instance once, training and prediction only fill in the values
+        projections = new SubspaceProjection[numberOfboostingIterations.getValue()];
+        for (int i = 0; i < projections.length; i++){
+            projections[i] = new SubspaceProjection(inst, subSpacesForEachBoostingIteration.get(i), useGradientOverHessianLabels.isSet(), useOneHotEncoding.isSet());
+        }
+        for (BoostingCommittee b : booster) {
+            b.setExecutor(getExecutor());
+        }
+        sharedDiscretizer = null;
+        if (sharedDiscretization.isSet()) {
+            if (!(baseLearner instanceof StreamingGradientTreePredictor)) {
+                throw new RuntimeException("Could not share the discretizer of " + baseLearner.getClass().getName()
+                        + ", only StreamingGradientTreePredictor stages are supported.");
+            }
+            StreamingGradientTreePredictor sgt = (StreamingGradientTreePredictor) baseLearner;
+            sharedDiscretizer = new SharedDiscretization(inst, projections, useOneHotEncoding.isSet(),
+                    sgt.createDiscretizer(), sgt.warmStart.getValue());
+        }
         System.out.println("Ensemble size: "+ booster.size() + " subSpacesForEnsemble size:" + subSpacesForEachBoostingIteration.size());
+        if (compiledModelRefreshOption.getValue() > 0) {
+            compile();
+        }
     }
 
-//    public void reInitEnsembleFrom(int from){
-//        System.out.println("Re-init Ensemble from " + from);
-//        if (ensemble == null){
-//            ensemble = new ArrayList<>();
-//        } else {
-//            for (int i = ensembleSize.getValue()-1; i >= from; i--){
-//                ensemble.remove(i);
-//            }
-//        }
-//        for (int i = from; i < ensembleSize.getValue(); i++) {
-//            if (useWeightedInstances.isSet() && useHeterogeneousEnsemble.isSet()){
-//                ensemble.add((BoostingCommittee) baseLearnerArray.get(baseLearnerIndex[i]).copy());
-//            }else {
-//                ensemble.add((BoostingCommittee) baseLearner.copy());
-//            }
-//            driftDetectorForEachEnsemble.get(i).resetLearning();
-//        }
-//        instancesSeenAtTrainSinceReset = 0;
-//    }
+    protected Objective createObjective() {
+        if (regression) {
+            return new SquaredError(true);
+        }
+        return useSquaredLoss.isSet() ? new SquaredError() : new SoftmaxCrossEntropy();
+    }
 
-//    boolean detectChange(double input, ChangeDetector driftDetector){
-//        boolean upwardDriftDetected = false;
-//        double previousLossEstimation = driftDetector.getEstimation();
-//        driftDetector.input(input);
-//        double currentLossEstimation = driftDetector.getEstimation();
-//        if (driftDetector.getChange()){
-//            System.out.println("Drift detected. at " + instancesSeenAtTrain);
-//            if (currentLossEstimation > previousLossEstimation){
-//                System.out.println("At " + instancesSeenAtTrain + " since reset " +instancesSeenAtTrainSinceReset + ": currentLossEstimation: "+ currentLossEstimation + " > previousLossEstimation: " + previousLossEstimation);
-//                if (instancesSeenAtTrainSinceReset > skipResetAfterDrift.getValue()) {
-//                    upwardDriftDetected = true;
-//                }
-//            }
-//        }
-//        return upwardDriftDetected;
-//    }
+    /**
+     * Factor applied to the scores of the stages when predicting, the learning rate for regression and 1 otherwise.
+     */
+    double getStageScale() {
+        return regression ? learningRateOption.getValue() : 1.0;
+    }
+
+    int committeeSize() {
+        return committeeSize;
+    }
+
+    long getInstancesSeenAtTrain() {
+        return instancesSeenAtTrain;
+    }
+
+    /**
+     * Sampled latency of the phases of training stage m, for the stages created with latencySampling.
+     */
+    public StageLatency getStageLatency(int m) {
+        return booster.get(m).getLatency();
+    }
+
+    /** Latency tracker of a new stage, null when latencySampling is 0. */
+    protected StageLatency createStageLatency() {
+        int interval = latencySamplingOption.getValue();
+        return interval > 0 ? new StageLatency(interval) : null;
+    }
+
+    protected BoostingPipeline getPipeline() {
+        if (pipeline == null) {
+            pipeline = new BoostingPipeline(this, getExecutor().getNumberOfJobs(), pipelineQueueSizeOption.getValue());
+        }
+        return pipeline;
+    }
+
+    /** Waits for the pipelined training of the instances seen so far, before the model is read or copied. */
+    protected void drainPipeline() {
+        if (pipeline != null) {
+            pipeline.drain();
+        }
+    }
+
+    protected CommitteeExecutor getExecutor() {
+        if (executor == null) {
+            int numberOfJobs = numberOfJobsOption.getValue();
+            CommitteeExecutor.Strategy strategy = numberOfJobs == 0 ?
+                    CommitteeExecutor.Strategy.SEQUENTIAL : CommitteeExecutor.getStrategy(executionStrategyOption.getChosenIndex());
+            executor = new CommitteeExecutor(strategy, numberOfJobs, minParallelSizeOption.getValue());
+            if (booster != null) {
+                for (BoostingCommittee b : booster) {
+                    b.setExecutor(executor);
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * New untrained stages from to to - 1, with the base learners chosen for them in initEnsemble.
+     */
+    protected ArrayList<BoostingCommittee> createStages(int from, int to) {
+        // the stages are created from the options of the base learners, copy() would serialize them once per stage
+        ClassifierFactory baseLearnerFactory = new ClassifierFactory(baseLearner);
+        ClassifierFactory[] baseLearnerArrayFactories = new ClassifierFactory[baseLearnerArray.size()];
+        for (int i = 0; i < baseLearnerArrayFactories.length; i++) {
+            baseLearnerArrayFactories[i] = new ClassifierFactory(baseLearnerArray.get(i));
+        }
+        ArrayList<BoostingCommittee> stages = new ArrayList<>();
+        for (int i = from; i < to; i ++) {
+            BoostingCommittee stage;
+            if (useGradientOverHessianLabels.isSet() && useHeterogeneousEnsemble.isSet()){
+                stage = (BoostingCommittee) baseLearnerArrayFactories[baseLearnerIndex[i]].create();
+            }else {
+                stage = (BoostingCommittee) baseLearnerFactory.create();
+            }
+            stage.committeeSize = committeeSize;
+            stage.setLatency(createStageLatency());
+            stages.add(stage);
+        }
+        return stages;
+    }
+
+    /**
+     * Feeds the loss of the boosted score of a training instance to the drift detector. An increase of the loss
+     * starts rebuilding the stages from resetFromStage, unless a rebuild is running or the last one completed less
+     * than skipResetAfterDrift instances ago. A rebuild that has seen rebuildWarmUp instances replaces the stages
+     * it was built for if its loss over the second half of them is lower, and is discarded otherwise.
+     */
+    protected void detectDrift(double loss) {
+        if (rebuild != null && isRebuildScored()) {
+            rebuildBoosterLoss += loss;
+        }
+        double previousLossEstimation = driftDetector.getEstimation();
+        driftDetector.input(loss);
+        if (instancesSinceDrift >= 0) {
+            instancesSinceDrift++;
+            if (driftDetector.getEstimation() <= preDriftLoss) {
+                recoveries++;
+                instancesToRecover += instancesSinceDrift;
+                instancesSinceDrift = -1;
+            }
+        }
+        if (driftDetector.getChange() && driftDetector.getEstimation() > previousLossEstimation) {
+            driftsDetected++;
+            if (instancesSinceDrift < 0) {
+                preDriftLoss = previousLossEstimation;
+                instancesSinceDrift = 0;
+            }
+            if (rebuild == null && instancesSeenAtTrainSinceReset > skipResetAfterDrift.getValue()) {
+                startRebuild();
+            }
+        }
+        if (rebuild != null && rebuildInstances >= rebuildWarmUpOption.getValue()) {
+            drainRebuild();
+            if (rebuildLoss < rebuildBoosterLoss) {
+                completeRebuild();
+            } else {
+                rebuildsDiscarded++;
+                stopRebuild();
+            }
+        }
+    }
+
+    /** Whether the last instance submitted to the rebuild is in the second half of the warm up. */
+    private boolean isRebuildScored() {
+        return rebuildInstances > rebuildWarmUpOption.getValue() / 2;
+    }
+
+    /** Called by the rebuild pipeline with the loss of the boosted score of the scored instances. */
+    void addRebuildLoss(double loss) {
+        rebuildLoss += loss;
+    }
+
+    protected void startRebuild() {
+        int from = Math.min(resetFromStageOption.getValue(), booster.size() - 1);
+        rebuild = createStages(from, booster.size());
+        rebuildLoss = 0.0;
+        rebuildBoosterLoss = 0.0;
+        rebuildInstances = 0;
+    }
+
+    protected BoostingPipeline getRebuildPipeline() {
+        if (rebuildPipeline == null) {
+            // the rebuild runs on a single thread, so its CPU time is that of the thread
+            CommitteeExecutor sequential = new CommitteeExecutor(CommitteeExecutor.Strategy.SEQUENTIAL, 1, minParallelSizeOption.getValue());
+            for (BoostingCommittee stage : rebuild) {
+                stage.setExecutor(sequential);
+            }
+            TimingUtils.enablePreciseTiming();
+            rebuildPipeline = new BoostingPipeline(this, rebuild, booster.size() - rebuild.size(), 1, pipelineQueueSizeOption.getValue(), false);
+        }
+        return rebuildPipeline;
+    }
+
+    /**
+     * Stops the rebuild thread, counting its CPU time, and drops the rebuild.
+     */
+    protected void stopRebuild() {
+        if (rebuildPipeline != null) {
+            rebuildPipeline.drain();
+            rebuildCPUTime += rebuildPipeline.getCPUTime();
+            rebuildPipeline.shutdown();
+            rebuildPipeline = null;
+        }
+        rebuild = null;
+    }
+
+    /** Waits for the rebuild to be trained on the instances seen so far. */
+    protected void drainRebuild() {
+        if (rebuildPipeline != null) {
+            rebuildPipeline.drain();
+        }
+    }
+
+    /**
+     * Replaces the last stages of the booster by the rebuild.
+     */
+    protected void completeRebuild() {
+        ArrayList<BoostingCommittee> stages = rebuild;
+        stopRebuild();
+        int from = booster.size() - stages.size();
+        for (int i = 0; i < stages.size(); i++) {
+            stages.get(i).setExecutor(getExecutor());
+            booster.set(from + i, stages.get(i));
+        }
+        rebuildsCompleted++;
+        instancesSeenAtTrainSinceReset = 0;
+        // the snapshot scores the replaced stages
+        if (compiledModelRefreshOption.getValue() > 0) {
+            compile();
+        }
+    }
 
     public void trainBoosterUsingSoftmaxCrossEntropyLoss(Instance inst){
         instancesSeenAtTrain++;
@@ -473,8 +727,7 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
 //            initEnsemble(inst);
 //        }
 //        double loss = 0.0;
-        double[] groundTruth = new double[inst.numClasses()];
-        groundTruth[(int) inst.classValue()] = 1.0;
+        double[] groundTruth = createGroundTruth(inst);
 
 //        loss = (new SoftmaxCrossEntropy()).loss(groundTruth, lastPrediction); // assumes test then train
 //        if (detectChange(loss, driftDetectorForBooster)){
@@ -490,17 +743,40 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
             initEnsemble(inst);
         }
         // get initial score, this is 0.0 for all the trees in the committee
-        DoubleVector rawScore = new DoubleVector(BoostingCommittee.getScoresWhenNullTree(committeeSize));
+        double[] rawScore = BoostingCommittee.getScoresWhenNullTree(committeeSize);
+        // derivative buffers, reused by every boosting iteration of this instance
+        if (pipelinedTraining.isSet() && !skipOnLossLessThan3SD.isSet() && !partialReset.isSet()) {
+            FeatureVector features = null;
+            if (sharedDiscretizer != null) {
+                features = sharedDiscretizer.encodeForTraining(inst, groundTruth);
+                if (features == null) {
+                    // kept by the discretizer until the bins are fixed
+                    return;
+                }
+                // nothing was submitted during the warm start, so the workers are idle while the stages catch up
+                sharedDiscretizer.replayWarmStart(this::replayWarmStartInstance);
+            }
+            // the instance is trained after this call returns, so the pipeline gets its own copy
+            getPipeline().submit(inst.copy(), groundTruth, features);
+            return;
+        }
+        double[] gradients = new double[committeeSize];
+        double[] hessians = new double[committeeSize];
         double loss = 0.0;
+        boolean skipped = false;
+        FeatureVector features = null;
         for (int m = 0; m < booster.size(); m++) {
-            Instance subInstance;
             // compute Derivatives (g and h) using y and summed up raw score, for all the trees in the committee
             // computeNegativeResidual=true only when NOT useWeightedInstances.isSet()
             // clipPredictions=true only when NOT useWeightedInstances.isSet()
 //            GradHess[] gradHess = mObjective.computeDerivatives(groundTruth, rawScore.getArrayRef(), !useWeightedInstances.isSet());
 
             // at m th iteration, gets the adjustment by the m th committee considering all the previous adjustments
-            GradHess[] gradHess = mObjective.computeDerivatives(groundTruth, rawScore.getArrayRef(), computeNegativeResidual.isSet(), clipPredictions.isSet());
+            StageLatency latency = booster.get(m).getLatency();
+            latency.sample();
+            long start = latency.start();
+            mObjective.computeDerivatives(groundTruth, rawScore, computeNegativeResidual.isSet(), clipPredictions.isSet(), gradients, hessians);
+            latency.stop(StageLatency.Phase.DERIVATIVES, start);
             loss += mObjective.lossForAllClasses;
             boolean skipTrain = false;
             if (skipOnLossLessThan3SD.isSet() && (m == 0)){
@@ -512,9 +788,80 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
             }
             if (skipTrain == true) {
                 skipCount += 1.0;
+                skipped = true;
                 break;
             }
 
+            if (m == 0 && sharedDiscretizer != null) {
+                // after the loss check, so that skipped instances are not counted in the warm start
+                features = sharedDiscretizer.encodeForTraining(inst, groundTruth);
+                sharedDiscretizer.replayWarmStart(this::replayWarmStartInstance);
+            }
+            if (sharedDiscretizer != null && features == null) {
+                // kept by the discretizer until the bins are fixed, every stage is still a null tree
+                continue;
+            }
+            if (rebuild != null && m == booster.size() - rebuild.size()) {
+                // the rebuilt stages start from the same raw score as the stages they replace
+                rebuildInstances++;
+                getRebuildPipeline().submit(inst.copy(), groundTruth, rawScore.clone(), features, isRebuildScored());
+            }
+            trainStage(m, inst, features, rawScore, gradients, hessians);
+        }
+        lossEstimator.setInput(loss);
+        if (driftDetector != null && !skipped) {
+            // loss of the boosted score, after the last stage
+            mObjective.computeDerivatives(groundTruth, rawScore, computeNegativeResidual.isSet(), clipPredictions.isSet(), gradients, hessians);
+            detectDrift(mObjective.lossForAllClasses);
+        }
+    }
+
+    /**
+     * Trains every stage on an instance of the warm start of the shared discretizer, once the bins are fixed. Every
+     * stage was a null tree during the warm start, so all of them get the derivatives of the initial raw score, as
+     * the stages recorded them for replayWarmStart with their own discretizers. Its loss was counted on arrival.
+     */
+    protected void replayWarmStartInstance(Instance inst, double[] groundTruth, FeatureVector features) {
+        double[] gradients = new double[committeeSize];
+        double[] hessians = new double[committeeSize];
+        mObjective.computeDerivatives(groundTruth, BoostingCommittee.getScoresWhenNullTree(committeeSize),
+                computeNegativeResidual.isSet(), clipPredictions.isSet(), gradients, hessians);
+        for (int m = 0; m < booster.size(); m++) {
+            StreamingGradientTreePredictor stage = (StreamingGradientTreePredictor) booster.get(m);
+            stage.trainOnInstanceImpl(sharedDiscretizer.getStageFeatures(features, m), sharedDiscretizer.getStageFeatureInfo(m),
+                    inst, 1.0, gradients, hessians);
+        }
+    }
+
+    /**
+     * Target of the raw scores, the one-hot encoded class, or the numeric class value for regression.
+     */
+    protected double[] createGroundTruth(Instance inst) {
+        if (regression) {
+            return new double[] {inst.classValue()};
+        }
+        double[] groundTruth = new double[inst.numClasses()];
+        groundTruth[(int) inst.classValue()] = 1.0;
+        return groundTruth;
+    }
+
+    /**
+     * Trains boosting stage m on inst, given the derivatives of the raw score of stages 0 to m-1, and adds the
+     * scaled score of stage m to rawScore. features are the bins of inst from the shared discretizer, if any.
+     */
+    protected void trainStage(int m, Instance inst, FeatureVector features, double[] rawScore, double[] gradients, double[] hessians) {
+        trainStage(booster.get(m), m, inst, features, rawScore, gradients, hessians);
+    }
+
+    /**
+     * trainStage for stage, which takes the place of stage m, the booster's own or one being rebuilt.
+     */
+    protected void trainStage(BoostingCommittee stage, int m, Instance inst, FeatureVector features, double[] rawScore, double[] gradients, double[] hessians) {
+        if (sharedDiscretizer != null) {
+            trainStageOnSharedFeatures((StreamingGradientTreePredictor) stage, m, inst, features, rawScore, gradients, hessians);
+            return;
+        }
+        Instance subInstance;
 //            loss += mObjective.loss(groundTruth);
 //            loss = (new SquaredError()).loss(groundTruth, rawScore.getArrayRef());
 //            if (detectChange(loss, driftDetectorForEachEnsemble.get(m))){
@@ -524,35 +871,119 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
 //                }
 //            }
 //            subInstance = inst;
-            // create a sub instance from the inst
-            boolean setLabel = false;
-            if(useGradientOverHessianLabels.isSet()){
-                setLabel = true;
+        // create a sub instance from the inst
+        StageLatency latency = stage.getLatency();
+        long start = latency.start();
+        // committee members may keep the instances they are trained on, so this one gets its own values
+        subInstance = projections[m].projectCopy(inst, 1.0, -1);
+        latency.stop(StageLatency.Phase.PROJECTION, start);
+
+        start = latency.start();
+        if(useGradientOverHessianLabels.isSet()){
+            Instance[] subInstArray = createCommitteeInstances(subInstance, gradients, hessians);
+            // train each member of the committee using sub instance with relevant weight and pseudo-label
+            stage.trainOnInstanceImpl(subInstArray, multipleIterationByHessian.getValue(), hessians);
+//                for (int i=0; i < (int) trainTimes; i++){
+//                    booster.get(m).trainOnInstanceImpl(subInstArray, multipleIterationByHessian.isSet(), gradHess);
+//                }
+        }else { // use unweighted Instances
+            if (regression) {
+                addStageScoreToDerivatives(stage.getScoresForInstance(subInstance), gradients, hessians);
             }
-            subInstance = getSubInstance(inst, 1.0, subSpacesForEachBoostingIteration.get(m), setLabel, -1, useOneHotEncoding.isSet());
+            // train using StreamingGradientTreePredictor, each member of the committee using sub instance
+            stage.trainOnInstanceImpl(
+                    subInstance,
+                    gradients,
+                    hessians,
+                    null  /* Need to pass rawScore, only for SGT semiSupervisedOption. We don't use it here */);
+        }
+        latency.stop(StageLatency.Phase.UPDATE, start);
+
+        // get the score from the committee for current subInstance (here we use subInstance for useWeightedInstances==true, as we do not need the label)
+        start = latency.start();
+        double[] currentScore = stage.getScoresForInstance(subInstance);
+        // scale the score by learning rate
+        double learningRate = learningRateOption.getValue();
+//            if (dynamicLearningRate.isSet()) {
+//                for (int i = 0; i < gradHess.length; i++) {
+//                    learningRate += Math.abs(gradHess[i].gradient);
+//                }
+//                learningRate = learningRate / gradHess.length * learningRateOption.getValue();
+//            }else{
+//                learningRate = learningRateOption.getValue();
+//            }
+        // add the current sore, scaled by the learning rate, to existing raw score
+        for (int i = 0; i < rawScore.length; i++) {
+            rawScore[i] += currentScore[i] * learningRate;
+        }
+        latency.stop(StageLatency.Phase.SCORING, start);
+    }
+
+    /**
+     * trainStage for stages that read their bins from the shared discretizer, no sub instance is built.
+     */
+    protected void trainStageOnSharedFeatures(StreamingGradientTreePredictor stage, int m, Instance inst, FeatureVector features, double[] rawScore, double[] gradients, double[] hessians) {
+        StageLatency latency = stage.getLatency();
+        long start = latency.start();
+        FeatureVector stageFeatures = sharedDiscretizer.getStageFeatures(features, m);
+        latency.stop(StageLatency.Phase.PROJECTION, start);
+
+        start = latency.start();
+        if (regression) {
+            addStageScoreToDerivatives(stage.getScoresForFeatures(stageFeatures), gradients, hessians);
+        }
+        // the sub instances of the other stages have a weight of 1
+        stage.trainOnInstanceImpl(stageFeatures, sharedDiscretizer.getStageFeatureInfo(m), inst, 1.0, gradients, hessians);
+        latency.stop(StageLatency.Phase.UPDATE, start);
+
+        start = latency.start();
+        double[] currentScore = stage.getScoresForFeatures(stageFeatures);
+        double learningRate = learningRateOption.getValue();
+        for (int i = 0; i < rawScore.length; i++) {
+            rawScore[i] += currentScore[i] * learningRate;
+        }
+        latency.stop(StageLatency.Phase.SCORING, start);
+    }
 
-            if(useGradientOverHessianLabels.isSet()){
-                //create sub instance for each committee member
+    /**
+     * For regression, moves the derivatives given to a stage trained on them to the raw score that includes the
+     * current score of the stage itself. The stage then settles on the residual of the previous stages, instead of
+     * taking another step towards it on every update. Exact for the squared error.
+     */
+    protected void addStageScoreToDerivatives(double[] stageScore, double[] gradients, double[] hessians) {
+        // without computeNegativeResidual the derivatives are those of the negative residual
+        double sign = computeNegativeResidual.isSet() ? 1.0 : -1.0;
+        double learningRate = learningRateOption.getValue();
+        for (int i = 0; i < gradients.length; i++) {
+            gradients[i] += sign * hessians[i] * learningRate * stageScore[i];
+        }
+    }
 
-                Instance[] subInstArray = new Instance[gradHess.length];
-                if (gradHess.length == 1) {
-                    subInstArray[0] = subInstance;
-                }
-                else{
-                    IntStream.range(0, gradHess.length)
-                            .forEach(i -> subInstArray[i] = subInstance.copy());
+    /**
+     * Creates the sub instance of every committee member, weighted by its hessian and labelled with gradient/hessian.
+     */
+    protected Instance[] createCommitteeInstances(Instance subInstance, double[] gradients, double[] hessians) {
+        //create sub instance for each committee member
+
+        Instance[] subInstArray = new Instance[committeeSize];
+        if (committeeSize == 1) {
+            subInstArray[0] = subInstance;
+        }
+        else{
+            IntStream.range(0, committeeSize)
+                    .forEach(i -> subInstArray[i] = subInstance.copy());
 //                        .mapToObj(i -> subInstance.copy()).toArray(Instance[]::new);
-                }
-                if (!useWeightOf1.isSet()) { // set each sub instance weight to hessian, when doNotUseHessianAsWeight is NOT set
+        }
+        if (!useWeightOf1.isSet()) { // set each sub instance weight to hessian, when doNotUseHessianAsWeight is NOT set
 //                    useCeilingForWeights.isSet(), pass Math.ceil(gradHess[i].hessian) as weight
-                    IntStream.range(0, subInstArray.length)
+            IntStream.range(0, subInstArray.length)
 //                            .parallel()
-                            .forEach(i -> subInstArray[i].setWeight( useCeilingForWeights.isSet() ? Math.ceil(multiplyHessianBy10ForCeiling.isSet() ? gradHess[i].hessian * 10 : gradHess[i].hessian) : gradHess[i].hessian));
-                }
-                // set each sub instance pseudo label to gradient/hessian
-                IntStream.range(0, subInstArray.length)
+                    .forEach(i -> subInstArray[i].setWeight( useCeilingForWeights.isSet() ? Math.ceil(multiplyHessianBy10ForCeiling.isSet() ? hessians[i] * 10 : hessians[i]) : hessians[i]));
+        }
+        // set each sub instance pseudo label to gradient/hessian
+        IntStream.range(0, subInstArray.length)
 //                        .parallel()
-                        .forEach(i -> subInstArray[i].setClassValue(gradHess[i].gradient/gradHess[i].hessian));
+                .forEach(i -> subInstArray[i].setClassValue(gradients[i]/hessians[i]));
 
 //                double avgHessian = 0.0;
 //                for (int i=0; i < subInstArray.length; i++){
@@ -560,63 +991,345 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
 //                }
 //                avgHessian = avgHessian / subInstArray.length;
 //                double trainTimes = multipleIterationByHessian.isSet() ? Math.ceil(avgHessian * 10) : 1.0;
-                // train each member of the committee using sub instance with relevant weight and pseudo-label
-                booster.get(m).trainOnInstanceImpl(subInstArray, multipleIterationByHessian.getValue(), gradHess);
-//                for (int i=0; i < (int) trainTimes; i++){
-//                    booster.get(m).trainOnInstanceImpl(subInstArray, multipleIterationByHessian.isSet(), gradHess);
-//                }
-            }else { // use unweighted Instances
-                // train using StreamingGradientTreePredictor, each member of the committee using sub instance
-                booster.get(m).trainOnInstanceImpl(
-                        subInstance,
-                        gradHess,
-                        null  /* Need to pass rawScore, only for SGT semiSupervisedOption. We don't use it here */);
+        return subInstArray;
+    }
+
+    /**
+     * Mini-batch version of trainStage, trains stage m on the whole batch and then adds its scaled scores to
+     * rawScores.
+     */
+    protected void trainStageOnBatch(int m, Instance[] batch, FeatureVector[] features, double[][] rawScores, double[][] gradients, double[][] hessians) {
+        if (sharedDiscretizer != null) {
+            StreamingGradientTreePredictor stage = (StreamingGradientTreePredictor) booster.get(m);
+            FeatureVector[] stageFeatures = new FeatureVector[batch.length];
+            double[] weights = new double[batch.length];
+            for (int b = 0; b < batch.length; b++) {
+                stageFeatures[b] = sharedDiscretizer.getStageFeatures(features[b], m);
+                weights[b] = 1.0;
+                if (regression) {
+                    addStageScoreToDerivatives(stage.getScoresForFeatures(stageFeatures[b]), gradients[b], hessians[b]);
+                }
             }
+            stage.trainOnBatch(stageFeatures, sharedDiscretizer.getStageFeatureInfo(m), batch, weights, gradients, hessians);
 
-            // get the score from the committee for current subInstance (here we use subInstance for useWeightedInstances==true, as we do not need the label)
-            DoubleVector currentScore = new DoubleVector(booster.get(m).getScoresForInstance(subInstance));
-            // scale the score by learning rate
             double learningRate = learningRateOption.getValue();
-//            if (dynamicLearningRate.isSet()) {
-//                for (int i = 0; i < gradHess.length; i++) {
-//                    learningRate += Math.abs(gradHess[i].gradient);
-//                }
-//                learningRate = learningRate / gradHess.length * learningRateOption.getValue();
-//            }else{
-//                learningRate = learningRateOption.getValue();
-//            }
-            currentScore.scaleValues(learningRate);
-            // add the current sore to existing raw score
-            rawScore.addValues(currentScore);
+            for (int b = 0; b < batch.length; b++) {
+                double[] currentScore = stage.getScoresForFeatures(stageFeatures[b]);
+                for (int i = 0; i < rawScores[b].length; i++) {
+                    rawScores[b][i] += currentScore[i] * learningRate;
+                }
+            }
+            return;
         }
-        lossEstimator.setInput(loss);
+
+        Instance[] subInstances = new Instance[batch.length];
+        for (int b = 0; b < batch.length; b++) {
+            // every sub instance of the batch needs its own values, project reuses one buffer per thread
+            subInstances[b] = projections[m].projectCopy(batch[b], 1.0, -1);
+        }
+
+        if (useGradientOverHessianLabels.isSet()) {
+            Instance[][] subInstArrays = new Instance[batch.length][];
+            for (int b = 0; b < batch.length; b++) {
+                subInstArrays[b] = createCommitteeInstances(subInstances[b], gradients[b], hessians[b]);
+            }
+            booster.get(m).trainOnBatch(subInstArrays, multipleIterationByHessian.getValue(), hessians);
+        } else {
+            if (regression) {
+                double[][] stageScores = booster.get(m).getScoresForBatch(subInstances);
+                for (int b = 0; b < batch.length; b++) {
+                    addStageScoreToDerivatives(stageScores[b], gradients[b], hessians[b]);
+                }
+            }
+            booster.get(m).trainOnBatch(subInstances, gradients, hessians);
+        }
+
+        double[][] currentScores = booster.get(m).getScoresForBatch(subInstances);
+        double learningRate = learningRateOption.getValue();
+        for (int b = 0; b < batch.length; b++) {
+            for (int i = 0; i < rawScores[b].length; i++) {
+                rawScores[b][i] += currentScores[b][i] * learningRate;
+            }
+        }
+    }
+
+    /**
+     * Trains on a mini-batch of instances. Each stage is trained on the whole batch before the derivatives of the
+     * next stage are computed, so a batch of one instance trains the same model as trainOnInstance.
+     */
+    public void trainOnBatch(Instance[] batch) {
+        ArrayList<Instance> selected = new ArrayList<>(batch.length);
+        for (Instance inst : batch) {
+            if (inst.weight() > 0.0) {
+                this.trainingWeightSeenByModel += inst.weight();
+                if ((this.skipTrainingRoughly.getValue() > 1) && (this.classifierRandom.nextInt(this.skipTrainingRoughly.getValue()) == 0) ){
+                    continue;
+                }
+                selected.add(inst);
+            }
+        }
+        if (selected.isEmpty()) {
+            return;
+        }
+        if (skipOnLossLessThan3SD.isSet() || pipelinedTraining.isSet() || partialReset.isSet()) {
+            // the loss check needs the loss estimate of the previous instance, the pipeline is already streaming,
+            // and the drift detector and the rebuild take the instances one at a time
+            for (Instance inst : selected) {
+                trainBoosterUsingSoftmaxCrossEntropyLoss(inst);
+            }
+            refreshCompiledModel(selected.size());
+            return;
+        }
+
+        int size = selected.size();
+        instancesSeenAtTrain += size;
+        instancesSeenAtTrainSinceReset += size;
+        if (booster == null) {
+            initEnsemble(selected.get(0));
+        }
+
+        Instance[] instances = selected.toArray(new Instance[size]);
+        double[][] groundTruth = new double[size][];
+        double[][] rawScores = new double[size][];
+        double[][] gradients = new double[size][committeeSize];
+        double[][] hessians = new double[size][committeeSize];
+        double[] loss = new double[size];
+        FeatureVector[] features = new FeatureVector[size];
+        for (int b = 0; b < size; b++) {
+            groundTruth[b] = createGroundTruth(instances[b]);
+            if (sharedDiscretizer != null) {
+                features[b] = sharedDiscretizer.encodeForTraining(instances[b], groundTruth[b]);
+            }
+            rawScores[b] = BoostingCommittee.getScoresWhenNullTree(committeeSize);
+        }
+        // the instances of the warm start of the shared discretizer come first, they are kept until the bins are
+        // fixed and then replayed one at a time, the batch trains the others
+        int first = 0;
+        if (sharedDiscretizer != null) {
+            sharedDiscretizer.replayWarmStart(this::replayWarmStartInstance);
+            while (first < size && features[first] == null) {
+                first++;
+            }
+        }
+        Instance[] trainedInstances = Arrays.copyOfRange(instances, first, size);
+        FeatureVector[] trainedFeatures = Arrays.copyOfRange(features, first, size);
+        double[][] trainedRawScores = Arrays.copyOfRange(rawScores, first, size);
+        double[][] trainedGradients = Arrays.copyOfRange(gradients, first, size);
+        double[][] trainedHessians = Arrays.copyOfRange(hessians, first, size);
+
+        for (int m = 0; m < booster.size(); m++) {
+            for (int b = 0; b < size; b++) {
+                mObjective.computeDerivatives(groundTruth[b], rawScores[b], computeNegativeResidual.isSet(), clipPredictions.isSet(), gradients[b], hessians[b]);
+                loss[b] += mObjective.lossForAllClasses;
+            }
+            if (first < size) {
+                trainStageOnBatch(m, trainedInstances, trainedFeatures, trainedRawScores, trainedGradients, trainedHessians);
+            }
+        }
+        for (int b = 0; b < size; b++) {
+            lossEstimator.setInput(loss[b]);
+        }
+        refreshCompiledModel(size);
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
-        if ((this.instancesSeenAtTrain % 1000) == 0){
-            System.gc();
-//            ClassLayout layout = ClassLayout.parseInstance(this);
-//            System.out.println("Size of: " +ClassLayout.parseInstance(this).instanceSize());
-        }
         if ((this.skipTrainingRoughly.getValue() > 1) && (this.classifierRandom.nextInt(this.skipTrainingRoughly.getValue()) == 0) ){
             // skip training
             return;
         }
         trainBoosterUsingSoftmaxCrossEntropyLoss(inst);
+        refreshCompiledModel(1);
     }
 
-    static double[] getScoreFromSubInstance(Instance inst, ArrayList<Integer> subSpaceFeaturesIndexes, boolean setLabel, BoostingCommittee b, boolean useOneHotEncoding){
-        Instance subInstance = getSubInstance(inst, 1.0, subSpaceFeaturesIndexes, setLabel, -1, useOneHotEncoding);
+    /**
+     * Compiles the current model into a read-only snapshot and makes it the one returned by getCompiledModel. Has
+     * to be called from the training thread. With compiledModelRefresh set, the model is compiled when the booster
+     * is created and then every compiledModelRefresh training instances, predictions only read the snapshot.
+     */
+    public CompiledBoosting compile() {
+        drainPipeline();
+        compiledModel = new CompiledBoosting(this);
+        instancesSinceCompile = 0;
+        return compiledModel;
+    }
+
+    /**
+     * Latest snapshot made by compile, or null. Safe to call from any thread.
+     */
+    public CompiledBoosting getCompiledModel() {
+        return compiledModel;
+    }
+
+    protected void refreshCompiledModel(int instancesTrained) {
+        if (compiledModelRefreshOption.getValue() > 0) {
+            instancesSinceCompile += instancesTrained;
+            if (instancesSinceCompile >= compiledModelRefreshOption.getValue()) {
+                compile();
+            }
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        drainPipeline();
+        drainRebuild();
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // the latencies are transient too, the stages of a copy sample their own as a checkpoint read does
+        for (ArrayList<BoostingCommittee> stages : Arrays.asList(booster, rebuild)) {
+            if (stages != null) {
+                for (BoostingCommittee stage : stages) {
+                    stage.setLatency(createStageLatency());
+                }
+            }
+        }
+        if (compiledModelRefreshOption.getValue() > 0 && booster != null) {
+            // the snapshot is transient, copies make their own
+            compiledModel = new CompiledBoosting(this);
+        }
+    }
+
+    @Override
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        drainPipeline();
+        drainRebuild();
+        writeClassifierCheckpoint(out);
+        out.writeDouble(skipCount);
+        out.writeLong(instancesSeenAtTrainSinceReset);
+        out.writeLong(instancesSeenAtTrain);
+        out.writeLong(instancesSinceCompile);
+        out.writeDoubleArray(lastPrediction);
+        out.writeBoolean(booster != null);
+        if (booster == null) {
+            return;
+        }
+
+        out.writeBoolean(regression);
+        out.writeInt(committeeSize);
+        out.writeObject(lossEstimator);
+        out.writeIntArray(baseLearnerIndex);
+        out.writeInt(subSpacesForEachBoostingIteration.size());
+        for (ArrayList<Integer> subspace : subSpacesForEachBoostingIteration) {
+            out.writeIntArray(subspace.stream().mapToInt(Integer::intValue).toArray());
+        }
+        // written together so that they keep sharing the headers of the sub instances
+        out.writeObject(new Object[]{projections, sharedDiscretizer});
+        out.writeInt(booster.size());
+        for (BoostingCommittee stage : booster) {
+            out.writeLearner(stage);
+        }
+
+        out.writeObject(driftDetector);
+        out.writeInt(rebuild == null ? -1 : rebuild.size());
+        if (rebuild != null) {
+            for (BoostingCommittee stage : rebuild) {
+                out.writeLearner(stage);
+            }
+        }
+        out.writeLong(rebuildInstances);
+        out.writeDouble(rebuildLoss);
+        out.writeDouble(rebuildBoosterLoss);
+        out.writeLong(driftsDetected);
+        out.writeLong(rebuildsCompleted);
+        out.writeLong(rebuildsDiscarded);
+        out.writeLong(rebuildCPUTime);
+        out.writeDouble(preDriftLoss);
+        out.writeLong(instancesSinceDrift);
+        out.writeLong(recoveries);
+        out.writeLong(instancesToRecover);
+    }
+
+    @Override
+    public void readCheckpoint(CheckpointInput in) throws IOException {
+        resetLearningImpl();
+        readClassifierCheckpoint(in);
+        skipCount = in.readDouble();
+        instancesSeenAtTrainSinceReset = in.readLong();
+        instancesSeenAtTrain = in.readLong();
+        instancesSinceCompile = in.readLong();
+        lastPrediction = in.readDoubleArray();
+        if (!in.readBoolean()) {
+            return;
+        }
+
+        regression = in.readBoolean();
+        committeeSize = in.readInt();
+        mObjective = createObjective();
+        baseLearner.committeeSize = committeeSize;
+        for (BoostingCommittee b : baseLearnerArray) {
+            b.committeeSize = committeeSize;
+        }
+        lossEstimator = (ADWIN) in.readObject();
+        baseLearnerIndex = in.readIntArray();
+        int numSubspaces = in.readInt();
+        subSpacesForEachBoostingIteration = new ArrayList<>();
+        for (int i = 0; i < numSubspaces; i++) {
+            ArrayList<Integer> subspace = new ArrayList<>();
+            for (int feature : in.readIntArray()) {
+                subspace.add(feature);
+            }
+            subSpacesForEachBoostingIteration.add(subspace);
+        }
+        Object[] discretization = (Object[]) in.readObject();
+        projections = (SubspaceProjection[]) discretization[0];
+        sharedDiscretizer = (SharedDiscretization) discretization[1];
+        int numStages = in.readInt();
+        booster = new ArrayList<>();
+        for (int m = 0; m < numStages; m++) {
+            BoostingCommittee stage = (BoostingCommittee) in.readLearner();
+            stage.setExecutor(getExecutor());
+            // latencies are not checkpointed, the restored stages start new ones
+            stage.setLatency(createStageLatency());
+            booster.add(stage);
+        }
+        driftDetector = (ChangeDetector) in.readObject();
+        int rebuildSize = in.readInt();
+        if (rebuildSize >= 0) {
+            rebuild = new ArrayList<>();
+            for (int i = 0; i < rebuildSize; i++) {
+                BoostingCommittee stage = (BoostingCommittee) in.readLearner();
+                stage.setLatency(createStageLatency());
+                rebuild.add(stage);
+            }
+        }
+        rebuildInstances = in.readLong();
+        rebuildLoss = in.readDouble();
+        rebuildBoosterLoss = in.readDouble();
+        driftsDetected = in.readLong();
+        rebuildsCompleted = in.readLong();
+        rebuildsDiscarded = in.readLong();
+        rebuildCPUTime = in.readLong();
+        preDriftLoss = in.readDouble();
+        instancesSinceDrift = in.readLong();
+        recoveries = in.readLong();
+        instancesToRecover = in.readLong();
+        if (compiledModelRefreshOption.getValue() > 0) {
+            // the snapshot is not written, it is made again from the restored stages
+            compiledModel = new CompiledBoosting(this);
+        }
+    }
+
+    static double[] getScoreFromSubInstance(Instance inst, SubspaceProjection projection, BoostingCommittee b){
+        Instance subInstance = projection.project(inst, 1.0, -1);
         return b.getScoresForInstance(subInstance);
     }
 
 
+    /** Puts the scores of stages from to to - 1 in s, features are the bins of inst from the shared discretizer. */
+    protected void scoreStages(Instance inst, FeatureVector features, double[][] s, int from, int to) {
+        // stages run on the executor, the committees inside a stage then run inline
+        if (features != null) {
+            getExecutor().forEach(to - from, i -> s[from + i] = ((StreamingGradientTreePredictor) booster.get(from + i))
+                    .getScoresForFeatures(sharedDiscretizer.getStageFeatures(features, from + i)));
+        } else {
+            getExecutor().forEach(to - from, i -> s[from + i] = getScoreFromSubInstance(inst, projections[from + i], booster.get(from + i)));
+        }
+    }
+
     public DoubleVector getRawScoreForInstance(Instance inst) {
-        final boolean setLabel = useGradientOverHessianLabels.isSet() ? true : false;
-//        if(useGradientOverHessianLabels.isSet()){
-//            setLabel = true;
-//        }
         DoubleVector rawScore = new DoubleVector(BoostingCommittee.getScoresWhenNullTree(committeeSize));
 //        Instance[] subInstanceArray = new Instance[booster.size()];
 //        IntStream.range(0, booster.size())
@@ -628,19 +1341,25 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
 //        }
 
         double s[][] = new double[booster.size()][];
-        if (booster.size() == 1){
-            s[0] = getScoreFromSubInstance(inst, subSpacesForEachBoostingIteration.get(0), setLabel, booster.get(0), useOneHotEncoding.isSet());
-//            s[0] = booster.get(0).getScoresForInstance(subInstanceArray[0]);
-        } else {
-            IntStream.range(0, booster.size())
-                    .parallel()
-                    .forEach(m -> s[m] = getScoreFromSubInstance(inst, subSpacesForEachBoostingIteration.get(m), setLabel, booster.get(m), useOneHotEncoding.isSet()));
-
+        FeatureVector features = sharedDiscretizer != null ? sharedDiscretizer.encode(inst) : null;
+        // with pipelined training, each group of stages is scored once its worker has trained the instances
+        // submitted so far, while the workers of the later stages are still training
+        for (int from = 0; from < booster.size(); ) {
+            int to = pipeline != null ? pipeline.awaitStage(from) : booster.size();
+            scoreStages(inst, features, s, from, to);
+            from = to;
+        }
 //            IntStream.range(0, booster.size())
 //                    .parallel()
 //                    .forEach(m -> s[m] = booster.get(m).getScoresForInstance(subInstanceArray[m]));
-        }
+        // regression predictions are in the units of the target, so the stages are scaled as they are in training
+        double scale = getStageScale();
         for (int i = 0; i < booster.size(); i++) {
+            if (scale != 1.0) {
+                for (int j = 0; j < s[i].length; j++) {
+                    s[i][j] *= scale;
+                }
+            }
             rawScore.addValues(s[i]);
         }
         return rawScore;
@@ -657,6 +1376,11 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
             initEnsemble(inst);
         }
 
+        CompiledBoosting compiled = compiledModel;
+        if (compiledModelRefreshOption.getValue() > 0 && compiled != null) {
+            lastPrediction = compiled.getVotesForInstance(inst);
+            return lastPrediction;
+        }
         lastPrediction = mObjective.transfer(getRawScoreForInstance(inst).getArrayCopy());
         return lastPrediction;
     }
@@ -672,12 +1396,14 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
     }
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
+        drainPipeline();
 
         double avgNumNodes = 0.0;
         double avgSplitsByConfidence = 0.0;
         double avgSplitsByHBound = 0.0;
         double avgSplitsByHBoundSmallerThanTieThreshold = 0.0;
         double avgTotalSplits = 0.0;
+        double splitEvaluationSeconds = 0.0;
         if (booster != null) {
             Measurement[][] m = new Measurement[booster.size()][];
             IntStream.range(0, booster.size())
@@ -685,11 +1411,12 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
                     .forEach(i -> m[i] = getModelMeasurementsS(booster.get(i)));
 
             for (int i = 0; i < booster.size(); i++) {
-                avgNumNodes += getMeasurementNamed("avgNumNodes", m[i]).getValue();
-                avgSplitsByConfidence += getMeasurementNamed("avgSplitsByConfidence", m[i]).getValue();
-                avgSplitsByHBound += getMeasurementNamed("avgSplitsByHBound", m[i]).getValue();
-                avgSplitsByHBoundSmallerThanTieThreshold += getMeasurementNamed("avgSplitsByHBoundSmallerThanTieThreshold", m[i]).getValue();
-                avgTotalSplits += getMeasurementNamed("avgTotalSplits", m[i]).getValue();
+                avgNumNodes += getMeasurementValue("avgNumNodes", m[i]);
+                avgSplitsByConfidence += getMeasurementValue("avgSplitsByConfidence", m[i]);
+                avgSplitsByHBound += getMeasurementValue("avgSplitsByHBound", m[i]);
+                avgSplitsByHBoundSmallerThanTieThreshold += getMeasurementValue("avgSplitsByHBoundSmallerThanTieThreshold", m[i]);
+                avgTotalSplits += getMeasurementValue("avgTotalSplits", m[i]);
+                splitEvaluationSeconds += getMeasurementValue("splitEvaluationSeconds", m[i]);
             }
 
             avgNumNodes /= (1.0 * booster.size());
@@ -699,40 +1426,123 @@ public class Boosting extends AbstractClassifier implements MultiClassClassifier
             avgTotalSplits /= (1.0 * booster.size());
         }
 
-        return new Measurement[]{
+        long numLeaves = 0;
+        long splitAttempts = 0;
+        long splitsApplied = 0;
+        LatencyHistogram[] latencies = new LatencyHistogram[StageLatency.PHASE_NAMES.length];
+        for (int p = 0; p < latencies.length; p++) {
+            latencies[p] = new LatencyHistogram();
+        }
+        if (booster != null) {
+            for (BoostingCommittee stage : booster) {
+                numLeaves += stage.getNumLeaves();
+                splitAttempts += stage.getNumSplitAttempts();
+                splitsApplied += stage.getNumSplitsApplied();
+                for (StageLatency.Phase phase : StageLatency.Phase.values()) {
+                    latencies[phase.ordinal()].add(stage.getLatency().getHistogram(phase));
+                }
+            }
+        }
+
+        // the running rebuild keeps training in the background, its CPU time so far is included
+        long cpuTime = rebuildCPUTime + (rebuildPipeline != null ? rebuildPipeline.getCPUTime() : 0);
+        Measurement[] measurements = new Measurement[]{
                 new Measurement("avgNumNodes", avgNumNodes),
                 new Measurement("avgSplitsByConfidence", avgSplitsByConfidence),
                 new Measurement("avgSplitsByHBound", avgSplitsByHBound),
                 new Measurement("avgSplitsByHBoundSmallerThanTieThreshold", avgSplitsByHBoundSmallerThanTieThreshold),
                 new Measurement("avgTotalSplits", avgTotalSplits),
-                new Measurement("skipCount", skipCount)
+                new Measurement("skipCount", skipCount),
+                new Measurement("splitEvaluationSeconds", splitEvaluationSeconds),
+                new Measurement("driftsDetected", driftsDetected),
+                new Measurement("rebuildsCompleted", rebuildsCompleted),
+                new Measurement("rebuildsDiscarded", rebuildsDiscarded),
+                new Measurement("avgInstancesToRecover", recoveries > 0 ? instancesToRecover / (double) recoveries : 0.0),
+                new Measurement("rebuildCPUSeconds", TimingUtils.nanoTimeToSeconds(cpuTime)),
+                new Measurement("avgLeavesPerStage", booster != null && booster.size() > 0 ? numLeaves / (double) booster.size() : 0.0),
+                new Measurement("splitAttempts", splitAttempts),
+                new Measurement("splitsApplied", splitsApplied)
         };
+        if (latencySamplingOption.getValue() == 0) {
+            return measurements;
+        }
+
+        // the latencies of all the stages, per phase; the MBean and getStageLatency break them down by stage
+        ArrayList<Measurement> all = new ArrayList<>(Arrays.asList(measurements));
+        for (StageLatency.Phase phase : StageLatency.Phase.values()) {
+            LatencyHistogram latency = latencies[phase.ordinal()];
+            String name = StageLatency.PHASE_NAMES[phase.ordinal()];
+            all.add(new Measurement(name + "MeanNanos", latency.getMeanNanos()));
+            all.add(new Measurement(name + "MedianNanos", latency.getPercentileNanos(0.5)));
+            all.add(new Measurement(name + "P99Nanos", latency.getPercentileNanos(0.99)));
+            all.add(new Measurement(name + "MaxNanos", latency.getMaxNanos()));
+        }
+        return all.toArray(new Measurement[0]);
+    }
+
+    /** Value of the measurement called name, 0 when the base learner does not report it. */
+    static double getMeasurementValue(String name, Measurement[] measurements) {
+        Measurement m = getMeasurementNamed(name, measurements);
+        return m == null ? 0.0 : m.getValue();
     }
 
     @Override
     public long measureByteSize() {
+        drainPipeline();
+        if (exactByteSize.isSet()) {
+            return measureExactByteSize();
+        }
         long b = 0;
         // get shallow size of this
-        b = VM.current().sizeOf(this);
+        b = ObjectSizes.sizeOf(this);
         if (booster != null) {
-            long[] byteSize = new long[booster.size()];
-            // get deep size of each item
-            if (booster.size() == 1) {
-                IntStream.range(0, booster.size())
-                        .forEach(i -> byteSize[i] = booster.get(i).measureByteSize());
-            }else{
-                IntStream.range(0, booster.size())
-                        .parallel()
-                        .forEach(i -> byteSize[i] = booster.get(i).measureByteSize());
-//                .forEach(i -> byteSize[i] = GraphLayout.parseInstance(booster.get(i)).totalSize());
-            }
+            // the members keep a running estimate of their size, so this is O(#trees)
             for (int i = 0; i < booster.size(); i++) {
-                b += byteSize[i];
+                b += booster.get(i).measureByteSize();
+            }
+        }
+        if (rebuild != null) {
+            for (BoostingCommittee stage : rebuild) {
+                b += stage.measureByteSize();
             }
         }
         return b;
     }
 
+    /**
+     * Size of the whole object graph, for validating the running estimates. The executor and the pipelines
+     * reference threads, so they are detached while the graph is walked. Needs JOL on the class path.
+     */
+    protected long measureExactByteSize() {
+        if (!ObjectSizes.isJolPresent()) {
+            throw new RuntimeException("Could not measure the exact byte size, exactByteSize needs jol-core on the class path.");
+        }
+        drainRebuild();
+        CommitteeExecutor currentExecutor = executor;
+        BoostingPipeline currentPipeline = pipeline;
+        BoostingPipeline currentRebuildPipeline = rebuildPipeline;
+        executor = null;
+        pipeline = null;
+        rebuildPipeline = null;
+        if (booster != null) {
+            for (BoostingCommittee b : booster) {
+                b.setExecutor(null);
+            }
+        }
+        try {
+            return GraphLayout.parseInstance(this).totalSize();
+        } finally {
+            executor = currentExecutor;
+            pipeline = currentPipeline;
+            rebuildPipeline = currentRebuildPipeline;
+            if (booster != null) {
+                for (BoostingCommittee b : booster) {
+                    b.setExecutor(currentExecutor);
+                }
+            }
+        }
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
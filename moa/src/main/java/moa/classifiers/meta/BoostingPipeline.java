@@ -0,0 +1,334 @@
+/*
+ *    BoostingPipeline.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import com.henrygouk.sgt.FeatureVector;
+import com.henrygouk.sgt.Objective;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.BoostingCommittee;
+import moa.core.StageLatency;
+import moa.core.TimingUtils;
+
+import java.util.List;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Trains the stages of a Boosting model as a chain of workers.
+ *
+ * <p>Each worker owns a contiguous group of stages and passes every instance, together with its accumulated raw
+ * score, to the next worker through a bounded queue. Every stage still sees the instances in arrival order and
+ * the raw score of the stages before it, so the trained model is the same as with sequential training. While
+ * stage m works on instance t, the stages after it work on earlier instances.</p>
+ *
+ * <p>Instances are trained asynchronously, {@link #drain()} has to be called before the whole model is read.
+ * Predictions only wait for the stages they score, see {@link #awaitStage(int)}.</p>
+ *
+ * <p>The stages can also be ones rebuilt to replace the last stages of the booster after a drift, each instance
+ * then starts from the raw score of the booster's stages before them.</p>
+ */
+class BoostingPipeline {
+
+    /** An instance travelling down the pipeline. */
+    static class Item {
+        final Instance inst;
+        final double[] groundTruth;
+        final double[] rawScore;
+        /** Bins of inst from the shared discretizer, if any. */
+        final FeatureVector features;
+        double loss = 0.0;
+        /** Whether the loss of the raw score after the last stage goes to Boosting.addRebuildLoss. */
+        boolean scoreLoss = false;
+
+        Item(Instance inst, double[] groundTruth, double[] rawScore, FeatureVector features) {
+            this.inst = inst;
+            this.groundTruth = groundTruth;
+            this.rawScore = rawScore;
+            this.features = features;
+        }
+    }
+
+    private static final Item STOP = new Item(null, null, null, null);
+
+    protected final Boosting boosting;
+
+    /** Stages trained, stages.get(i) takes the place of stage firstStage + i of the booster. */
+    protected final List<BoostingCommittee> stages;
+
+    protected final int firstStage;
+
+    /** Whether the loss of the instances goes to the loss estimator of the booster. */
+    protected final boolean updateLossEstimator;
+
+    protected final Worker[] workers;
+
+    private final Object idleLock = new Object();
+
+    private long inFlight = 0;
+
+    private long submitted = 0;
+
+    /** Threads blocked in awaitStage, the workers only notify when there are some. */
+    private int waiting = 0;
+
+    private volatile Throwable failure;
+
+    BoostingPipeline(Boosting boosting, int numberOfWorkers, int queueSize) {
+        this(boosting, boosting.booster, 0, numberOfWorkers, queueSize, true);
+    }
+
+    BoostingPipeline(Boosting boosting, List<BoostingCommittee> stages, int firstStage, int numberOfWorkers, int queueSize, boolean updateLossEstimator) {
+        this.boosting = boosting;
+        this.stages = stages;
+        this.firstStage = firstStage;
+        this.updateLossEstimator = updateLossEstimator;
+        int numStages = stages.size();
+        numberOfWorkers = Math.max(1, Math.min(numberOfWorkers, numStages));
+        this.workers = new Worker[numberOfWorkers];
+        for (int w = numberOfWorkers - 1; w >= 0; w--) {
+            workers[w] = new Worker(firstStage + w * numStages / numberOfWorkers, firstStage + (w + 1) * numStages / numberOfWorkers,
+                    queueSize, w + 1 < numberOfWorkers ? workers[w + 1] : null);
+        }
+        for (Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    public int getNumberOfWorkers() {
+        return workers.length;
+    }
+
+    /**
+     * Queues inst for training, blocks while the first worker's queue is full.
+     */
+    public void submit(Instance inst, double[] groundTruth, FeatureVector features) {
+        submit(inst, groundTruth, BoostingCommittee.getScoresWhenNullTree(boosting.committeeSize()), features);
+    }
+
+    /**
+     * Queues inst for training, starting from rawScore, the raw score of the stages before the first one.
+     */
+    public void submit(Instance inst, double[] groundTruth, double[] rawScore, FeatureVector features) {
+        submit(inst, groundTruth, rawScore, features, false);
+    }
+
+    /**
+     * submit, with the loss of the final raw score of inst passed to Boosting.addRebuildLoss when scoreLoss is set.
+     */
+    public void submit(Instance inst, double[] groundTruth, double[] rawScore, FeatureVector features, boolean scoreLoss) {
+        checkFailure();
+        synchronized (idleLock) {
+            inFlight++;
+            submitted++;
+        }
+        Item item = new Item(inst, groundTruth, rawScore, features);
+        item.scoreLoss = scoreLoss;
+        put(workers[0].queue, item);
+    }
+
+    /**
+     * CPU time used so far by the workers, in nanoseconds. Has to be called before shutdown.
+     */
+    public long getCPUTime() {
+        long time = 0;
+        for (Worker worker : workers) {
+            time += TimingUtils.getNanoCPUTimeOfThread(worker.getId()) - worker.startTime;
+        }
+        return time;
+    }
+
+    /**
+     * Blocks until every submitted instance has gone through all the stages.
+     */
+    public void drain() {
+        synchronized (idleLock) {
+            while (inFlight > 0) {
+                try {
+                    idleLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Could not wait for the training pipeline.", e);
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Blocks until every instance submitted so far has been trained by stage m, and returns the stage after the last
+     * one of its worker. Until the next submit, the stages before the returned one can be read while the later
+     * stages are still training.
+     */
+    public int awaitStage(int m) {
+        Worker worker = workers[workers.length - 1];
+        for (Worker w : workers) {
+            if (m < w.toStage) {
+                worker = w;
+                break;
+            }
+        }
+        synchronized (idleLock) {
+            waiting++;
+            try {
+                while (worker.trained < submitted && failure == null) {
+                    idleLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Could not wait for the training pipeline.", e);
+            } finally {
+                waiting--;
+            }
+        }
+        checkFailure();
+        return worker.toStage;
+    }
+
+    /**
+     * Drains the pipeline and stops the workers.
+     */
+    public void shutdown() {
+        try {
+            drain();
+        } finally {
+            put(workers[0].queue, STOP);
+            for (Worker worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Could not stop the training pipeline.", e);
+                }
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Pipelined training failed.", failure);
+        }
+    }
+
+    /**
+     * Records that worker is done with an instance, which leaves the pipeline when it was the last worker or training
+     * failed.
+     */
+    private void finish(Worker worker, boolean leaves) {
+        synchronized (idleLock) {
+            worker.trained++;
+            if (leaves) {
+                inFlight--;
+            }
+            if ((leaves && inFlight == 0) || waiting > 0) {
+                idleLock.notifyAll();
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<Item> queue, Item item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Could not queue instance for training.", e);
+        }
+    }
+
+    protected class Worker extends Thread {
+        /** Stages of the worker, from fromStage to toStage - 1 of the booster. */
+        final int fromStage;
+        final int toStage;
+        final BlockingQueue<Item> queue;
+        final Worker next;
+        // computeDerivatives keeps the loss in the objective, so each worker needs its own
+        final Objective objective;
+        final double[] gradients;
+        final double[] hessians;
+        /** CPU time of the thread when it started, the elapsed time when CPU times are not available. */
+        volatile long startTime;
+        /** Instances done by this worker, guarded by idleLock. */
+        long trained = 0;
+
+        Worker(int fromStage, int toStage, int queueSize, Worker next) {
+            super("BoostingPipeline-" + fromStage + "-" + (toStage - 1));
+            setDaemon(true);
+            this.fromStage = fromStage;
+            this.toStage = toStage;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.next = next;
+            this.objective = boosting.createObjective();
+            this.gradients = new double[boosting.committeeSize()];
+            this.hessians = new double[boosting.committeeSize()];
+            this.startTime = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            while (true) {
+                Item item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (item == STOP) {
+                    if (next != null) {
+                        put(next.queue, STOP);
+                    }
+                    return;
+                }
+
+                if (failure == null) {
+                    try {
+                        for (int m = fromStage; m < toStage; m++) {
+                            BoostingCommittee stage = stages.get(m - firstStage);
+                            StageLatency latency = stage.getLatency();
+                            latency.sample();
+                            long start = latency.start();
+                            objective.computeDerivatives(item.groundTruth, item.rawScore, boosting.computeNegativeResidual.isSet(),
+                                    boosting.clipPredictions.isSet(), gradients, hessians);
+                            latency.stop(StageLatency.Phase.DERIVATIVES, start);
+                            item.loss += objective.lossForAllClasses;
+                            boosting.trainStage(stage, m, item.inst, item.features, item.rawScore, gradients, hessians);
+                        }
+                        if (next == null && updateLossEstimator) {
+                            boosting.lossEstimator.setInput(item.loss);
+                        }
+                        if (next == null && item.scoreLoss) {
+                            objective.computeDerivatives(item.groundTruth, item.rawScore, boosting.computeNegativeResidual.isSet(),
+                                    boosting.clipPredictions.isSet(), gradients, hessians);
+                            boosting.addRebuildLoss(objective.lossForAllClasses);
+                        }
+                    } catch (Throwable t) {
+                        failure = t;
+                    }
+                }
+
+                // after a failure the remaining instances are dropped where they are
+                boolean leaves = next == null || failure != null;
+                finish(this, leaves);
+                if (!leaves) {
+                    put(next.queue, item);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *    BoostingStats.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import moa.classifiers.BoostingCommittee;
+import moa.core.LatencyHistogram;
+import moa.core.StageLatency;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MBean exposing the stage latencies and tree statistics of a Boosting model, see {@link BoostingStatsMBean}. The
+ * model is held weakly, so that one dropped without {@link Boosting#close()} is still collected, and the MBean then
+ * reports no stages.
+ */
+public class BoostingStats implements BoostingStatsMBean {
+
+    protected final WeakReference<Boosting> boosting;
+
+    protected final long registrationTime = System.nanoTime();
+
+    protected final long instancesAtRegistration;
+
+    protected BoostingStats(Boosting boosting) {
+        this.boosting = new WeakReference<>(boosting);
+        this.instancesAtRegistration = boosting.getInstancesSeenAtTrain();
+    }
+
+    /**
+     * Registers the statistics of boosting with the platform MBean server, returns the name to unregister them.
+     */
+    static ObjectName register(Boosting boosting) {
+        try {
+            ObjectName name = new ObjectName("moa:type=Boosting,name=Boosting-" + System.identityHashCode(boosting));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new BoostingStats(boosting), name);
+            return name;
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register the Boosting MBean.", e);
+        }
+    }
+
+    static void unregister(ObjectName name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            throw new RuntimeException("Could not unregister the Boosting MBean " + name + ".", e);
+        }
+    }
+
+    /** Snapshot of the stages, the model may be reset or rebuilt while it is read. */
+    protected List<BoostingCommittee> getStages() {
+        List<BoostingCommittee> stages = new ArrayList<>();
+        Boosting boosting = this.boosting.get();
+        ArrayList<BoostingCommittee> booster = boosting != null ? boosting.booster : null;
+        if (booster != null) {
+            for (Object stage : booster.toArray()) {
+                if (stage != null) {
+                    stages.add((BoostingCommittee) stage);
+                }
+            }
+        }
+        return stages;
+    }
+
+    @Override
+    public int getNumberOfStages() {
+        return getStages().size();
+    }
+
+    @Override
+    public long getInstancesSeen() {
+        Boosting boosting = this.boosting.get();
+        return boosting != null ? boosting.getInstancesSeenAtTrain() : 0;
+    }
+
+    @Override
+    public double getInstancesPerSecond() {
+        Boosting boosting = this.boosting.get();
+        double seconds = (System.nanoTime() - registrationTime) / 1.0e9;
+        return boosting != null && seconds > 0.0 ? (boosting.getInstancesSeenAtTrain() - instancesAtRegistration) / seconds : 0.0;
+    }
+
+    @Override
+    public int getLatencySamplingInterval() {
+        Boosting boosting = this.boosting.get();
+        return boosting != null ? boosting.latencySamplingOption.getValue() : 0;
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        return StageLatency.PHASE_NAMES.clone();
+    }
+
+    @Override
+    public long[][] getLatencySampleCounts() {
+        List<BoostingCommittee> stages = getStages();
+        long[][] counts = new long[stages.size()][StageLatency.PHASE_NAMES.length];
+        for (int m = 0; m < counts.length; m++) {
+            for (StageLatency.Phase phase : StageLatency.Phase.values()) {
+                counts[m][phase.ordinal()] = stages.get(m).getLatency().getHistogram(phase).getCount();
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public double[][] getLatencyMeanNanos() {
+        List<BoostingCommittee> stages = getStages();
+        double[][] means = new double[stages.size()][StageLatency.PHASE_NAMES.length];
+        for (int m = 0; m < means.length; m++) {
+            for (StageLatency.Phase phase : StageLatency.Phase.values()) {
+                means[m][phase.ordinal()] = stages.get(m).getLatency().getHistogram(phase).getMeanNanos();
+            }
+        }
+        return means;
+    }
+
+    @Override
+    public long[][] getLatencyMedianNanos() {
+        return getLatencyPercentiles(0.5);
+    }
+
+    @Override
+    public long[][] getLatencyP99Nanos() {
+        return getLatencyPercentiles(0.99);
+    }
+
+    protected long[][] getLatencyPercentiles(double q) {
+        List<BoostingCommittee> stages = getStages();
+        long[][] percentiles = new long[stages.size()][StageLatency.PHASE_NAMES.length];
+        for (int m = 0; m < percentiles.length; m++) {
+            for (StageLatency.Phase phase : StageLatency.Phase.values()) {
+                LatencyHistogram histogram = stages.get(m).getLatency().getHistogram(phase);
+                percentiles[m][phase.ordinal()] = histogram.getPercentileNanos(q);
+            }
+        }
+        return percentiles;
+    }
+
+    @Override
+    public long[] getNumLeaves() {
+        List<BoostingCommittee> stages = getStages();
+        long[] leaves = new long[stages.size()];
+        for (int m = 0; m < leaves.length; m++) {
+            leaves[m] = stages.get(m).getNumLeaves();
+        }
+        return leaves;
+    }
+
+    @Override
+    public long[] getNumSplitAttempts() {
+        List<BoostingCommittee> stages = getStages();
+        long[] attempts = new long[stages.size()];
+        for (int m = 0; m < attempts.length; m++) {
+            attempts[m] = stages.get(m).getNumSplitAttempts();
+        }
+        return attempts;
+    }
+
+    @Override
+    public long[] getNumSplitsApplied() {
+        List<BoostingCommittee> stages = getStages();
+        long[] splits = new long[stages.size()];
+        for (int m = 0; m < splits.length; m++) {
+            splits[m] = stages.get(m).getNumSplitsApplied();
+        }
+        return splits;
+    }
+}
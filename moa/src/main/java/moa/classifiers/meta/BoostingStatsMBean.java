@@ -0,0 +1,54 @@
+/*
+ *    BoostingStatsMBean.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+/**
+ * JMX view of the training statistics of a Boosting model, registered with its registerMBean option.
+ *
+ * <p>The per-stage arrays are indexed by stage, and the latency arrays by stage and then by phase, in the order of
+ * getPhaseNames. Values are read while the model trains and may lag slightly.</p>
+ */
+public interface BoostingStatsMBean {
+
+    int getNumberOfStages();
+
+    long getInstancesSeen();
+
+    /** Training instances per second of wall-clock time since the MBean was registered. */
+    double getInstancesPerSecond();
+
+    /** One instance in this many is timed, 0 when the latency is not sampled. */
+    int getLatencySamplingInterval();
+
+    String[] getPhaseNames();
+
+    long[][] getLatencySampleCounts();
+
+    double[][] getLatencyMeanNanos();
+
+    long[][] getLatencyMedianNanos();
+
+    long[][] getLatencyP99Nanos();
+
+    long[] getNumLeaves();
+
+    long[] getNumSplitAttempts();
+
+    long[] getNumSplitsApplied();
+}
@@ -0,0 +1,226 @@
+/*
+ *    CompiledBoosting.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import com.henrygouk.sgt.FeatureInfo;
+import com.henrygouk.sgt.FeatureType;
+import com.henrygouk.sgt.FlatTree;
+import com.henrygouk.sgt.Objective;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.StreamingGradientTreePredictor;
+import moa.classifiers.trees.sgt.AttributeDiscretizer;
+
+import java.io.Serializable;
+
+/**
+ * Read-only snapshot of a Boosting model of StreamingGradientTreePredictor stages, for scoring.
+ *
+ * <p>The trees of all the stages are stored in one set of arrays, in the layout of {@link FlatTree}. The nodes test
+ * the attributes of the original instance directly: the subspace projection of the stage and the bin boundaries of
+ * its discretizer, equal-width or quantile, are copied into the nodes, so no sub instance or feature array is built
+ * while scoring.</p>
+ *
+ * <p>The snapshot is immutable, it can be used by any number of threads while the model it was compiled from keeps
+ * training.</p>
+ */
+public class CompiledBoosting implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final int committeeSize;
+
+    protected final Objective objective;
+
+    /** Root of the tree of committee member i of stage m at m * committeeSize + i, -1 during the warm start. */
+    protected final int[] roots;
+
+    /** Attribute of the original instance tested by each node, -1 for leaves. */
+    protected final int[] source;
+
+    /** Category tested by nodes on a one-hot encoded attribute, -1 otherwise. */
+    protected final int[] oneHotCategory;
+
+    /** Last bin of the left child of ordinal splits, -1 for nominal splits. */
+    protected final int[] splitIndex;
+
+    protected final int[] firstChild;
+
+    protected final double[] prediction;
+
+    /** Lower edge of the right child of ordinal splits on bins defined by their edges, NaN for equal-width bins. */
+    protected final double[] threshold;
+
+    /** Discretizer range and number of bins of the attribute tested by ordinal splits on equal-width bins. */
+    protected final double[] binMin;
+
+    protected final double[] binMax;
+
+    protected final double[] bins;
+
+    /** Factor the leaf predictions are scaled by, see Boosting.getStageScale. */
+    protected final double scale;
+
+    public CompiledBoosting(Boosting boosting) {
+        int numStages = boosting.booster.size();
+        committeeSize = boosting.committeeSize();
+        objective = boosting.createObjective();
+        scale = boosting.getStageScale();
+        roots = new int[numStages * committeeSize];
+
+        FlatTree[][] trees = new FlatTree[numStages][];
+        int numNodes = 0;
+        for (int m = 0; m < numStages; m++) {
+            if (!(boosting.booster.get(m) instanceof StreamingGradientTreePredictor)) {
+                throw new RuntimeException("Could not compile boosting stage " + m + ": "
+                        + boosting.booster.get(m).getClass().getName() + " is not a StreamingGradientTreePredictor.");
+            }
+            trees[m] = ((StreamingGradientTreePredictor) boosting.booster.get(m)).flatten();
+            if (trees[m] != null) {
+                for (FlatTree tree : trees[m]) {
+                    numNodes += tree.size();
+                }
+            }
+        }
+
+        source = new int[numNodes];
+        oneHotCategory = new int[numNodes];
+        splitIndex = new int[numNodes];
+        firstChild = new int[numNodes];
+        prediction = new double[numNodes];
+        threshold = new double[numNodes];
+        binMin = new double[numNodes];
+        binMax = new double[numNodes];
+        bins = new double[numNodes];
+
+        int offset = 0;
+        for (int m = 0; m < numStages; m++) {
+            for (int i = 0; i < committeeSize; i++) {
+                if (trees[m] == null) {
+                    roots[m * committeeSize + i] = -1;
+                    continue;
+                }
+                roots[m * committeeSize + i] = offset;
+                if (boosting.sharedDiscretizer != null) {
+                    offset = copyTree(trees[m][i], offset, boosting.sharedDiscretizer, m);
+                } else {
+                    AttributeDiscretizer discretizer = ((StreamingGradientTreePredictor) boosting.booster.get(m)).getDiscretizer();
+                    offset = copyTree(trees[m][i], offset, boosting.projections[m], discretizer, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a tree of stage m, whose features are views of the shared discretizer.
+     */
+    protected int copyTree(FlatTree tree, int offset, SharedDiscretization shared, int m) {
+        int[] featureMap = new int[shared.views[m].length];
+        for (int f = 0; f < featureMap.length; f++) {
+            featureMap[f] = shared.getSharedIndex(m, f);
+        }
+        return copyTree(tree, offset, shared.getProjection(), shared.getDiscretizer(), featureMap);
+    }
+
+    /**
+     * Copies tree to the nodes starting at offset and returns the offset after it. featureMap maps the features of
+     * the tree to those of projection and discretizer, null when they are the same.
+     */
+    protected int copyTree(FlatTree tree, int offset, SubspaceProjection projection, AttributeDiscretizer discretizer, int[] featureMap) {
+        FeatureInfo[] featureInfo = discretizer.getFeatureInfo();
+        for (int n = 0; n < tree.size(); n++) {
+            int node = offset + n;
+            int feature = tree.feature[n] == -1 || featureMap == null ? tree.feature[n] : featureMap[tree.feature[n]];
+            prediction[node] = tree.prediction[n] * scale;
+            if (feature == -1) {
+                source[node] = -1;
+                oneHotCategory[node] = -1;
+                splitIndex[node] = -1;
+                firstChild[node] = -1;
+                continue;
+            }
+
+            source[node] = projection.getSourceIndex(feature);
+            oneHotCategory[node] = projection.getOneHotCategory(feature);
+            firstChild[node] = offset + tree.firstChild[n];
+            threshold[node] = Double.NaN;
+            if (featureInfo[feature].type == FeatureType.ordinal) {
+                splitIndex[node] = tree.index[n];
+                double[] edges = discretizer.getBinEdges(feature);
+                if (edges != null) {
+                    // bin <= splitIndex exactly when value is below the lower edge of bin splitIndex + 1
+                    threshold[node] = tree.index[n] < edges.length ? edges[tree.index[n]] : Double.POSITIVE_INFINITY;
+                }
+                binMin[node] = discretizer.getMin(feature);
+                binMax[node] = discretizer.getMax(feature);
+                bins[node] = discretizer.getBins();
+            } else {
+                splitIndex[node] = -1;
+            }
+        }
+        return offset + tree.size();
+    }
+
+    public int getNumNodes() {
+        return source.length;
+    }
+
+    /**
+     * Sum of the scores of all the stages, the same as Boosting.getRawScoreForInstance on the compiled model.
+     */
+    public double[] getRawScoreForInstance(Instance inst) {
+        double[] rawScore = new double[committeeSize];
+        for (int t = 0; t < roots.length; t++) {
+            int node = roots[t];
+            if (node < 0) {
+                continue;
+            }
+            while (firstChild[node] >= 0) {
+                node = firstChild[node] + getChild(node, inst);
+            }
+            rawScore[t % committeeSize] += prediction[node];
+        }
+        return rawScore;
+    }
+
+    public double[] getVotesForInstance(Instance inst) {
+        return objective.transfer(getRawScoreForInstance(inst));
+    }
+
+    /**
+     * Child of split node that inst goes to, computed as SubspaceProjection and AttributeDiscretizer would.
+     */
+    protected int getChild(int node, Instance inst) {
+        double value = inst.value(source[node]);
+        if (oneHotCategory[node] >= 0) {
+            value = (int) value == oneHotCategory[node] ? 1.0 : 0.0;
+        } else if (Double.isNaN(value)) {
+            return 0;
+        }
+
+        if (splitIndex[node] < 0) {
+            return (int) value;
+        }
+        if (!Double.isNaN(threshold[node])) {
+            return value < threshold[node] ? 0 : 1;
+        }
+        // bins below 0 or above the last bin go to the same child as the clamped bin would
+        int bin = (int) (bins[node] * ((value - binMin[node]) / (binMax[node] - binMin[node])));
+        return bin <= splitIndex[node] ? 0 : 1;
+    }
+}
@@ -30,11 +30,11 @@ import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ObjectSizes;
 import moa.core.Utils;
 import moa.options.ClassOption;
 import moa.tasks.TaskMonitor;
 import org.openjdk.jol.info.GraphLayout;
-import org.openjdk.jol.vm.VM;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -303,7 +303,7 @@ public class MultiClass extends AbstractClassifier  implements MultiClassClassif
     public long measureByteSize() {
         long b = 0;
         // get shallow size of this
-        b = VM.current().sizeOf(this);
+        b = ObjectSizes.sizeOf(this);
 
         if (treesCommittee != null) {
             long[] byteSize = new long[treesCommittee.length];
@@ -0,0 +1,262 @@
+/*
+ *    SharedDiscretization.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import com.henrygouk.sgt.FeatureInfo;
+import com.henrygouk.sgt.FeatureVector;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.sgt.AttributeDiscretizer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * One discretizer for all the stages of a Boosting model.
+ *
+ * <p>Every stage sees the same training instances, so the discretizers of the stages would all learn the same
+ * bins. Here the instance is projected onto all the input attributes and binned once, and each stage reads the bins
+ * of its subspace through a view, an index into the shared bins for each of its features.</p>
+ *
+ * <p>Sparse instances are binned into sparse feature vectors that only hold their non-zero attributes, the others
+ * are in the bin of zero, see FeatureInfo.defaultCategory. This needs the attributes to be copied as is. With one-hot
+ * encoding, instances are binned sparsely when most of the one-hot slots are zeros, whether they are sparse or
+ * not.</p>
+ *
+ * <p>The instances of the warm start are kept with their ground truth, and handed back by replayWarmStart once the
+ * bins are fixed, so that the stages are trained on them as with replayWarmStart of StreamingGradientTreePredictor.</p>
+ */
+class SharedDiscretization implements Serializable {
+
+    /**
+     * Trains the stages on an instance of the warm start, given its ground truth and its bins.
+     */
+    interface WarmStartTrainer {
+        void train(Instance inst, double[] groundTruth, FeatureVector features);
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    /** Projection onto all the input attributes, one-hot encoded like the stages. */
+    protected final SubspaceProjection projection;
+
+    protected final AttributeDiscretizer discretizer;
+
+    protected final int warmStart;
+
+    /** Index into the shared bins of each feature of each stage. */
+    protected final int[][] views;
+
+    /** Feature of stage m reading each shared bin, -1 when the bin is not in the subspace of the stage. */
+    protected final int[][] stageFeatures;
+
+    /** Whether the projection copies every attribute as is, so that sparse instances can be binned sparsely. */
+    protected final boolean sparseCapable;
+
+    /** Feature descriptions of each stage, built when the warm start is over. */
+    protected FeatureInfo[][] stageFeatureInfo;
+
+    protected long instancesSeen;
+
+    /** Instances of the warm start in arrival order, null once they are replayed. */
+    protected ArrayList<Instance> warmStartInstances = new ArrayList<>();
+
+    protected ArrayList<double[]> warmStartGroundTruth = new ArrayList<>();
+
+    SharedDiscretization(Instance template, SubspaceProjection[] stageProjections, boolean useOneHotEncoding,
+                         AttributeDiscretizer discretizer, int warmStart) {
+        ArrayList<Integer> allFeatures = new ArrayList<>();
+        for (int i = 0; i < template.numAttributes() - 1; i++) {
+            allFeatures.add(i);
+        }
+        this.projection = new SubspaceProjection(template, allFeatures, false, useOneHotEncoding);
+        this.discretizer = discretizer;
+        this.warmStart = warmStart;
+
+        this.sparseCapable = projection.numValues() == template.numAttributes();
+
+        this.views = new int[stageProjections.length][];
+        this.stageFeatures = new int[stageProjections.length][];
+        for (int m = 0; m < stageProjections.length; m++) {
+            views[m] = new int[stageProjections[m].numValues() - 1];
+            stageFeatures[m] = new int[projection.numValues() - 1];
+            Arrays.fill(stageFeatures[m], -1);
+            for (int f = 0; f < views[m].length; f++) {
+                views[m][f] = projection.getProjectedIndex(stageProjections[m].getSourceIndex(f),
+                        stageProjections[m].getOneHotCategory(f));
+                stageFeatures[m][views[m][f]] = f;
+            }
+        }
+    }
+
+    public SubspaceProjection getProjection() {
+        return projection;
+    }
+
+    public AttributeDiscretizer getDiscretizer() {
+        return discretizer;
+    }
+
+    /**
+     * Index into the shared bins of feature f of stage m.
+     */
+    public int getSharedIndex(int m, int f) {
+        return views[m][f];
+    }
+
+    /**
+     * Called once per training instance, in order. Observes and keeps inst during the warm start and returns null,
+     * returns the bins of inst afterwards.
+     */
+    public FeatureVector encodeForTraining(Instance inst, double[] groundTruth) {
+        instancesSeen++;
+        if (instancesSeen <= warmStart) {
+            // the warm start is bounded, so it observes the zeros of sparse instances too
+            discretizer.observe(projection.project(inst, 1.0, -1));
+            warmStartInstances.add(inst.copy());
+            warmStartGroundTruth.add(groundTruth.clone());
+            return null;
+        }
+        if (stageFeatureInfo == null) {
+            stageFeatureInfo = buildStageFeatureInfo();
+        }
+        return getFeatures(inst);
+    }
+
+    /**
+     * Once the bins are fixed, passes the instances of the warm start to trainer in arrival order and frees them.
+     * Does nothing during the warm start and after the replay.
+     */
+    public void replayWarmStart(WarmStartTrainer trainer) {
+        if (stageFeatureInfo == null || warmStartInstances == null) {
+            return;
+        }
+        ArrayList<Instance> instances = warmStartInstances;
+        ArrayList<double[]> groundTruth = warmStartGroundTruth;
+        warmStartInstances = null;
+        warmStartGroundTruth = null;
+        for (int i = 0; i < instances.size(); i++) {
+            trainer.train(instances.get(i), groundTruth.get(i), getFeatures(instances.get(i)));
+        }
+    }
+
+    /**
+     * Bins of inst, null during the warm start.
+     */
+    public FeatureVector encode(Instance inst) {
+        if (instancesSeen <= warmStart) {
+            return null;
+        }
+        return getFeatures(inst);
+    }
+
+    protected FeatureVector getFeatures(Instance inst) {
+        if (projection.isMostlyZeros()) {
+            // only the slot of the category of each one-hot encoded attribute and the other non-zero values
+            int[] indices = new int[projection.numFeatures()];
+            double[] values = new double[projection.numFeatures()];
+            int nnz = projection.projectSparse(inst, indices, values);
+            int[] bins = new int[nnz];
+            for (int k = 0; k < nnz; k++) {
+                bins[k] = discretizer.getFeature(indices[k], values[k]);
+            }
+            return new FeatureVector(Arrays.copyOf(indices, nnz), bins);
+        }
+        // streams such as ArffFileStream hold sparse rows in an InstanceImpl, so the values are counted instead of
+        // checking the class of the instance
+        if (!sparseCapable || inst.numValues() >= inst.numAttributes()) {
+            return new FeatureVector(discretizer.getFeatures(projection.project(inst, 1.0, -1)));
+        }
+        // the attributes are copied as is and the class is last, so attribute i is shared feature i
+        int[] indices = new int[inst.numValues()];
+        int[] bins = new int[inst.numValues()];
+        int nnz = 0;
+        for (int k = 0; k < inst.numValues(); k++) {
+            int i = inst.index(k);
+            if (i == inst.classIndex()) {
+                continue;
+            }
+            indices[nnz] = i;
+            bins[nnz] = discretizer.getFeature(i, inst.valueSparse(k));
+            nnz++;
+        }
+        return new FeatureVector(Arrays.copyOf(indices, nnz), Arrays.copyOf(bins, nnz));
+    }
+
+    /**
+     * The bins of stage m, taken from the shared bins features. Null during the warm start. A sparse vector is
+     * filtered in time linear in its non-zero features.
+     */
+    public FeatureVector getStageFeatures(FeatureVector features, int m) {
+        if (features == null) {
+            return null;
+        }
+        if (!features.isSparse()) {
+            int[] view = views[m];
+            int[] bins = new int[view.length];
+            for (int f = 0; f < view.length; f++) {
+                bins[f] = features.bins[view[f]];
+            }
+            return new FeatureVector(bins);
+        }
+
+        int[] stage = stageFeatures[m];
+        int[] indices = new int[features.indices.length];
+        int[] bins = new int[features.indices.length];
+        int nnz = 0;
+        for (int k = 0; k < features.indices.length; k++) {
+            int f = stage[features.indices[k]];
+            if (f < 0) {
+                continue;
+            }
+            // subspaces are not sorted, insert f in order, the vector is short so this stays cheap
+            int j = nnz++;
+            while (j > 0 && indices[j - 1] > f) {
+                indices[j] = indices[j - 1];
+                bins[j] = bins[j - 1];
+                j--;
+            }
+            indices[j] = f;
+            bins[j] = features.bins[k];
+        }
+        return new FeatureVector(Arrays.copyOf(indices, nnz), Arrays.copyOf(bins, nnz));
+    }
+
+    /**
+     * Description of the features of stage m, null during the warm start.
+     */
+    public FeatureInfo[] getStageFeatureInfo(int m) {
+        return stageFeatureInfo == null ? null : stageFeatureInfo[m];
+    }
+
+    protected FeatureInfo[][] buildStageFeatureInfo() {
+        FeatureInfo[] featureInfo = discretizer.getFeatureInfo();
+        for (int i = 0; i < featureInfo.length; i++) {
+            featureInfo[i].defaultCategory = discretizer.getFeature(i, 0.0);
+        }
+        FeatureInfo[][] info = new FeatureInfo[views.length][];
+        for (int m = 0; m < views.length; m++) {
+            info[m] = new FeatureInfo[views[m].length];
+            for (int f = 0; f < views[m].length; f++) {
+                info[m][f] = featureInfo[views[m][f]];
+            }
+        }
+        return info;
+    }
+}
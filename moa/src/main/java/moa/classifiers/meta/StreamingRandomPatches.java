@@ -31,6 +31,7 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
+import moa.classifiers.ClassifierFactory;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.core.*;
@@ -270,12 +271,13 @@ public class StreamingRandomPatches extends AbstractClassifier implements MultiC
         // Obtain the base learner. It is not restricted to a specific learner.
         Classifier baseLearner = (Classifier) getPreparedClassOption(this.baseLearnerOption);
         baseLearner.resetLearning();
+        ClassifierFactory baseLearnerFactory = new ClassifierFactory(baseLearner);
         for(int i = 0 ; i < ensembleSize ; ++i) {
             switch(this.trainingMethodOption.getChosenIndex()) {
                 case StreamingRandomPatches.TRAIN_RESAMPLING:
                     this.ensemble[i] = new StreamingRandomPatchesClassifier(
                             i,
-                            baseLearner.copy(),
+                            baseLearnerFactory.create(),
                             (BasicClassificationPerformanceEvaluator) classificationEvaluator.copy(),
                             this.instancesSeen,
                             this.disableBackgroundLearnerOption.isSet(),
@@ -291,7 +293,7 @@ public class StreamingRandomPatches extends AbstractClassifier implements MultiC
                     subsetOfFeatures.add(instance.classIndex());
                     this.ensemble[i] = new StreamingRandomPatchesClassifier(
                             i,
-                            baseLearner.copy(),
+                            baseLearnerFactory.create(),
                             (BasicClassificationPerformanceEvaluator) classificationEvaluator.copy(),
                             this.instancesSeen,
                             this.disableBackgroundLearnerOption.isSet(),
@@ -569,8 +571,8 @@ public class StreamingRandomPatches extends AbstractClassifier implements MultiC
         }
 
         public void triggerWarning(Instance instance, long instancesSeen, Random random) {
-            Classifier bkgClassifier = this.classifier.copy();
-            bkgClassifier.resetLearning();
+            // Only the options of the classifier are copied, not its model
+            Classifier bkgClassifier = new ClassifierFactory(this.classifier).create();
 
             BasicClassificationPerformanceEvaluator bkgEvaluator = (BasicClassificationPerformanceEvaluator) this.evaluator.copy();
             bkgEvaluator.reset();
@@ -0,0 +1,227 @@
+/*
+ *    SubspaceProjection.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Projects instances onto the feature subspace of one boosting iteration.
+ *
+ * <p>The header of the projected instances is built once, from a template instance, and shared by every
+ * instance produced afterwards. {@link #project(Instance, double, double)} writes the attribute values into a
+ * per-thread buffer, so its instances are only valid until the next call on the same thread and must not be
+ * kept or passed to anything that may keep them: it is meant for scoring and for reading the values once.
+ * Instances given to learners for training come from {@link #projectCopy(Instance, double, double)}, which
+ * allocates a new array.</p>
+ *
+ * <p>With one-hot encoding at most one slot of each encoded feature is non-zero. When that makes most of the
+ * projected values zeros, {@link #projectSparse(Instance, int[], double[])} writes only the non-zero ones.</p>
+ */
+public class SubspaceProjection implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Index of each subspace feature in the original instance. */
+    protected int[] featureIndexes;
+
+    /** Position of each subspace feature in the projected values. */
+    protected int[] outputOffsets;
+
+    /** Number of one-hot slots of each subspace feature, 0 when the value is copied as is. */
+    protected int[] oneHotWidths;
+
+    /** Number of projected values, including the class value in the last position. */
+    protected int numValues;
+
+    /** Replace the class value with the label passed to project. */
+    protected boolean setLabel;
+
+    protected InstancesHeader header;
+
+    protected transient volatile ThreadLocal<double[]> valueBuffers;
+
+    public SubspaceProjection(Instance template, ArrayList<Integer> subSpaceFeaturesIndexes, boolean setLabel, boolean useOneHotEncoding) {
+        this.setLabel = setLabel;
+        this.featureIndexes = new int[subSpaceFeaturesIndexes.size()];
+        this.outputOffsets = new int[subSpaceFeaturesIndexes.size()];
+        this.oneHotWidths = new int[subSpaceFeaturesIndexes.size()];
+
+        ArrayList<Attribute> attSub = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < featureIndexes.length; i++) {
+            int featuresIndex = subSpaceFeaturesIndexes.get(i);
+            Attribute attribute = template.attribute(featuresIndex);
+            featureIndexes[i] = featuresIndex;
+            outputOffsets[i] = offset;
+            if (useOneHotEncoding && attribute.isNominal() && (attribute.numValues() > 2)) {
+                oneHotWidths[i] = attribute.numValues();
+                for (int j = 0; j < oneHotWidths[i]; j++) {
+                    attSub.add(new Attribute(""));
+                }
+                offset += oneHotWidths[i];
+            } else {
+                attSub.add(attribute);
+                offset++;
+            }
+        }
+        // adds a numeric class attribute when the label is set by the booster
+        attSub.add(setLabel ? new Attribute("classAttribute") : template.classAttribute());
+        numValues = offset + 1;
+
+        Instances subset = new Instances("Subsets Candidate Instances", attSub, 0);
+        subset.setClassIndex(subset.numAttributes() - 1);
+        header = new InstancesHeader(subset);
+    }
+
+    public InstancesHeader getHeader() {
+        return header;
+    }
+
+    public int numValues() {
+        return numValues;
+    }
+
+    /**
+     * Number of subspace features, the most non-zero values projectSparse can write.
+     */
+    public int numFeatures() {
+        return featureIndexes.length;
+    }
+
+    /**
+     * Whether at least half of the projected input values are always zero, because of one-hot encoding.
+     */
+    public boolean isMostlyZeros() {
+        return 2 * featureIndexes.length <= numValues - 1;
+    }
+
+    /**
+     * Index in the original instance of the attribute projected attribute projectedIndex is taken from.
+     */
+    public int getSourceIndex(int projectedIndex) {
+        return featureIndexes[findFeature(projectedIndex)];
+    }
+
+    /**
+     * Category encoded by projected attribute projectedIndex when it is a one-hot slot, -1 when the value is copied.
+     */
+    public int getOneHotCategory(int projectedIndex) {
+        int i = findFeature(projectedIndex);
+        return oneHotWidths[i] > 0 ? projectedIndex - outputOffsets[i] : -1;
+    }
+
+    /**
+     * Projected attribute holding attribute sourceIndex of the original instance, or its one-hot slot for category
+     * oneHotCategory when it is one-hot encoded. -1 when the attribute is not in the subspace.
+     */
+    public int getProjectedIndex(int sourceIndex, int oneHotCategory) {
+        for (int i = 0; i < featureIndexes.length; i++) {
+            if (featureIndexes[i] == sourceIndex) {
+                return outputOffsets[i] + (oneHotWidths[i] > 0 ? oneHotCategory : 0);
+            }
+        }
+        return -1;
+    }
+
+    protected int findFeature(int projectedIndex) {
+        for (int i = featureIndexes.length - 1; i >= 0; i--) {
+            if (outputOffsets[i] <= projectedIndex) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No subspace feature at " + projectedIndex);
+    }
+
+    /**
+     * Writes the projected attribute values of instance into values, which must hold at least numValues() entries.
+     */
+    public double[] project(Instance instance, double labelValue, double[] values) {
+        for (int i = 0; i < featureIndexes.length; i++) {
+            double value = instance.value(featureIndexes[i]);
+            if (oneHotWidths[i] > 0) {
+                for (int j = 0; j < oneHotWidths[i]; j++) {
+                    values[outputOffsets[i] + j] = 0.0;
+                }
+                values[outputOffsets[i] + (int) value] = 1.0;
+            } else {
+                values[outputOffsets[i]] = value;
+            }
+        }
+        values[numValues - 1] = setLabel ? labelValue : instance.classValue();
+        return values;
+    }
+
+    /**
+     * Writes the non-zero projected input values of instance, in increasing projected index, into indices and
+     * values, which must hold at least numFeatures() entries, and returns their number. The class value is not
+     * written. Same values as project, in time linear in the number of subspace features instead of projected values.
+     */
+    public int projectSparse(Instance instance, int[] indices, double[] values) {
+        int nnz = 0;
+        for (int i = 0; i < featureIndexes.length; i++) {
+            double value = instance.value(featureIndexes[i]);
+            if (oneHotWidths[i] > 0) {
+                indices[nnz] = outputOffsets[i] + (int) value;
+                values[nnz++] = 1.0;
+            } else if (value != 0.0) {
+                indices[nnz] = outputOffsets[i];
+                values[nnz++] = value;
+            }
+        }
+        return nnz;
+    }
+
+    /**
+     * Returns the projection of instance backed by this thread's value buffer. The caller must not keep it past
+     * the next call on the same thread, nor train a learner on it.
+     */
+    public Instance project(Instance instance, double weight, double labelValue) {
+        DenseInstance subInstance = new DenseInstance(weight, project(instance, labelValue, getValueBuffer()));
+        subInstance.setDataset(header);
+        return subInstance;
+    }
+
+    /**
+     * Returns the projection of instance backed by its own value array, for instances that have to outlive the
+     * next call to project, e.g. the instances a stage is trained on or those of a mini-batch.
+     */
+    public Instance projectCopy(Instance instance, double weight, double labelValue) {
+        DenseInstance subInstance = new DenseInstance(weight, project(instance, labelValue, new double[numValues]));
+        subInstance.setDataset(header);
+        return subInstance;
+    }
+
+    protected double[] getValueBuffer() {
+        if (valueBuffers == null) {
+            synchronized (this) {
+                if (valueBuffers == null) {
+                    valueBuffers = ThreadLocal.withInitial(() -> new double[numValues]);
+                }
+            }
+        }
+        return valueBuffers.get();
+    }
+}
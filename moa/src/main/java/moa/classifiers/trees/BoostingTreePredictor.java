@@ -6,9 +6,15 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.*;
 import moa.classifiers.core.driftdetection.ADWIN;
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.Checkpointable;
+import moa.core.CommitteeExecutor;
 import moa.core.Measurement;
+import moa.core.ObjectSizes;
 import moa.options.ClassOption;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -16,7 +22,6 @@ import java.util.stream.IntStream;
 
 import moa.classifiers.Classifier;
 import org.openjdk.jol.info.GraphLayout;
-import org.openjdk.jol.vm.VM;
 
 import static moa.core.Measurement.getMeasurementNamed;
 
@@ -24,15 +29,21 @@ class TreeCommittee implements Serializable{
 
     private static final long serialVersionUID = 8961897277670201943L;
     protected Classifier[] treesCommittee;
+    protected transient CommitteeExecutor executor;
 
     public TreeCommittee(Classifier baseLearner, int numTrees) {
         treesCommittee = new Classifier[numTrees];
+        ClassifierFactory factory = new ClassifierFactory(baseLearner);
         for (int i = 0; i < treesCommittee.length; i++) {
 //            treesCommittee[i] = new StreamingGradientTree(featureInfo, options);
-            treesCommittee[i] = baseLearner.copy();
+            treesCommittee[i] = factory.create();
         }
     }
 
+    TreeCommittee(Classifier[] treesCommittee) {
+        this.treesCommittee = treesCommittee;
+    }
+
     public HashMap getNumNodes() {
         int result = 0;
         HashMap<Integer,Object> treeInformation=new HashMap<Integer,Object>();//Creating HashMap
@@ -86,53 +97,62 @@ class TreeCommittee implements Serializable{
 
     static void modelUpdate(Classifier c, Instance inst, int multipleIterationByHessianCeiling, double hessian){
         double trainTimes = multipleIterationByHessianCeiling > 1 ? Math.ceil(hessian * multipleIterationByHessianCeiling) : 1.0;
+        if (trainTimes > 1.0 && c instanceof ReplicatedTrainingLearner) {
+            // one weighted update, the work no longer grows with the hessian
+            ((ReplicatedTrainingLearner) c).trainOnReplicatedInstance(inst, trainTimes);
+            return;
+        }
         for (int i=0; i < (int) trainTimes; i++){
             c.trainOnInstance(inst);
         }
     }
 
-    public void update(Instance[] instArray, int multipleIterationByHessianCeiling, GradHess[] gradHess) {
-        if (treesCommittee.length == 1){
-            IntStream.range(0, treesCommittee.length)
-                    .forEach(i -> modelUpdate(treesCommittee[i],instArray[i], multipleIterationByHessianCeiling, gradHess[i].hessian ));
-        }else{
-            IntStream.range(0, treesCommittee.length)
-                    .parallel()
-                    .forEach(i -> modelUpdate(treesCommittee[i],instArray[i], multipleIterationByHessianCeiling, gradHess[i].hessian ));
-        }
-
+    public void update(Instance[] instArray, int multipleIterationByHessianCeiling, double[] hessians) {
+        getExecutor().forEach(treesCommittee.length,
+                i -> modelUpdate(treesCommittee[i],instArray[i], multipleIterationByHessianCeiling, hessians[i] ));
     }
 
     public void update(Instance inst) {
-        if (treesCommittee.length == 1){
-            IntStream.range(0, treesCommittee.length)
-                    .forEach(i -> treesCommittee[i].trainOnInstance(inst));
-        }else {
-            IntStream.range(0, treesCommittee.length)
-                    .parallel()
-                    .forEach(i -> treesCommittee[i].trainOnInstance(inst));
-        }
+        getExecutor().forEach(treesCommittee.length, i -> treesCommittee[i].trainOnInstance(inst));
+    }
+
+    /**
+     * Trains every tree on its sub instances of the whole batch, with one fork per batch instead of one per instance.
+     */
+    public void update(Instance[][] batch, int multipleIterationByHessianCeiling, double[][] hessians) {
+        getExecutor().forEach(treesCommittee.length, i -> {
+            for (int b = 0; b < batch.length; b++) {
+                modelUpdate(treesCommittee[i], batch[b][i], multipleIterationByHessianCeiling, hessians[b][i]);
+            }
+        });
     }
 
 
     public double[] predict(Instance inst) {
         double[] v = new double[treesCommittee.length];
-        if (treesCommittee.length == 1){
-            IntStream.range(0, treesCommittee.length)
-                    .forEach(i -> v[i] = treesCommittee[i].getVotesForInstance(inst)[0]);
-        }else {
 //            return IntStream.range(0, treesCommittee.length)
 //                    .parallel()
 //                    .mapToDouble(i -> treesCommittee[i].getVotesForInstance(inst)[0])
 //                    .toArray();
-            IntStream.range(0, treesCommittee.length)
-                    .parallel()
-                    .forEach(i -> v[i] = treesCommittee[i].getVotesForInstance(inst)[0]);
-        }
+        getExecutor().forEach(treesCommittee.length, i -> v[i] = treesCommittee[i].getVotesForInstance(inst)[0]);
+        return v;
+    }
+
+    public double[][] predict(Instance[] batch) {
+        double[][] v = new double[batch.length][treesCommittee.length];
+        getExecutor().forEach(treesCommittee.length, i -> {
+            for (int b = 0; b < batch.length; b++) {
+                v[b][i] = treesCommittee[i].getVotesForInstance(batch[b])[0];
+            }
+        });
         return v;
     }
+
+    CommitteeExecutor getExecutor() {
+        return executor != null ? executor : CommitteeExecutor.getDefault();
+    }
 }
-public class BoostingTreePredictor extends BoostingCommittee implements Serializable, MultiClassClassifier, Regressor, SemiSupervisedLearner {
+public class BoostingTreePredictor extends BoostingCommittee implements Serializable, MultiClassClassifier, Regressor, SemiSupervisedLearner, Checkpointable {
 
     private static final long serialVersionUID = 1L;
 
@@ -163,33 +183,62 @@ public ClassOption baseLearnerOption = new ClassOption("baseLearner", 'l',
     public long measureByteSize() {
         long b = 0;
         // get shallow size of this
-        b = VM.current().sizeOf(this);
+        b = ObjectSizes.sizeOf(this);
         if ((treeCommittee!= null) && (treeCommittee.treesCommittee != null)){
-
-            long[] byteSize = new long[treeCommittee.treesCommittee.length];
-            // get deep size of each item
-            if (treeCommittee.treesCommittee.length == 1) {
-                IntStream.range(0, treeCommittee.treesCommittee.length)
-                        .forEach(i -> byteSize[i] = treeCommittee.treesCommittee[i].measureByteSize());
-//                        .forEach(i -> byteSize[i] = GraphLayout.parseInstance(treeCommittee.treesCommittee[i]).totalSize());
-            }else{
-                IntStream.range(0, treeCommittee.treesCommittee.length)
-                        .parallel()
-                        .forEach(i -> byteSize[i] = treeCommittee.treesCommittee[i].measureByteSize());
-//                        .forEach(i -> byteSize[i] = GraphLayout.parseInstance(treeCommittee.treesCommittee[i]).totalSize());
-            }
+            // the trees keep a running estimate of their size, so this is O(#trees)
             for (int i = 0; i < treeCommittee.treesCommittee.length; i++) {
-                b += byteSize[i];
+                b += treeCommittee.treesCommittee[i].measureByteSize();
+//                b += GraphLayout.parseInstance(treeCommittee.treesCommittee[i]).totalSize();
             }
         }
         return b;
     }
 
+    @Override
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        writeClassifierCheckpoint(out);
+        out.writeInt(committeeSize);
+        out.writeInt(mInstances);
+        out.writeInt(treeCommittee == null ? -1 : treeCommittee.treesCommittee.length);
+        if (treeCommittee != null) {
+            for (Classifier tree : treeCommittee.treesCommittee) {
+                out.writeLearner(tree);
+            }
+        }
+    }
+
+    @Override
+    public void readCheckpoint(CheckpointInput in) throws IOException {
+        readClassifierCheckpoint(in);
+        committeeSize = in.readInt();
+        mInstances = in.readInt();
+        int numTrees = in.readInt();
+        treeCommittee = null;
+        if (numTrees >= 0) {
+            Classifier[] trees = new Classifier[numTrees];
+            for (int i = 0; i < numTrees; i++) {
+                trees[i] = in.readLearner();
+            }
+            treeCommittee = new TreeCommittee(trees);
+            treeCommittee.executor = executor;
+        }
+    }
+
     protected TreeCommittee createTrees(Classifier baseLearner, int numOutputs) {
-        return new TreeCommittee(baseLearner, numOutputs);
+        TreeCommittee trees = new TreeCommittee(baseLearner, numOutputs);
+        trees.executor = executor;
+        return trees;
+    }
+
+    @Override
+    public void setExecutor(CommitteeExecutor executor) {
+        super.setExecutor(executor);
+        if (treeCommittee != null) {
+            treeCommittee.executor = executor;
+        }
     }
 
-    public void trainOnInstanceImpl(Instance inst, GradHess[] gradHess, double[] raw /* only for semiSupervisedOption */) {
+    public void trainOnInstanceImpl(Instance inst, double[] gradients, double[] hessians, double[] raw /* only for semiSupervisedOption */) {
         String currentMethod = new Exception().getStackTrace()[0].getMethodName();
         throw new UnsupportedOperationException(this.getClass().getName() + " " +currentMethod);
     }
@@ -243,14 +292,25 @@ public ClassOption baseLearnerOption = new ClassOption("baseLearner", 'l',
         return committeeInformation;
     }
 
-    public void trainOnInstanceImpl(Instance[] instances, int multipleIterationByHessianCeiling, GradHess[] gradHess){
+    public void trainOnInstanceImpl(Instance[] instances, int multipleIterationByHessianCeiling, double[] hessians){
         mInstances++;
 
         if(treeCommittee == null) {
             Classifier baseLearner = (Classifier) getPreparedClassOption(this.baseLearnerOption);
             treeCommittee = createTrees(baseLearner, committeeSize);
         }
-        treeCommittee.update(instances, multipleIterationByHessianCeiling, gradHess);
+        treeCommittee.update(instances, multipleIterationByHessianCeiling, hessians);
+    }
+
+    @Override
+    public void trainOnBatch(Instance[][] instances, int multipleIterationByHessianCeiling, double[][] hessians) {
+        mInstances += instances.length;
+
+        if(treeCommittee == null) {
+            Classifier baseLearner = (Classifier) getPreparedClassOption(this.baseLearnerOption);
+            treeCommittee = createTrees(baseLearner, committeeSize);
+        }
+        treeCommittee.update(instances, multipleIterationByHessianCeiling, hessians);
     }
 
     public void trainOnInstanceImpl(Instance inst) {
@@ -271,6 +331,15 @@ public ClassOption baseLearnerOption = new ClassOption("baseLearner", 'l',
         return treeCommittee.predict(inst);
     }
 
+    @Override
+    public double[][] getScoresForBatch(Instance[] instances) {
+        if(treeCommittee == null) {
+            return super.getScoresForBatch(instances);
+        }
+
+        return treeCommittee.predict(instances);
+    }
+
     public double[] getVotesForInstance(Instance inst) {
         String currentMethod = new Exception().getStackTrace()[0].getMethodName();
         throw new UnsupportedOperationException(this.getClass().getName() + " " +currentMethod);
@@ -313,6 +382,51 @@ public ClassOption baseLearnerOption = new ClassOption("baseLearner", 'l',
                 new Measurement("totalSplits", totalSplits)
         };
     }
+    @Override
+    public long getNumLeaves() {
+        long n = 0;
+        if (treeCommittee != null) {
+            for (Classifier c : treeCommittee.treesCommittee) {
+                if (c instanceof FIMTDD) {
+                    n += ((FIMTDD) c).leafNodeCount;
+                } else if (c instanceof HoeffdingTree) {
+                    n += ((HoeffdingTree) c).activeLeafNodeCount + ((HoeffdingTree) c).inactiveLeafNodeCount;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public long getNumSplitAttempts() {
+        long n = 0;
+        if (treeCommittee != null) {
+            for (Classifier c : treeCommittee.treesCommittee) {
+                if (c instanceof FIMTDD) {
+                    n += ((FIMTDD) c).splitAttempts;
+                } else if (c instanceof HoeffdingTree) {
+                    n += ((HoeffdingTree) c).splitAttempts;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public long getNumSplitsApplied() {
+        long n = 0;
+        if (treeCommittee != null) {
+            for (Classifier c : treeCommittee.treesCommittee) {
+                if (c instanceof FIMTDD) {
+                    n += ((FIMTDD) c).splitNodeCount;
+                } else if (c instanceof HoeffdingTree) {
+                    n += ((HoeffdingTree) c).decisionNodeCount;
+                }
+            }
+        }
+        return n;
+    }
+
     @Override
     public Measurement[] getModelMeasurementsImpl() {
         double avgNumNodes = 0.0;
@@ -20,6 +20,7 @@
 
 package moa.classifiers.trees;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -33,17 +34,22 @@ import com.github.javacliparser.IntOption;
 import moa.options.ClassOption;
 import moa.AbstractMOAObject;
 import moa.classifiers.Regressor;
+import moa.classifiers.ReplicatedTrainingLearner;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.attributeclassobservers.FIMTDDNumericAttributeClassObserver;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.classifiers.AbstractClassifier;
 import moa.core.AutoExpandVector;
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.Checkpointable;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.ObjectSizes;
 import moa.core.SizeOf;
 import moa.core.StringUtils;
-import org.openjdk.jol.info.GraphLayout;
 
 /**
  * Implementation of FIMTDD, regression and model trees for data streams.
@@ -53,7 +59,7 @@ import org.openjdk.jol.info.GraphLayout;
  * Data mining and knowledge discovery 23.1 (2011): 128-168.</p>
  */
 
-public class FIMTDD extends AbstractClassifier implements Regressor {
+public class FIMTDD extends AbstractClassifier implements Regressor, ReplicatedTrainingLearner, Checkpointable {
 
 	private static final long serialVersionUID = 1L;
 
@@ -64,9 +70,16 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 	protected int splitsByConfidence = 0;
 	protected int splitsByHBound = 0;
 	protected int splitsByHBoundSmallerThanTieThreshold = 0;
+	// Calls of attemptToSplit, whether or not a split was made
+	protected int splitAttempts = 0;
 
 	protected double examplesSeen = 0.0;
 	protected double sumOfValues = 0.0;
+
+	// Perceptron steps of the instance being trained on by trainOnReplicatedInstance, -1 for one per unit of weight
+	protected int perceptronSteps = -1;
+	// Copies of the instance being trained on by trainOnReplicatedInstance, the E-BSTs count each of them
+	protected double replications = 1;
 	protected double sumOfSquares = 0.0;
 
 	protected DoubleVector sumOfAttrValues = new DoubleVector();
@@ -74,6 +87,9 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 
 	public int maxID = 0;
 
+	// Running estimate of the bytes held by the nodes, see updateByteSizeEstimate
+	protected long byteSizeEstimate = 0;
+
 	//region ================ OPTIONS ================
 
 	public ClassOption splitCriterionOption = new ClassOption(
@@ -158,6 +174,9 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 		// Sum of absolute errors
 		protected double sumOfAbsErrors; // Needed for PH tracking of mean error
 
+		// The share of this node in the byteSizeEstimate of the tree
+		protected long byteSize;
+
 		public Node(FIMTDD tree) {
 			this.tree = tree;
 			ID = tree.maxID; 
@@ -174,6 +193,13 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 			return (int) SizeOf.fullSizeOf(this);
 		}
 
+		/**
+		 * Estimate of the bytes held by this node alone, without walking the tree
+		 */
+		public long calcByteSizeEstimate() {
+			return ObjectSizes.sizeOf(this);
+		}
+
 		/**
 		 * Set the parent node
 		 */
@@ -281,6 +307,19 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 		protected boolean skipInLevelCount() {
 			return false;
 		}
+
+		public long calcByteSizeEstimate() {
+			long size = super.calcByteSizeEstimate() + ObjectSizes.sizeOf(attributeObservers);
+			for (FIMTDDNumericAttributeClassObserver obs : attributeObservers) {
+				if (obs != null) {
+					size += obs.calcByteSizeEstimate();
+				}
+			}
+			if (learningModel != null) {
+				size += ObjectSizes.sizeOf(learningModel) + ObjectSizes.sizeOf(learningModel.weightAttribute);
+			}
+			return size;
+		}
 		
 		/**
 		 * Method to learn from an instance that passes the new instance to the perceptron learner,
@@ -305,6 +344,8 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 
 			if (tree.buildingModelTree()) learningModel.updatePerceptron(inst);
 
+			// Bytes added to the observers by this instance, the rest of the leaf is measured in checkForSplit
+			long addedBytes = 0;
 			for (int i = 0; i < inst.numAttributes() - 1; i++) {
 				int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
 				FIMTDDNumericAttributeClassObserver obs = attributeObservers.get(i);
@@ -314,11 +355,16 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 //					}
 					obs = tree.newNumericClassObserver();
 					this.attributeObservers.set(i, obs);
+					addedBytes += ObjectSizes.sizeOf(obs);
 				}
 				if (obs != null) {
-					obs.observeAttributeClass(inst.value(instAttIndex), inst.classValue(), inst.weight());
+					int numNodes = obs.getNumNodes();
+					obs.observeAttributeClass(inst.value(instAttIndex), inst.classValue(), inst.weight(), tree.replications);
+					addedBytes += (obs.getNumNodes() - numNodes) * FIMTDDNumericAttributeClassObserver.getNodeByteSize();
 				}
 			}
+			byteSize += addedBytes;
+			tree.byteSizeEstimate += addedBytes;
 
 			if (growthAllowed) {
 				checkForSplit(tree);
@@ -371,6 +417,8 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 		public void checkForSplit(FIMTDD tree) {
 			// If it has seen Nmin examples since it was last tested for splitting, attempt a split of this node
 			if (examplesSeen - examplesSeenAtLastSplitEvaluation >= tree.gracePeriodOption.getValue()) {
+				// The observers have grown since the last evaluation
+				tree.updateByteSizeEstimate(this);
 				int index = (parent != null) ? parent.getChildIndex(this) : 0;
 				tree.attemptToSplit(this, parent, index);
 
@@ -469,6 +517,7 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 			alternateTree = tree.newLeafNode();
 //			System.gc();
 			alternateTree.originalNode = this;
+			tree.updateByteSizeEstimate(alternateTree);
 
 			// Set up the blank statistics
 			// Number of instances reaching this node since the alternate tree was started
@@ -507,6 +556,11 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 		public int instanceChildIndex(Instance inst) {
 			return splitTest.branchForInstance(inst);
 		}
+
+		public long calcByteSizeEstimate() {
+			// the split tests only hold primitives
+			return super.calcByteSizeEstimate() + ObjectSizes.sizeOf(children) + ObjectSizes.sizeOf(splitTest);
+		}
 		
 		public Node descendOneStep(Instance inst) {
 			return children.get(splitTest.branchForInstance(inst));
@@ -598,10 +652,29 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 			sumOfValues += inst.weight() * inst.classValue();
 			sumOfSquares += inst.weight() * inst.classValue() * inst.classValue();
 
-			// Loop for compatibility with bagging methods 
-			for (int i = 0; i < (int) inst.weight(); i++) {
-				updateWeights(inst, learningRatio);
+			// One step per unit of weight, for compatibility with bagging methods
+			updateWeights(inst, learningRatio, tree.perceptronSteps >= 0 ? tree.perceptronSteps : (int) inst.weight());
+		}
+
+		/**
+		 * Applies steps updates on inst at once. Each step shrinks the error on inst by the same factor, so the
+		 * steps add up to a geometric series along the normalized instance.
+		 */
+		public void updateWeights(Instance inst, double learningRatio, int steps) {
+			if (steps <= 1) {
+				if (steps == 1) updateWeights(inst, learningRatio);
+				return;
 			}
+			DoubleVector normalizedInstance = normalizedInstance(inst);
+			double normalizedPrediction = prediction(normalizedInstance);
+			double normalizedValue = tree.normalizeTargetValue(inst.classValue());
+			double delta = normalizedValue - normalizedPrediction;
+			double contraction = learningRatio * scalarProduct(normalizedInstance, normalizedInstance);
+			double stepSum = contraction == 0.0 ? steps * learningRatio
+					: learningRatio * (1.0 - Math.pow(1.0 - contraction, steps)) / contraction;
+			normalizedInstance.scaleValues(delta * stepSum);
+
+			weightAttribute.addValues(normalizedInstance);
 		}
 
 		public void updateWeights(Instance inst, double learningRatio) {
@@ -688,7 +761,9 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 		this.treeRoot = null;
 		this.leafNodeCount = 0;
 		this.splitNodeCount = 0;
+		this.splitAttempts = 0;
 		this.maxID = 0;
+		this.byteSizeEstimate = 0;
 		this.examplesSeen = 0;
 		this.sumOfValues = 0.0;
 		this.sumOfSquares = 0.0;
@@ -718,7 +793,34 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 
 	@Override
 	public long measureByteSize() {
-		return calcByteSize();
+		// calcByteSize walks the whole tree, the estimate is kept up to date as the tree grows
+		return ObjectSizes.sizeOf(this) + byteSizeEstimate;
+	}
+
+	/**
+	 * Replaces the share of node in byteSizeEstimate with its current size estimate
+	 */
+	protected void updateByteSizeEstimate(Node node) {
+		long size = node.calcByteSizeEstimate();
+		byteSizeEstimate += size - node.byteSize;
+		node.byteSize = size;
+	}
+
+	/**
+	 * Removes node, its subtree and the alternate trees within it from byteSizeEstimate, except for the subtree keep
+	 */
+	protected void releaseByteSizeEstimate(Node node, Node keep) {
+		if (node == null || node == keep) {
+			return;
+		}
+		byteSizeEstimate -= node.byteSize;
+		node.byteSize = 0;
+		if (node instanceof InnerNode) {
+			for (Node child : ((InnerNode) node).children) {
+				releaseByteSizeEstimate(child, keep);
+			}
+		}
+		releaseByteSizeEstimate(node.alternateTree, keep);
 	}
 
 	public double[] getVotesForInstance(Instance inst) {
@@ -750,6 +852,23 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 	}
 
 
+	/**
+	 * Trains once on inst weighted by replications, instead of replications times on inst.
+	 */
+	public void trainOnReplicatedInstance(Instance inst, double replications) {
+		Instance replicated = inst.copy();
+		replicated.setWeight(inst.weight() * replications);
+		// the perceptron takes the steps of every copy, as if it had been trained on them one by one
+		perceptronSteps = (int) (replications * (int) inst.weight());
+		this.replications = replications;
+		try {
+			trainOnInstance(replicated);
+		} finally {
+			perceptronSteps = -1;
+			this.replications = 1;
+		}
+	}
+
 	/**
 	 * Method for updating (training) the model using a new instance
 	 */
@@ -804,6 +923,7 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 						if (Qi > 0) {
 							// Switch the subtrees
 							Node parent = currentNode.getParent();
+							releaseByteSizeEstimate(iNode, iNode.alternateTree);
 
 							if (parent != null) {
 								Node replacementTree = iNode.alternateTree;
@@ -824,10 +944,10 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 								|| iNode.lossExamplesSeen >= alternateTreeTimeOption.getValue()
 								) {
 							// Remove the alternate tree
+							releaseByteSizeEstimate(iNode.alternateTree, null);
 							iNode.alternateTree = null;
 							if (growthAllowed) iNode.restartChangeDetection();
 							altTree = false;
-							System.gc();
 						}
 					}
 
@@ -879,6 +999,7 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 		if (treeRoot == null) {
 			treeRoot = newLeafNode();
 			leafNodeCount = 1;
+			updateByteSizeEstimate(treeRoot);
 		}
 	}
 
@@ -891,6 +1012,8 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 	}
 
 	protected void attemptToSplit(LeafNode node, Node parent, int parentIndex) {
+		splitAttempts++;
+
 		// Set the split criterion to use to the SDR split criterion as described by Ikonomovska et al. 
 		SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
 
@@ -966,8 +1089,11 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 				newChild.changeDetection = node.changeDetection;
 				newChild.setParent(newSplit);
 				newSplit.setChild(i, newChild);
+				updateByteSizeEstimate(newChild);
 				leafNodeCount++;
 			}
+			releaseByteSizeEstimate(node, null);
+			updateByteSizeEstimate(newSplit);
 			if (parent == null && node.originalNode == null) {
 				treeRoot = newSplit;
 			} else if (parent == null && node.originalNode != null) {
@@ -997,6 +1123,191 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 		return ret;
 	}
 	//endregion --- Processing methods
+
+	// region --- Checkpoint methods
+
+	public boolean canWriteCheckpoint() {
+		// subclasses such as ORTO have node types of their own
+		return getClass() == FIMTDD.class;
+	}
+
+	public void writeCheckpoint(CheckpointOutput out) throws IOException {
+		writeClassifierCheckpoint(out);
+		out.writeInt(leafNodeCount);
+		out.writeInt(splitNodeCount);
+		out.writeInt(splitsByConfidence);
+		out.writeInt(splitsByHBound);
+		out.writeInt(splitsByHBoundSmallerThanTieThreshold);
+		out.writeDouble(examplesSeen);
+		out.writeDouble(sumOfValues);
+		out.writeDouble(sumOfSquares);
+		out.writeDoubleArray(sumOfAttrValues.getArrayCopy());
+		out.writeDoubleArray(sumOfAttrSquares.getArrayCopy());
+		out.writeInt(maxID);
+		out.writeLong(byteSizeEstimate);
+		out.writeInt(splitAttempts);
+		writeNode(out, treeRoot);
+	}
+
+	public void readCheckpoint(CheckpointInput in) throws IOException {
+		readClassifierCheckpoint(in);
+		leafNodeCount = in.readInt();
+		splitNodeCount = in.readInt();
+		splitsByConfidence = in.readInt();
+		splitsByHBound = in.readInt();
+		splitsByHBoundSmallerThanTieThreshold = in.readInt();
+		examplesSeen = in.readDouble();
+		sumOfValues = in.readDouble();
+		sumOfSquares = in.readDouble();
+		sumOfAttrValues = new DoubleVector(in.readDoubleArray());
+		sumOfAttrSquares = new DoubleVector(in.readDoubleArray());
+		maxID = in.readInt();
+		byteSizeEstimate = in.readLong();
+		splitAttempts = in.readInt();
+		treeRoot = readNode(in, null);
+	}
+
+	/**
+	 * Writes node, its subtree and its alternate tree as a sequence of primitives, 0 for a missing node
+	 */
+	protected void writeNode(CheckpointOutput out, Node node) throws IOException {
+		if (node == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeByte(node instanceof SplitNode ? 2 : 1);
+		out.writeInt(node.ID);
+		out.writeBoolean(node.changeDetection);
+		out.writeDouble(node.examplesSeen);
+		out.writeDouble(node.sumOfValues);
+		out.writeDouble(node.sumOfSquares);
+		out.writeDouble(node.sumOfAbsErrors);
+		out.writeLong(node.byteSize);
+
+		if (node instanceof SplitNode) {
+			SplitNode split = (SplitNode) node;
+			if (split.splitTest.getClass() == NumericAttributeBinaryTest.class) {
+				NumericAttributeBinaryTest test = (NumericAttributeBinaryTest) split.splitTest;
+				out.writeBoolean(true);
+				out.writeInt(test.getAttsTestDependsOn()[0]);
+				out.writeDouble(test.getSplitValue());
+				out.writeBoolean(test.isEqualsPassesTest());
+			} else {
+				out.writeBoolean(false);
+				out.writeObject(split.splitTest);
+			}
+			out.writeDouble(split.PHsum);
+			out.writeDouble(split.PHmin);
+			out.writeDouble(split.lossExamplesSeen);
+			out.writeDouble(split.lossFadedSumOriginal);
+			out.writeDouble(split.lossFadedSumAlternate);
+			out.writeDouble(split.lossNumQiTests);
+			out.writeDouble(split.lossSumQi);
+			out.writeDouble(split.previousWeight);
+			out.writeInt(split.numChildren());
+			for (int i = 0; i < split.numChildren(); i++) {
+				writeNode(out, split.getChild(i));
+			}
+		} else {
+			LeafNode leaf = (LeafNode) node;
+			out.writeDouble(leaf.examplesSeenAtLastSplitEvaluation);
+			FIMTDDPerceptron model = leaf.learningModel;
+			out.writeBoolean(model != null);
+			if (model != null) {
+				out.writeDoubleArray(model.weightAttribute.getArrayCopy());
+				out.writeDouble(model.sumOfValues);
+				out.writeDouble(model.sumOfSquares);
+				out.writeDouble(model.instancesSeen);
+				out.writeBoolean(model.reset);
+			}
+			out.writeInt(leaf.attributeObservers.size());
+			for (int i = 0; i < leaf.attributeObservers.size(); i++) {
+				FIMTDDNumericAttributeClassObserver obs = leaf.attributeObservers.get(i);
+				out.writeBoolean(obs != null);
+				if (obs != null) {
+					obs.writeCheckpoint(out);
+				}
+			}
+		}
+		writeNode(out, node.alternateTree);
+	}
+
+	protected Node readNode(CheckpointInput in, Node parent) throws IOException {
+		int type = in.readByte();
+		if (type == 0) {
+			return null;
+		}
+		int id = in.readInt();
+		boolean changeDetection = in.readBoolean();
+		double nodeExamplesSeen = in.readDouble();
+		double nodeSumOfValues = in.readDouble();
+		double nodeSumOfSquares = in.readDouble();
+		double nodeSumOfAbsErrors = in.readDouble();
+		long nodeByteSize = in.readLong();
+
+		Node node;
+		if (type == 2) {
+			InstanceConditionalTest splitTest;
+			if (in.readBoolean()) {
+				splitTest = new NumericAttributeBinaryTest(in.readInt(), in.readDouble(), in.readBoolean());
+			} else {
+				splitTest = (InstanceConditionalTest) in.readObject();
+			}
+			SplitNode split = new SplitNode(splitTest, this);
+			split.PHsum = in.readDouble();
+			split.PHmin = in.readDouble();
+			split.lossExamplesSeen = in.readDouble();
+			split.lossFadedSumOriginal = in.readDouble();
+			split.lossFadedSumAlternate = in.readDouble();
+			split.lossNumQiTests = in.readDouble();
+			split.lossSumQi = in.readDouble();
+			split.previousWeight = in.readDouble();
+			int numChildren = in.readInt();
+			for (int i = 0; i < numChildren; i++) {
+				split.setChild(i, readNode(in, split));
+			}
+			node = split;
+		} else {
+			LeafNode leaf = new LeafNode(this);
+			leaf.examplesSeenAtLastSplitEvaluation = in.readDouble();
+			if (in.readBoolean()) {
+				FIMTDDPerceptron model = newLeafModel();
+				model.weightAttribute = new DoubleVector(in.readDoubleArray());
+				model.sumOfValues = in.readDouble();
+				model.sumOfSquares = in.readDouble();
+				model.instancesSeen = in.readDouble();
+				model.reset = in.readBoolean();
+				leaf.learningModel = model;
+			} else {
+				leaf.learningModel = null;
+			}
+			int numObservers = in.readInt();
+			for (int i = 0; i < numObservers; i++) {
+				if (in.readBoolean()) {
+					FIMTDDNumericAttributeClassObserver obs = newNumericClassObserver();
+					obs.readCheckpoint(in);
+					leaf.attributeObservers.set(i, obs);
+				}
+			}
+			node = leaf;
+		}
+		node.ID = id;
+		node.changeDetection = changeDetection;
+		node.examplesSeen = nodeExamplesSeen;
+		node.sumOfValues = nodeSumOfValues;
+		node.sumOfSquares = nodeSumOfSquares;
+		node.sumOfAbsErrors = nodeSumOfAbsErrors;
+		node.byteSize = nodeByteSize;
+		node.setParent(parent);
+
+		node.alternateTree = readNode(in, null);
+		if (node.alternateTree != null) {
+			node.alternateTree.originalNode = node;
+		}
+		return node;
+	}
+
+	//endregion --- Checkpoint methods
 	
 	//endregion ================ METHODS ================
 }
@@ -527,6 +527,12 @@ public class HoeffdingAdaptiveRegressionTree extends HoeffdingRegressionTree {
         }
         return new double[0];
     }
+    @Override
+    public long measureByteSize() {
+        // the adaptive nodes and their alternate trees are not covered by the running estimate
+        return calcByteSize();
+    }
+
     @Override
     public void enforceTrackerLimit() {
 
@@ -32,7 +32,9 @@ import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.classifiers.meta.Boosting;
 import moa.core.AutoExpandVector;
+import moa.classifiers.core.attributeclassobservers.FIMTDDNumericAttributeClassObserver;
 import moa.core.DoubleVector;
+import moa.core.ObjectSizes;
 import moa.core.StringUtils;
 
 import java.io.Serializable;
@@ -79,6 +81,9 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
 
     public static boolean regressionTree ;
 
+    // Running estimate of the bytes held by the nodes, see updateByteSizeEstimate
+    protected long byteSizeEstimate = 0;
+
     @Override
     public String getPurposeString() {
         return "Hoeffding Regression Tree .";
@@ -119,6 +124,9 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
 
         LearningNodePerceptron learningModel;
 
+        // The share of this node in the byteSizeEstimate of the tree
+        protected long byteSize;
+
         public ActiveLearningNodeForRegression(double[] initialClassObservations,LearningNodePerceptron p) {
             super(initialClassObservations);
             this.weightSeenAtLastSplitEvaluation = getWeightSeen();
@@ -126,6 +134,23 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
             this.learningModel = p ;
         }
 
+        /**
+         * Estimate of the bytes held by this leaf. The perceptron holds the tree, so only its weights are followed.
+         * Observers other than FIMTDDNumericAttributeClassObserver only count their shallow size.
+         */
+        public long calcByteSizeEstimate() {
+            long size = ObjectSizes.sizeOf(this) + ObjectSizes.sizeOf(this.learningModel)
+                    + ObjectSizes.sizeOf(this.observedClassDistribution) + ObjectSizes.sizeOf(this.learningModel.weightAttribute);
+            if (this.attributeObservers != null) {
+                size += ObjectSizes.sizeOf(this.attributeObservers) + ObjectSizes.sizeOfArray(Object.class, this.attributeObservers.size());
+                for (AttributeClassObserver obs : this.attributeObservers) {
+                    size += obs instanceof FIMTDDNumericAttributeClassObserver
+                            ? ((FIMTDDNumericAttributeClassObserver) obs).calcByteSizeEstimate() : ObjectSizes.sizeOf(obs);
+                }
+            }
+            return size;
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
             if (this.isInitialized == false) {
@@ -248,6 +273,7 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
         if (this.treeRoot == null) {
             this.treeRoot = newLearningNode();
             this.activeLeafNodeCount = 1;
+            updateByteSizeEstimate(this.treeRoot);
         }
         for (int i = 0; i < inst.numAttributes() - 1; i++) {
             int aIndex = modelAttIndexToInstanceAttIndex(i, inst);
@@ -260,6 +286,7 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
             leafNode = newLearningNode();
             foundNode.parent.setChild(foundNode.parentBranch, leafNode);
             this.activeLeafNodeCount++;
+            updateByteSizeEstimate(leafNode);
         }
         if (leafNode instanceof LearningNode) {
             LearningNode learningNode = (LearningNode) leafNode;
@@ -270,6 +297,8 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
                 double weightSeen = activeLearningNode.getWeightSeen();
                 if (weightSeen
                         - activeLearningNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriodOption.getValue()) {
+                    // the attribute observers have grown since the last evaluation
+                    updateByteSizeEstimate(activeLearningNode);
                     attemptToSplit(activeLearningNode, foundNode.parent,
                             foundNode.parentBranch);
                     activeLearningNode.setWeightSeenAtLastSplitEvaluation(weightSeen);
@@ -280,6 +309,7 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
 
     protected void attemptToSplit(ActiveLearningNodeForRegression node, SplitNode parent,
                                   int parentIndex) {
+        this.splitAttempts++;
         if (!node.observedClassDistributionIsPure()) {
             SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
             AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this);
@@ -342,7 +372,10 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
                     for (int i = 0; i < splitDecision.numSplits(); i++) {
                         Node newChild = newLearningNode(splitDecision.resultingClassDistributionFromSplit(i),new LearningNodePerceptron((LearningNodePerceptron) node.learningModel));
                         newSplit.setChild(i, newChild);
+                        updateByteSizeEstimate(newChild);
                     }
+                    this.byteSizeEstimate += ObjectSizes.sizeOf(newSplit) + ObjectSizes.sizeOf(newSplit.children)
+                            + ObjectSizes.sizeOf(newSplit.observedClassDistribution) + ObjectSizes.sizeOf(newSplit.splitTest) - node.byteSize;
                     this.activeLeafNodeCount--;
                     this.decisionNodeCount++;
                     this.activeLeafNodeCount += splitDecision.numSplits();
@@ -527,9 +560,28 @@ public class HoeffdingRegressionTree extends HoeffdingTree  implements Regressor
         return true;
     }
 
+    @Override
+    public long measureByteSize() {
+        // calcByteSize walks the whole tree, the estimate is kept up to date as the tree grows
+        return ObjectSizes.sizeOf(this) + this.byteSizeEstimate;
+    }
+
+    /**
+     * Replaces the share of node in byteSizeEstimate with its current size.
+     */
+    protected void updateByteSizeEstimate(Node node) {
+        if (node instanceof ActiveLearningNodeForRegression) {
+            ActiveLearningNodeForRegression learningNode = (ActiveLearningNodeForRegression) node;
+            long size = learningNode.calcByteSizeEstimate();
+            this.byteSizeEstimate += size - learningNode.byteSize;
+            learningNode.byteSize = size;
+        }
+    }
+
     @Override
     public void resetLearningImpl() {
         this.treeRoot = null;
+        this.byteSizeEstimate = 0;
         this.decisionNodeCount = 0;
         this.activeLeafNodeCount = 0;
         this.inactiveLeafNodeCount = 0;
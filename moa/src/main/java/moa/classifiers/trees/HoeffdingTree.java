@@ -476,6 +476,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     protected int inactiveLeafNodeCount;
 
+    /** Number of calls of attemptToSplit, whether or not a split was made. */
+    protected int splitAttempts;
+
     protected double inactiveLeafByteSizeEstimate;
 
     protected double activeLeafByteSizeEstimate;
@@ -503,6 +506,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         this.decisionNodeCount = 0;
         this.activeLeafNodeCount = 0;
         this.inactiveLeafNodeCount = 0;
+        this.splitAttempts = 0;
         this.inactiveLeafByteSizeEstimate = 0.0;
         this.activeLeafByteSizeEstimate = 0.0;
         this.byteSizeEstimateOverheadFraction = 1.0;
@@ -627,6 +631,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
             int parentIndex) {
+        this.splitAttempts++;
         if (!node.observedClassDistributionIsPure()) {
             SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
             AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this);
@@ -769,7 +774,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             this.inactiveLeafByteSizeEstimate = (double) totalInactiveSize
                     / this.inactiveLeafNodeCount;
         }
-        long actualModelSize = this.measureByteSize();
+        long actualModelSize = this.calcByteSize();
         double estimatedModelSize = (this.activeLeafNodeCount
                 * this.activeLeafByteSizeEstimate + this.inactiveLeafNodeCount
                 * this.inactiveLeafByteSizeEstimate);
@@ -187,6 +187,12 @@ public class ORTO extends FIMTDD implements Regressor {
 				new Measurement("number of option nodes", this.optionNodeCount),};
 	}
 
+	@Override
+	public long measureByteSize() {
+		// The option nodes are not covered by the running estimate of FIMTDD
+		return calcByteSize();
+	}
+
 	public void processInstance(Instance inst, Node node, double prediction, double normalError, boolean growthAllowed, boolean inAlternate) {
 		if (node instanceof OptionNode) {
 			processInstanceOptionNode(inst, (OptionNode) node, prediction, normalError, growthAllowed, inAlternate);
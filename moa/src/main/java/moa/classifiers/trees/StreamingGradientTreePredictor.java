@@ -1,9 +1,10 @@
 package moa.classifiers.trees;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.stream.IntStream;
 
 import com.github.javacliparser.*;
 import com.henrygouk.sgt.*;
@@ -14,9 +15,14 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.*;
 import moa.classifiers.trees.sgt.*;
+import moa.core.CheckpointInput;
+import moa.core.CheckpointOutput;
+import moa.core.Checkpointable;
+import moa.core.CommitteeExecutor;
 import moa.core.Measurement;
+import moa.core.ObjectSizes;
 
-public class StreamingGradientTreePredictor extends BoostingCommittee implements Serializable, MultiClassClassifier, Regressor, SemiSupervisedLearner {
+public class StreamingGradientTreePredictor extends BoostingCommittee implements Serializable, MultiClassClassifier, Regressor, SemiSupervisedLearner, Checkpointable {
 
     private static final long serialVersionUID = 1L;
 
@@ -49,6 +55,17 @@ public class StreamingGradientTreePredictor extends BoostingCommittee implements
     public FloatOption semiSupervisedOption = new FloatOption("enableSemiSupervised", 'U',
             "Enables learning from unlabelled instances", 0.0, 0.0, 1.0);
 
+    public FlagOption quantileBins = new FlagOption("quantileBins", 'Q',
+            "Discretize numeric attributes into equal-frequency bins estimated with a quantile summary, instead of equal-width bins.");
+
+    public FlagOption replayWarmStart = new FlagOption("replayWarmStart", 'R',
+            "Keep the warm start instances and train the trees on them once the bins are known.");
+
+    /** Warm start instances kept for replayWarmStart, with their gradients, hessians and raw scores when given. */
+    protected ArrayList<Instance> mWarmStartInstances;
+
+    protected ArrayList<double[][]> mWarmStartDerivatives;
+
     @Override
     public String getPurposeString() {
         return "Trains a single Streaming Gradient Tree for regression, or a committe for classification.";
@@ -61,55 +78,166 @@ public class StreamingGradientTreePredictor extends BoostingCommittee implements
 
     @Override
     public void resetLearningImpl() {
-        System.out.println("Resetting SGT");
         mTrees = null;
-        mDiscretizer = new AttributeDiscretizer(bins.getValue());
+        mDiscretizer = createDiscretizer();
         mInstances = 0;
+        mWarmStartInstances = replayWarmStart.isSet() ? new ArrayList<>() : null;
+        mWarmStartDerivatives = replayWarmStart.isSet() ? new ArrayList<>() : null;
     }
 
     @Override
     public long measureByteSize() {
-        return 0;
+        // the trees keep a running estimate of their nodes, so this does not walk the model
+        long b = ObjectSizes.sizeOf(this);
+        if (mTrees != null) {
+            b += mTrees.getByteSize();
+        }
+        return b;
+    }
+
+    public AttributeDiscretizer createDiscretizer() {
+        return quantileBins.isSet() ? new QuantileAttributeDiscretizer(bins.getValue()) : new AttributeDiscretizer(bins.getValue());
+    }
+
+    public AttributeDiscretizer getDiscretizer() {
+        return mDiscretizer;
+    }
+
+    /**
+     * Array encoding of the current trees, one per committee member, or null during the warm start.
+     */
+    public FlatTree[] flatten() {
+        if(mTrees == null) {
+            return null;
+        }
+        if(!(mTrees instanceof StreamingGradientTreeCommittee)) {
+            throw new RuntimeException("Could not flatten " + mTrees.getClass().getName());
+        }
+        return ((StreamingGradientTreeCommittee) mTrees).flatten();
+    }
+
+    @Override
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        writeClassifierCheckpoint(out);
+        out.writeInt(committeeSize);
+        out.writeInt(mInstances);
+        out.writeObject(mObjective);
+        // the bin boundaries and the warm start instances are small next to the trees
+        out.writeObject(mDiscretizer);
+        out.writeObject(mWarmStartInstances);
+        out.writeObject(mWarmStartDerivatives);
+        if(mTrees instanceof StreamingGradientTreeCommittee) {
+            out.writeBoolean(true);
+            ((StreamingGradientTreeCommittee) mTrees).writeCheckpoint(out);
+        } else {
+            out.writeBoolean(false);
+            out.writeObject(mTrees);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void readCheckpoint(CheckpointInput in) throws IOException {
+        readClassifierCheckpoint(in);
+        committeeSize = in.readInt();
+        mInstances = in.readInt();
+        mObjective = (Objective) in.readObject();
+        mDiscretizer = (AttributeDiscretizer) in.readObject();
+        mWarmStartInstances = (ArrayList<Instance>) in.readObject();
+        mWarmStartDerivatives = (ArrayList<double[][]>) in.readObject();
+        if(in.readBoolean()) {
+            StreamingGradientTreeCommittee trees = StreamingGradientTreeCommittee.readCheckpoint(in);
+            trees.setExecutor(executor);
+            mTrees = trees;
+        } else {
+            mTrees = (MultiOutputLearner) in.readObject();
+        }
     }
 
     protected MultiOutputLearner createTrees(FeatureInfo[] featureInfo, StreamingGradientTreeOptions options, int numOutputs) {
-        return new StreamingGradientTreeCommittee(featureInfo, options, numOutputs);
+        StreamingGradientTreeCommittee trees = new StreamingGradientTreeCommittee(featureInfo, options, numOutputs);
+        trees.setExecutor(executor);
+        return trees;
     }
-    public void trainOnInstanceImpl(Instance[] instances, int multipleIterationByHessianCeiling, GradHess[] gradHess){
+
+    @Override
+    public void setExecutor(CommitteeExecutor executor) {
+        super.setExecutor(executor);
+        if(mTrees instanceof StreamingGradientTreeCommittee) {
+            ((StreamingGradientTreeCommittee) mTrees).setExecutor(executor);
+        }
+    }
+    public void trainOnInstanceImpl(Instance[] instances, int multipleIterationByHessianCeiling, double[] hessians){
             String currentMethod = new Exception().getStackTrace()[0].getMethodName();
         throw new UnsupportedOperationException(this.getClass().getName() + " " +currentMethod);
     }
 
-    public void trainOnInstanceImpl(Instance inst, GradHess[] gradHess, double[] raw /* only for semiSupervisedOption */) {
+    public void trainOnInstanceImpl(Instance inst, double[] gradients, double[] hessians, double[] raw /* only for semiSupervisedOption */) {
         mInstances++;
 
         if(mInstances <= warmStart.getValue()) {
             mDiscretizer.observe(inst);
+            if(mWarmStartInstances != null) {
+                // the booster reuses its buffers, and its sub instances are only valid until the next projection
+                mWarmStartInstances.add(inst.copy());
+                mWarmStartDerivatives.add(new double[][] {gradients.clone(), hessians.clone(), raw == null ? null : raw.clone()});
+            }
             return;
         }
 
-        Attribute target = inst.classAttribute();
+        if(mTrees == null) {
+            initTrees(mDiscretizer.getFeatureInfo(), inst.classAttribute());
+            replayWarmStart();
+        }
+
+        updateTrees(inst, gradients, hessians, raw);
+    }
+
+    protected void initTrees(FeatureInfo[] featureInfo, Attribute target) {
+        StreamingGradientTreeOptions options = new StreamingGradientTreeOptions();
+        options.delta = delta.getValue();
+        options.gracePeriod = gracePeriod.getValue();
+        options.lambda = lambda.getValue();
+        options.gamma = gamma.getValue();
+
+        if(target.isNominal()) {
+            mTrees = createTrees(featureInfo, options, target.numValues() - 1);
+            committeeSize = target.numValues() - 1;
+//            mObjective = new SoftmaxCrossEntropy();
+        }
+        else {
+            mTrees = createTrees(featureInfo, options, 1);
+            committeeSize = 1;
+//            mObjective = new SquaredError();
+        }
+    }
+
+    /**
+     * Trains on features binned by a discretizer shared with the other stages of a booster, mDiscretizer is not used.
+     * features is null during the warm start, featureInfo describes the features once it is over. inst is only read
+     * for its class. A sparse features vector only costs its non-zero features.
+     */
+    public void trainOnInstanceImpl(FeatureVector features, FeatureInfo[] featureInfo, Instance inst, double weight, double[] gradients, double[] hessians) {
+        mInstances++;
+
+        // the shared discretizer does the warm start and replays it, its bins are fixed once it hands them out
+        if(features == null) {
+            return;
+        }
 
         if(mTrees == null) {
-            FeatureInfo[] featureInfo = mDiscretizer.getFeatureInfo();
-            StreamingGradientTreeOptions options = new StreamingGradientTreeOptions();
-            options.delta = delta.getValue();
-            options.gracePeriod = gracePeriod.getValue();
-            options.lambda = lambda.getValue();
-            options.gamma = gamma.getValue();
+            initTrees(featureInfo, inst.classAttribute());
+        }
 
-            if(target.isNominal()) {
-                mTrees = createTrees(featureInfo, options, target.numValues() - 1);
-                committeeSize = target.numValues() - 1;
-//                mObjective = new SoftmaxCrossEntropy();
-            }
-            else {
-                mTrees = createTrees(featureInfo, options, 1);
-                committeeSize = 1;
-//                mObjective = new SquaredError();
-            }
+        if(inst.classAttribute().isNominal() && inst.classIsMissing() && semiSupervisedOption.getValue() <= 0.0) {
+            return;
         }
 
+        mTrees.update(features, gradients, hessians, weight);
+    }
+
+    protected void updateTrees(Instance inst, double[] gradients, double[] hessians, double[] raw) {
+        Attribute target = inst.classAttribute();
         int[] features = mDiscretizer.getFeatures(inst);
         double[] groundTruth;
 //        double[] raw = mTrees.predict(features);
@@ -136,10 +264,79 @@ public class StreamingGradientTreePredictor extends BoostingCommittee implements
         }
 
 //        GradHess[] gradHess = mObjective.computeDerivatives(groundTruth, raw);
-        Double[] weights = IntStream.range(0, gradHess.length)
-//                .parallel()
-                .mapToObj(i -> inst.weight()).toArray(Double[]::new);
-        mTrees.update(features, gradHess, weights);
+        mTrees.update(features, gradients, hessians, inst.weight());
+    }
+
+    @Override
+    public void trainOnBatch(Instance[] instances, double[][] gradients, double[][] hessians) {
+        // the warm start and the creation of the trees go instance by instance, as in sequential training
+        int first = 0;
+        while(first < instances.length && mTrees == null) {
+            trainOnInstanceImpl(instances[first], gradients[first], hessians[first], null);
+            first++;
+        }
+
+        FeatureVector[] features = new FeatureVector[instances.length];
+        double[] weights = new double[instances.length];
+
+        for(int b = first; b < instances.length; b++) {
+            features[b] = new FeatureVector(mDiscretizer.getFeatures(instances[b]));
+            weights[b] = instances[b].weight();
+        }
+
+        updateBatch(instances, features, weights, first, gradients, hessians);
+    }
+
+    /**
+     * Mini-batch version of trainOnInstanceImpl(FeatureVector, FeatureInfo[], Instance, double, double[], double[]).
+     */
+    public void trainOnBatch(FeatureVector[] features, FeatureInfo[] featureInfo, Instance[] instances, double[] weights, double[][] gradients, double[][] hessians) {
+        int first = 0;
+        while(first < instances.length && mTrees == null) {
+            trainOnInstanceImpl(features[first], featureInfo, instances[first], weights[first], gradients[first], hessians[first]);
+            first++;
+        }
+
+        updateBatch(instances, features, weights, first, gradients, hessians);
+    }
+
+    /**
+     * Updates the trees with the instances of the batch from first on, the trees have to exist.
+     */
+    protected void updateBatch(Instance[] instances, FeatureVector[] allFeatures, double[] allWeights, int first, double[][] gradients, double[][] hessians) {
+        int size = 0;
+        FeatureVector[] features = new FeatureVector[instances.length - first];
+        double[][] batchGradients = new double[features.length][];
+        double[][] batchHessians = new double[features.length][];
+        double[] weights = new double[features.length];
+
+        for(int b = first; b < instances.length; b++) {
+            Instance inst = instances[b];
+            mInstances++;
+
+            if(inst.classAttribute().isNominal() && inst.classIsMissing() && semiSupervisedOption.getValue() <= 0.0) {
+                continue;
+            }
+
+            features[size] = allFeatures[b];
+            batchGradients[size] = gradients[b];
+            batchHessians[size] = hessians[b];
+            weights[size] = allWeights[b];
+            size++;
+        }
+
+        if(size == 0) {
+            return;
+        }
+
+        if(size < features.length) {
+            features = Arrays.copyOf(features, size);
+            batchGradients = Arrays.copyOf(batchGradients, size);
+            batchHessians = Arrays.copyOf(batchHessians, size);
+            weights = Arrays.copyOf(weights, size);
+        }
+
+        mTrees.update(features, batchGradients, batchHessians, weights);
     }
 
 //    @Override
@@ -190,6 +387,10 @@ public class StreamingGradientTreePredictor extends BoostingCommittee implements
 
         if(mInstances <= warmStart.getValue()) {
             mDiscretizer.observe(inst);
+            if(mWarmStartInstances != null) {
+                mWarmStartInstances.add(inst.copy());
+                mWarmStartDerivatives.add(null);
+            }
             return;
         }
 
@@ -213,8 +414,14 @@ public class StreamingGradientTreePredictor extends BoostingCommittee implements
                 committeeSize = 1;
                 mObjective = new SquaredError();
             }
+            replayWarmStart();
         }
 
+        updateTrees(inst);
+    }
+
+    protected void updateTrees(Instance inst) {
+        Attribute target = inst.classAttribute();
         int[] features = mDiscretizer.getFeatures(inst);
         double[] groundTruth;
         double[] raw = mTrees.predict(features);
@@ -240,15 +447,51 @@ public class StreamingGradientTreePredictor extends BoostingCommittee implements
             groundTruth = new double[] {inst.classValue()};
         }
 
-        GradHess[] gradHess = mObjective.computeDerivatives(groundTruth, raw, true, false);
-        Double[] weights = IntStream.range(0, gradHess.length)
-//                .parallel()
-                .mapToObj(i -> inst.weight()).toArray(Double[]::new);
-        mTrees.update(features, gradHess, weights);
+        double[] gradients = new double[raw.length];
+        double[] hessians = new double[raw.length];
+        mObjective.computeDerivatives(groundTruth, raw, true, false, gradients, hessians);
+        mTrees.update(features, gradients, hessians, inst.weight());
     }
 
 
 
+    /**
+     * Trains the new trees on the warm start instances, in arrival order, and frees them.
+     */
+    protected void replayWarmStart() {
+        if(mWarmStartInstances == null) {
+            return;
+        }
+
+        ArrayList<Instance> instances = mWarmStartInstances;
+        ArrayList<double[][]> derivatives = mWarmStartDerivatives;
+        mWarmStartInstances = null;
+        mWarmStartDerivatives = null;
+
+        for(int i = 0; i < instances.size(); i++) {
+            double[][] d = derivatives.get(i);
+
+            if(d == null) {
+                updateTrees(instances.get(i));
+            }
+            else {
+                updateTrees(instances.get(i), d[0], d[1], d[2]);
+            }
+        }
+    }
+
+    /**
+     * Scores features binned by a shared discretizer, see trainOnInstanceImpl(FeatureVector, FeatureInfo[], ...).
+     */
+    public double[] getScoresForFeatures(FeatureVector features) {
+        // features is null during the warm start of the shared discretizer
+        if(mTrees == null || features == null) {
+            return getScoresWhenNullTree(committeeSize);
+        }
+
+        return mTrees.predict(features);
+    }
+
     public double[] getScoresForInstance(Instance inst) {
         if(mTrees == null) {
             return getScoresWhenNullTree(committeeSize);
@@ -273,28 +516,45 @@ public class StreamingGradientTreePredictor extends BoostingCommittee implements
     }
 
     @Override
-    public Measurement[] getModelMeasurementsImpl() {
-        if(true){
-            return null;
-        }
+    public long getNumLeaves() {
+        return mTrees != null ? mTrees.getNumLeaves() : 0;
+    }
 
+    @Override
+    public long getNumSplitAttempts() {
+        return mTrees != null ? mTrees.getNumSplitAttempts() : 0;
+    }
+
+    @Override
+    public long getNumSplitsApplied() {
+        return mTrees != null ? mTrees.getNumSplits() : 0;
+    }
+
+    @Override
+    public Measurement[] getModelMeasurementsImpl() {
         double nodes = 0.0;
         double splits = 0.0;
         double updates = 0.0;
         double maxDepth = 0.0;
+        double splitEvaluationSeconds = 0.0;
+        int numTrees = 1;
 
         if(mTrees != null) {
             nodes = mTrees.getNumNodes();
             splits = mTrees.getNumSplits();
             updates = mTrees.getNumNodeUpdates();
             maxDepth = mTrees.getMaxDepth();
+            splitEvaluationSeconds = mTrees.getSplitEvaluationTime() / 1.0e9;
+            numTrees = Math.max(1, mTrees.getNumTrees());
         }
 
+        // the avg* names match the committee averages reported by BoostingTreePredictor
         return new Measurement[] {
-                new Measurement("nodes", nodes),
-                new Measurement("splits", splits),
+                new Measurement("avgNumNodes", nodes / numTrees),
+                new Measurement("avgTotalSplits", splits / numTrees),
                 new Measurement("node updates", updates),
-                new Measurement("max depth", maxDepth)
+                new Measurement("max depth", maxDepth),
+                new Measurement("splitEvaluationSeconds", splitEvaluationSeconds)
         };
     }
 
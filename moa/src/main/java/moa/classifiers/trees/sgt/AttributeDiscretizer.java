@@ -32,27 +32,65 @@ public class AttributeDiscretizer implements Serializable {
         int[] features = new int[inst.numInputAttributes()];
 
         for(int i = 0; i < features.length; i++) {
-            if(Double.isNaN(inst.valueInputAttribute(i))) {
-                features[i] = -1;
-            }
-            else if(inst.inputAttribute(i).isNominal()) {
-                features[i] = (int)inst.valueInputAttribute(i);
-            }
-            else {
-                features[i] = (int)((double)mBins * ((inst.valueInputAttribute(i) - mMin[i]) / (mMax[i] - mMin[i])));
-
-                if(features[i] < 0) {
-                    features[i] = 0;
-                }
-                else if(features[i] >= mBins) {
-                    features[i] = mBins - 1;
-                }
-            }
+            features[i] = getFeature(i, inst.valueInputAttribute(i));
         }
 
         return features;
     }
 
+    /**
+     * Category of value for feature i, -1 for missing values.
+     */
+    public int getFeature(int i, double value) {
+        if(Double.isNaN(value)) {
+            return -1;
+        }
+        else if(mFeatureInfo[i].type == FeatureType.nominal) {
+            return (int)value;
+        }
+        else {
+            return getBin(i, value);
+        }
+    }
+
+    /**
+     * Bin of value for numeric feature i, equal-width bins between the smallest and largest value observed.
+     */
+    protected int getBin(int i, double value) {
+        int bin = (int)((double)mBins * ((value - mMin[i]) / (mMax[i] - mMin[i])));
+
+        if(bin < 0) {
+            bin = 0;
+        }
+        else if(bin >= mBins) {
+            bin = mBins - 1;
+        }
+
+        return bin;
+    }
+
+    /**
+     * Lower edges of bins 1 to bins - 1 of numeric feature i, when the bins are defined by their edges. Null for
+     * equal-width bins, see getMin and getMax.
+     */
+    public double[] getBinEdges(int i) {
+        return null;
+    }
+
+    public int getBins() {
+        return mBins;
+    }
+
+    /** Smallest value of numeric feature i seen during the warm start. */
+    public double getMin(int i) {
+        return mMin[i];
+    }
+
+    /** Largest value of numeric feature i seen during the warm start. */
+    public double getMax(int i) {
+        return mMax[i];
+    }
+
     public FeatureInfo[] getFeatureInfo() {
         return mFeatureInfo;
     }
@@ -0,0 +1,107 @@
+package moa.classifiers.trees.sgt;
+
+import java.util.Arrays;
+
+import com.yahoo.labs.samoa.instances.*;
+import moa.core.GreenwaldKhannaQuantileSummary;
+
+/**
+ * Discretizer with equal-frequency bins. The values of each numeric feature seen during the warm start go into a
+ * quantile summary, and bin b holds the values between the b/bins and (b + 1)/bins quantiles.
+ */
+public class QuantileAttributeDiscretizer extends AttributeDiscretizer {
+
+    /** Size of each quantile summary, per bin. */
+    protected static final int SUMMARY_TUPLES_PER_BIN = 4;
+
+    protected GreenwaldKhannaQuantileSummary[] mSummaries;
+
+    /**
+     * Bin edges of each feature, computed from the summaries when first needed. Stages may be scored from several
+     * threads, so the array is only published once it is complete, and a thread that finds none computes its own.
+     */
+    protected volatile double[][] mEdges;
+
+    public QuantileAttributeDiscretizer(int bins) {
+        super(bins);
+    }
+
+    @Override
+    public void observe(Instance inst) {
+        super.observe(inst);
+
+        if(mSummaries == null) {
+            mSummaries = new GreenwaldKhannaQuantileSummary[inst.numInputAttributes()];
+
+            for(int i = 0; i < mSummaries.length; i++) {
+                if(inst.inputAttribute(i).isNumeric()) {
+                    mSummaries[i] = new GreenwaldKhannaQuantileSummary(Math.max(3, mBins * SUMMARY_TUPLES_PER_BIN));
+                }
+            }
+        }
+
+        for(int i = 0; i < mSummaries.length; i++) {
+            if(mSummaries[i] != null && !Double.isNaN(inst.valueInputAttribute(i))) {
+                mSummaries[i].insert(inst.valueInputAttribute(i));
+            }
+        }
+
+        // the edges are recomputed from the summaries when they are next needed
+        mEdges = null;
+    }
+
+    @Override
+    protected int getBin(int i, double value) {
+        double[] edges = getBinEdges(i);
+        // the number of edges that are <= value
+        int low = 0;
+        int high = edges.length;
+
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+
+            if(edges[mid] <= value) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    @Override
+    public double[] getBinEdges(int i) {
+        double[][] edges = mEdges;
+
+        if(edges == null) {
+            edges = computeEdges();
+            mEdges = edges;
+        }
+
+        return edges[i];
+    }
+
+    protected double[][] computeEdges() {
+        double[][] edges = new double[mSummaries.length][];
+
+        for(int i = 0; i < edges.length; i++) {
+            if(mSummaries[i] == null || mSummaries[i].getTotalCount() == 0) {
+                edges[i] = new double[0];
+                continue;
+            }
+
+            edges[i] = new double[Math.max(0, mBins - 1)];
+
+            for(int b = 1; b < mBins; b++) {
+                edges[i][b - 1] = mSummaries[i].getQuantile((double)b / mBins);
+            }
+
+            // the summary is approximate, keep the edges sorted for the binary search
+            Arrays.sort(edges[i]);
+        }
+
+        return edges;
+    }
+}
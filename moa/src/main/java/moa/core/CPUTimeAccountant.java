@@ -0,0 +1,110 @@
+/*
+ *    CPUTimeAccountant.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Time spent by an evaluation task since it started, on three clocks.
+ *
+ * <p>The task thread clock is the CPU time of the thread that created the accountant, as measured so far by the
+ * evaluation tasks. Learners that train on helper threads, such as Boosting with a CommitteeExecutor or a pipeline,
+ * do most of their work outside of it. The process clock is the CPU time of the whole JVM, which counts those
+ * threads, including the ones that terminated, but also the garbage collector, the JIT compiler and any other task
+ * running in the same JVM. The wall clock is the elapsed real time.</p>
+ */
+public class CPUTimeAccountant {
+
+    /** Options of the evaluation tasks for the clock their time limit is enforced against. */
+    public static final String[] CLOCK_NAMES = {"TaskThreadCPU", "ProcessCPU", "Wall"};
+
+    public static final String[] CLOCK_DESCRIPTIONS = {
+            "CPU time of the thread running the task",
+            "CPU time of all the threads of the JVM, including the helper threads of the learner",
+            "Elapsed real time"};
+
+    public static final int CLOCK_TASK_THREAD = 0;
+
+    public static final int CLOCK_PROCESS = 1;
+
+    public static final int CLOCK_WALL = 2;
+
+    protected final long taskThreadID;
+
+    protected final long taskThreadStartTime;
+
+    protected final long processStartTime;
+
+    protected final long wallStartTime;
+
+    /**
+     * Starts the clocks, the calling thread is the task thread.
+     */
+    public CPUTimeAccountant() {
+        TimingUtils.enablePreciseTiming();
+        taskThreadID = Thread.currentThread().getId();
+        taskThreadStartTime = TimingUtils.getNanoCPUTimeOfThread(taskThreadID);
+        processStartTime = getNanoCPUTimeOfProcess();
+        wallStartTime = System.nanoTime();
+    }
+
+    /**
+     * CPU time of the JVM in nanoseconds, System.nanoTime() when the platform does not report it.
+     */
+    public static long getNanoCPUTimeOfProcess() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            long time = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+            if (time != -1) {
+                return time;
+            }
+        }
+        return System.nanoTime();
+    }
+
+    /** Nanoseconds of CPU time of the task thread since the start. */
+    public long getTaskThreadTime() {
+        return TimingUtils.getNanoCPUTimeOfThread(taskThreadID) - taskThreadStartTime;
+    }
+
+    /** Nanoseconds of CPU time of the JVM since the start. */
+    public long getProcessTime() {
+        return getNanoCPUTimeOfProcess() - processStartTime;
+    }
+
+    /** Nanoseconds of real time since the start. */
+    public long getWallTime() {
+        return System.nanoTime() - wallStartTime;
+    }
+
+    /**
+     * Nanoseconds since the start on clock, one of the CLOCK_ constants.
+     */
+    public long getTime(int clock) {
+        switch (clock) {
+            case CLOCK_PROCESS:
+                return getProcessTime();
+            case CLOCK_WALL:
+                return getWallTime();
+            default:
+                return getTaskThreadTime();
+        }
+    }
+}
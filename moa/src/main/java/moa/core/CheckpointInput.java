@@ -0,0 +1,168 @@
+/*
+ *    CheckpointInput.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import moa.classifiers.Classifier;
+import moa.options.ClassOption;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a checkpoint written by {@link CheckpointOutput} from a buffer, usually a memory-mapped file.
+ */
+public class CheckpointInput {
+
+    protected final ByteBuffer buffer;
+
+    protected final int version;
+
+    /**
+     * buffer is read from its position, version is the format version of the checkpoint it holds.
+     */
+    public CheckpointInput(ByteBuffer buffer, int version) {
+        this.buffer = buffer;
+        this.version = version;
+    }
+
+    /**
+     * Format version of the checkpoint, for readers of state whose encoding changed between versions.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    protected void require(long bytes) throws IOException {
+        if (bytes < 0 || buffer.remaining() < bytes) {
+            throw new IOException("Checkpoint is truncated or corrupt.");
+        }
+    }
+
+    public int readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    public double readDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Reads length values written by CheckpointOutput.writeInts into v.
+     */
+    public void readInts(int[] v, int offset, int length) throws IOException {
+        require(4L * length);
+        buffer.asIntBuffer().get(v, offset, length);
+        buffer.position(buffer.position() + 4 * length);
+    }
+
+    public void readDoubles(double[] v, int offset, int length) throws IOException {
+        require(8L * length);
+        buffer.asDoubleBuffer().get(v, offset, length);
+        buffer.position(buffer.position() + 8 * length);
+    }
+
+    public void readBytes(byte[] v, int offset, int length) throws IOException {
+        require(length);
+        buffer.get(v, offset, length);
+    }
+
+    public int[] readIntArray() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        int[] v = new int[length];
+        readInts(v, 0, length);
+        return v;
+    }
+
+    public double[] readDoubleArray() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        double[] v = new double[length];
+        readDoubles(v, 0, length);
+        return v;
+    }
+
+    public String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        readBytes(bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Object readObject() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        readBytes(bytes, 0, length);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not read object from checkpoint.", e);
+        }
+    }
+
+    /**
+     * Reads a learner written by CheckpointOutput.writeLearner. A checkpointed learner is created from its options
+     * and prepared for use before its state is read.
+     */
+    public Classifier readLearner() throws IOException {
+        String className = readString();
+        String options = readString();
+        if (!readBoolean()) {
+            return (Classifier) readObject();
+        }
+        Classifier learner;
+        try {
+            learner = (Classifier) ClassOption.cliStringToObject(className + " " + options, Classifier.class, null);
+        } catch (Exception e) {
+            throw new IOException("Could not create " + className + " from checkpoint.", e);
+        }
+        learner.prepareForUse();
+        ((Checkpointable) learner).readCheckpoint(this);
+        return learner;
+    }
+}
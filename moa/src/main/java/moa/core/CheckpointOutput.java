@@ -0,0 +1,189 @@
+/*
+ *    CheckpointOutput.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import moa.classifiers.Classifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the primitives and primitive arrays of a checkpoint to a channel, through a direct buffer.
+ *
+ * <p>Arrays are copied into the buffer in bulk. Objects without a checkpoint encoding of their own can be written
+ * with {@link #writeObject(Object)}, which embeds their Java serialization.</p>
+ */
+public class CheckpointOutput {
+
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    protected final WritableByteChannel channel;
+
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    public CheckpointOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Makes room for at least bytes bytes in the buffer, bytes is at most BUFFER_SIZE.
+     */
+    protected void require(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void writeByte(int v) throws IOException {
+        require(1);
+        buffer.put((byte) v);
+    }
+
+    public void writeBoolean(boolean v) throws IOException {
+        writeByte(v ? 1 : 0);
+    }
+
+    public void writeInt(int v) throws IOException {
+        require(4);
+        buffer.putInt(v);
+    }
+
+    public void writeLong(long v) throws IOException {
+        require(8);
+        buffer.putLong(v);
+    }
+
+    public void writeDouble(double v) throws IOException {
+        require(8);
+        buffer.putDouble(v);
+    }
+
+    /**
+     * Writes the values of v without their number, the reader has to know it.
+     */
+    public void writeInts(int[] v, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(4);
+            int n = Math.min(length, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(v, offset, n);
+            buffer.position(buffer.position() + 4 * n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Writes the values of v without their number, the reader has to know it.
+     */
+    public void writeDoubles(double[] v, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(8);
+            int n = Math.min(length, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(v, offset, n);
+            buffer.position(buffer.position() + 8 * n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void writeBytes(byte[] v, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(1);
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(v, offset, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Writes the length of v, -1 for null, followed by its values.
+     */
+    public void writeIntArray(int[] v) throws IOException {
+        writeInt(v == null ? -1 : v.length);
+        if (v != null) {
+            writeInts(v, 0, v.length);
+        }
+    }
+
+    public void writeDoubleArray(double[] v) throws IOException {
+        writeInt(v == null ? -1 : v.length);
+        if (v != null) {
+            writeDoubles(v, 0, v.length);
+        }
+    }
+
+    public void writeString(String v) throws IOException {
+        if (v == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the Java serialization of obj, which may be null. Meant for small objects, e.g. headers and
+     * change detectors, the bulk of a model should be written as primitives.
+     */
+    public void writeObject(Object obj) throws IOException {
+        if (obj == null) {
+            writeInt(-1);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        writeInt(bytes.size());
+        writeBytes(bytes.toByteArray(), 0, bytes.size());
+    }
+
+    /**
+     * Writes the class and options of learner, followed by its checkpoint when it is {@link Checkpointable} and by
+     * its Java serialization otherwise.
+     */
+    public void writeLearner(Classifier learner) throws IOException {
+        writeString(learner.getClass().getName());
+        writeString(learner.getOptions().getAsCLIString());
+        if (learner instanceof Checkpointable && ((Checkpointable) learner).canWriteCheckpoint()) {
+            writeBoolean(true);
+            ((Checkpointable) learner).writeCheckpoint(this);
+        } else {
+            writeBoolean(false);
+            writeObject(learner);
+        }
+    }
+}
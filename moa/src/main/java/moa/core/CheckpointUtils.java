@@ -0,0 +1,110 @@
+/*
+ *    CheckpointUtils.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import moa.classifiers.Classifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned binary checkpoints of learners, a compact and fast alternative to {@link SerializeUtils}.
+ *
+ * <p>A checkpoint starts with a magic number and the format version, followed by the learner as written by
+ * {@link CheckpointOutput#writeLearner(Classifier)}: its class, its options and either its {@link Checkpointable}
+ * state or its Java serialization. Checkpoints are written through a file channel and read from a memory-mapped
+ * file, so they are limited to 2GB.</p>
+ */
+public class CheckpointUtils {
+
+    public static final int MAGIC = 0x4D4F4143; // "MOAC"
+
+    /**
+     * Version written by this code, bump it when the encoding of a Checkpointable changes and read the older
+     * encodings by checking {@link CheckpointInput#getVersion()}.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    public static void write(CheckpointOutput out, Classifier learner) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLearner(learner);
+        out.flush();
+    }
+
+    /**
+     * Reads a learner from buffer, starting at its position.
+     */
+    public static Classifier read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint.");
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version + ", the newest supported is " + FORMAT_VERSION + ".");
+        }
+        return new CheckpointInput(buffer, version).readLearner();
+    }
+
+    /**
+     * Writes learner to file. The checkpoint is written next to file and moved over it once complete, so file
+     * always holds a whole checkpoint.
+     */
+    public static void writeToFile(File file, Classifier learner) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(new CheckpointOutput(channel), learner);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Classifier readFromFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Could not map checkpoint " + file + ", it is larger than 2GB.");
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Whether file starts with the checkpoint magic number, as opposed to e.g. a file written by SerializeUtils.
+     */
+    public static boolean isCheckpoint(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
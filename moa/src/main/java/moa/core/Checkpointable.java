@@ -0,0 +1,42 @@
+/*
+ *    Checkpointable.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.IOException;
+
+/**
+ * A model that can write its state to a compact binary checkpoint, see {@link CheckpointUtils}.
+ *
+ * <p>readCheckpoint is called on a fresh object created and prepared with the same options as the one that wrote
+ * the checkpoint, and replaces its state with the checkpointed one.</p>
+ */
+public interface Checkpointable {
+
+    public void writeCheckpoint(CheckpointOutput out) throws IOException;
+
+    public void readCheckpoint(CheckpointInput in) throws IOException;
+
+    /**
+     * Whether writeCheckpoint covers the whole state of this object. Subclasses that add state of their own can
+     * return false to be serialized instead.
+     */
+    default boolean canWriteCheckpoint() {
+        return true;
+    }
+}
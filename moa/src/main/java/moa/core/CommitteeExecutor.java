@@ -0,0 +1,220 @@
+/*
+ *    CommitteeExecutor.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the members of an ensemble or committee, either inline or on a reusable thread pool.
+ *
+ * <p>The index range of a call to {@link #forEach(int, IntConsumer)} is split into at most
+ * numberOfJobs contiguous chunks, one of them run by the calling thread. Calls made from inside
+ * a chunk run inline, so nested committees (e.g. the trees of a boosting stage) never fork again.
+ * Ranges smaller than minParallelSize always run inline.</p>
+ *
+ * <p>Idle pool threads exit after a few seconds, so the pool of an executor that is no longer
+ * referenced goes away with it even when {@link #shutdown()} is never called.</p>
+ */
+public class CommitteeExecutor {
+
+    public enum Strategy {
+        SEQUENTIAL, DEDICATED_POOL, WORK_STEALING
+    }
+
+    public static final String[] STRATEGY_NAMES = {"Sequential", "DedicatedPool", "WorkStealing"};
+
+    public static final String[] STRATEGY_DESCRIPTIONS = {
+            "Run every member on the calling thread",
+            "Bounded pool of numberOfJobs dedicated threads",
+            "Work-stealing pool with numberOfJobs workers"};
+
+    private static final ThreadLocal<Boolean> inParallelRegion = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /** Seconds an idle pool thread waits for work before it exits. */
+    protected static final long KEEP_ALIVE_SECONDS = 5;
+
+    private static CommitteeExecutor defaultExecutor;
+
+    protected final Strategy strategy;
+
+    protected final int numberOfJobs;
+
+    protected final int minParallelSize;
+
+    protected ExecutorService pool;
+
+    /**
+     * @param numberOfJobs number of concurrent jobs, -1 for one per available processor
+     * @param minParallelSize smallest range that is split across jobs
+     */
+    public CommitteeExecutor(Strategy strategy, int numberOfJobs, int minParallelSize) {
+        this.strategy = strategy;
+        this.numberOfJobs = numberOfJobs == -1 ? Runtime.getRuntime().availableProcessors() : numberOfJobs;
+        this.minParallelSize = Math.max(2, minParallelSize);
+
+        if (this.numberOfJobs > 1) {
+            if (strategy == Strategy.DEDICATED_POOL) {
+                ThreadPoolExecutor dedicated = new ThreadPoolExecutor(this.numberOfJobs, this.numberOfJobs,
+                        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "CommitteeExecutor");
+                    t.setDaemon(true);
+                    return t;
+                });
+                dedicated.allowCoreThreadTimeOut(true);
+                this.pool = dedicated;
+            } else if (strategy == Strategy.WORK_STEALING) {
+                // idle workers of a ForkJoinPool exit on their own
+                this.pool = new ForkJoinPool(this.numberOfJobs);
+            }
+        }
+    }
+
+    private CommitteeExecutor(ExecutorService pool, int numberOfJobs, int minParallelSize) {
+        this.strategy = Strategy.WORK_STEALING;
+        this.numberOfJobs = numberOfJobs;
+        this.minParallelSize = minParallelSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Executor used by committees that were not given one: work-stealing on the common pool.
+     */
+    public static synchronized CommitteeExecutor getDefault() {
+        if (defaultExecutor == null) {
+            defaultExecutor = new CommitteeExecutor(ForkJoinPool.commonPool(),
+                    Math.max(1, ForkJoinPool.getCommonPoolParallelism()), 4);
+        }
+        return defaultExecutor;
+    }
+
+    public static Strategy getStrategy(int chosenIndex) {
+        return Strategy.values()[chosenIndex];
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public int getNumberOfJobs() {
+        return numberOfJobs;
+    }
+
+    /**
+     * Calls task for every index in [0, size) and returns once all calls have completed.
+     */
+    public void forEach(int size, IntConsumer task) {
+        if (pool == null || size < minParallelSize || inParallelRegion.get()) {
+            for (int i = 0; i < size; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+
+        int chunks = Math.min(numberOfJobs, size);
+        Future<?>[] futures = new Future<?>[chunks - 1];
+        // chunks that have not started when the call fails are skipped
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        for (int c = 1; c < chunks; c++) {
+            int from = c * size / chunks;
+            int to = (c + 1) * size / chunks;
+            futures[c - 1] = pool.submit(() -> {
+                if (!aborted.get()) {
+                    runChunk(task, from, to);
+                }
+            });
+        }
+
+        boolean completed = false;
+        try {
+            runChunk(task, 0, size / chunks);
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Could not wait for the committee jobs.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            if (!completed) {
+                aborted.set(true);
+                awaitQuietly(futures);
+            }
+        }
+    }
+
+    /**
+     * Waits for the chunks still running after a failed call, so that none of them outlives it.
+     * Cancels them instead when the calling thread is interrupted.
+     */
+    private static void awaitQuietly(Future<?>[] futures) {
+        for (Future<?> f : futures) {
+            if (Thread.currentThread().isInterrupted()) {
+                f.cancel(true);
+                continue;
+            }
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                f.cancel(true);
+            } catch (ExecutionException | CancellationException e) {
+                // the first failure is the one reported
+            }
+        }
+    }
+
+    protected static void runChunk(IntConsumer task, int from, int to) {
+        boolean nested = inParallelRegion.get();
+        inParallelRegion.set(Boolean.TRUE);
+        try {
+            for (int i = from; i < to; i++) {
+                task.accept(i);
+            }
+        } finally {
+            inParallelRegion.set(nested);
+        }
+    }
+
+    /**
+     * Stops the pool threads, the executor runs everything inline afterwards.
+     */
+    public void shutdown() {
+        if (pool != null && this != defaultExecutor) {
+            pool.shutdown();
+        }
+        pool = null;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *    LatencyHistogram.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds, with one bucket per power of two.
+ *
+ * <p>Recording is a few arithmetic operations and no allocation. Percentiles are resolved to the upper bound of
+ * their bucket, so they are at most twice the exact value. The histogram is not synchronized: it is written by one
+ * thread at a time, readers on other threads may see values that lag slightly.</p>
+ */
+public class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Bucket i holds the durations whose highest set bit is bit i, bucket 0 also holds 0. */
+    protected final long[] buckets = new long[64];
+
+    protected long count;
+
+    protected long totalNanos;
+
+    protected long maxNanos;
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            // System.nanoTime is monotonic, but not every platform guarantees it across cores
+            nanos = 0;
+        }
+        buckets[63 - Long.numberOfLeadingZeros(nanos | 1)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Adds the durations recorded by other to this histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    public void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return count > 0 ? totalNanos / (double) count : 0.0;
+    }
+
+    /**
+     * Upper bound of the bucket holding the q quantile, 0 <= q <= 1, or 0 when nothing was recorded.
+     */
+    public long getPercentileNanos(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(maxNanos, i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+            }
+        }
+        return maxNanos;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    MemoryMonitor.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the live heap of the JVM without forcing collections.
+ *
+ * <p>The live heap is the heap in use right after the most recent garbage collection, as reported by the
+ * collectors' notifications. Until the first collection the current heap usage of the MemoryMXBean is used.</p>
+ */
+public class MemoryMonitor implements NotificationListener {
+
+    /** Options of the evaluation tasks for calling System.gc() before measuring memory. */
+    public static final String[] GC_POLICY_NAMES = {"None", "Periodic"};
+
+    public static final String[] GC_POLICY_DESCRIPTIONS = {
+            "Never force a collection, rely on GC notifications",
+            "Force one collection on the evaluation thread per memory check"};
+
+    public static final int GC_POLICY_NONE = 0;
+
+    public static final int GC_POLICY_PERIODIC = 1;
+
+    /** Options of the evaluation tasks for the memory the RAM-Hours are computed from. */
+    public static final String[] RAM_HOURS_MEMORY_NAMES = {"ModelSize", "LiveHeap"};
+
+    public static final String[] RAM_HOURS_MEMORY_DESCRIPTIONS = {
+            "Size of the model reported by measureByteSize",
+            "Heap in use after the most recent garbage collection"};
+
+    public static final int RAM_HOURS_MODEL_SIZE = 0;
+
+    public static final int RAM_HOURS_LIVE_HEAP = 1;
+
+    private static MemoryMonitor instance;
+
+    private final Set<String> heapPools = new HashSet<>();
+
+    private volatile long liveHeapBytes = -1;
+
+    private volatile long collectionCount = 0;
+
+    public static synchronized MemoryMonitor getInstance() {
+        if (instance == null) {
+            instance = new MemoryMonitor();
+        }
+        return instance;
+    }
+
+    private MemoryMonitor() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                (CompositeData) notification.getUserData());
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                used += pool.getValue().getUsed();
+            }
+        }
+        liveHeapBytes = used;
+        collectionCount++;
+    }
+
+    /**
+     * Bytes of heap in use after the most recent collection.
+     */
+    public long getLiveHeapBytes() {
+        long bytes = liveHeapBytes;
+        return bytes >= 0 ? bytes : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Number of collections seen since the monitor was created.
+     */
+    public long getCollectionCount() {
+        return collectionCount;
+    }
+
+    /**
+     * Forces a collection when the policy asks for it, on the calling thread.
+     */
+    public void collectIfRequired(int gcPolicy) {
+        if (gcPolicy == GC_POLICY_PERIODIC) {
+            System.gc();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *    ObjectSizes.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.vm.VM;
+import org.openjdk.jol.vm.VirtualMachine;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Shallow sizes of objects and arrays, for the running model size estimates of the trees.
+ *
+ * <p>The size of an instance is looked up once per class, with JOL when it is on the class path. Without it,
+ * the sizes are estimated from the fields of the class for a 64-bit VM with compressed references. Either way a
+ * lookup costs no more than a map access, so it can be made while training, unlike a walk over an object graph.</p>
+ */
+public class ObjectSizes {
+
+    /** Used when JOL is not available: 12 byte object headers, 16 byte array headers, compressed references. */
+    protected static final int DEFAULT_OBJECT_HEADER_SIZE = 12;
+
+    protected static final int DEFAULT_ARRAY_HEADER_SIZE = 16;
+
+    protected static final int DEFAULT_REFERENCE_SIZE = 4;
+
+    protected static final int DEFAULT_ALIGNMENT = 8;
+
+    private static final boolean jolPresent;
+
+    private static final int arrayHeaderSize;
+
+    private static final int referenceSize;
+
+    private static final int alignment;
+
+    static {
+        int[] layout;
+        try {
+            layout = Jol.layout();
+        } catch (Throwable t) {
+            // JOL is not on the class path, or cannot inspect this VM
+            layout = null;
+        }
+        jolPresent = layout != null;
+        arrayHeaderSize = layout != null ? layout[0] : DEFAULT_ARRAY_HEADER_SIZE;
+        referenceSize = layout != null ? layout[1] : DEFAULT_REFERENCE_SIZE;
+        alignment = layout != null ? layout[2] : DEFAULT_ALIGNMENT;
+    }
+
+    private static final ClassValue<Long> instanceSizes = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            return jolPresent ? Jol.instanceSize(type) : estimateInstanceSize(type);
+        }
+    };
+
+    /**
+     * Whether the sizes come from JOL rather than estimates.
+     */
+    public static boolean isJolPresent() {
+        return jolPresent;
+    }
+
+    /**
+     * Bytes held by o itself, not by the objects it references. 0 for null.
+     */
+    public static long sizeOf(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        Class<?> type = o.getClass();
+        if (type.isArray()) {
+            return sizeOfArray(type.getComponentType(), Array.getLength(o));
+        }
+        return instanceSizes.get(type);
+    }
+
+    /**
+     * Bytes held by v and its array. 0 for null.
+     */
+    public static long sizeOf(DoubleVector v) {
+        return v == null ? 0 : instanceSizes.get(v.getClass()) + sizeOf(v.getArrayRef());
+    }
+
+    /**
+     * Bytes held by an array of length elements of componentType.
+     */
+    public static long sizeOfArray(Class<?> componentType, int length) {
+        return align(arrayHeaderSize + (long) length * sizeOfField(componentType));
+    }
+
+    protected static long estimateInstanceSize(Class<?> type) {
+        long size = DEFAULT_OBJECT_HEADER_SIZE;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += sizeOfField(field.getType());
+                }
+            }
+        }
+        return align(size);
+    }
+
+    protected static int sizeOfField(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return referenceSize;
+    }
+
+    protected static long align(long size) {
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    /** Calls into JOL, only loaded when it is on the class path. */
+    private static class Jol {
+
+        /** Array header size, reference size and object alignment of the running VM. */
+        static int[] layout() {
+            VirtualMachine vm = VM.current();
+            int referenceSize = (int) ((vm.sizeOf(new Object[16]) - vm.sizeOf(new Object[0])) / 16);
+            return new int[] {vm.arrayHeaderSize(), referenceSize, vm.objectAlignment()};
+        }
+
+        static long instanceSize(Class<?> type) {
+            return ClassLayout.parseClass(type).instanceSize();
+        }
+    }
+}
@@ -22,6 +22,7 @@ package moa.options;
 import java.io.File;
 import com.github.javacliparser.AbstractOption;
 import com.github.javacliparser.SerializeUtils;
+import moa.core.CheckpointUtils;
 import moa.core.ObjectRepository;
 import moa.tasks.Task;
 import moa.tasks.TaskMonitor;
@@ -165,7 +166,11 @@ public abstract class AbstractClassOption extends AbstractOption {
             File inputFile = (File) this.currentValue;
             Object result = null;
             try {
-                result = SerializeUtils.readFromFile(inputFile);
+                if (CheckpointUtils.isCheckpoint(inputFile)) {
+                    result = CheckpointUtils.readFromFile(inputFile);
+                } else {
+                    result = SerializeUtils.readFromFile(inputFile);
+                }
             } catch (Exception ex) {
                 throw new RuntimeException("Problem loading "
                         + this.requiredType.getName() + " object from file '"
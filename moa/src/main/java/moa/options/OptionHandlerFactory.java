@@ -0,0 +1,92 @@
+/*
+ *    OptionHandlerFactory.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.options;
+
+import com.github.javacliparser.Option;
+
+import java.io.Serializable;
+
+/**
+ * Creates new objects of the class of a prototype, with the same option values, without copying the prototype.
+ *
+ * <p>The option values are read once, when the factory is created. Class options whose value is an option handler
+ * get a factory of their own, so every object created gets its own fresh instance of them, like when it is created
+ * from the command line. Only the options are copied: the state of the prototype, trained or not, is not.</p>
+ */
+public class OptionHandlerFactory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final Class<? extends OptionHandler> type;
+
+    protected final String[] optionNames;
+
+    /** Command line text of each option, or the factory of the value of class options holding an option handler. */
+    protected final Object[] optionValues;
+
+    public OptionHandlerFactory(OptionHandler prototype) {
+        type = prototype.getClass();
+        Option[] options = prototype.getOptions().getOptionArray();
+        optionNames = new String[options.length];
+        optionValues = new Object[options.length];
+        for (int i = 0; i < options.length; i++) {
+            optionNames[i] = options[i].getName();
+            Object value = options[i] instanceof AbstractClassOption ?
+                    ((AbstractClassOption) options[i]).getPreMaterializedObject() : null;
+            if (value instanceof OptionHandler) {
+                optionValues[i] = new OptionHandlerFactory((OptionHandler) value);
+            } else {
+                optionValues[i] = options[i].getValueAsCLIString();
+            }
+        }
+    }
+
+    public Class<? extends OptionHandler> getType() {
+        return type;
+    }
+
+    /**
+     * New object with the options of the prototype, not prepared for use.
+     */
+    public OptionHandler newInstance() {
+        OptionHandler handler;
+        try {
+            handler = type.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Could not create an instance of " + type.getName(), e);
+        }
+        Option[] options = handler.getOptions().getOptionArray();
+        if (options.length != optionNames.length) {
+            throw new RuntimeException("Could not set the options of " + type.getName()
+                    + ": expected " + optionNames.length + " options, found " + options.length);
+        }
+        for (int i = 0; i < options.length; i++) {
+            if (!options[i].getName().equals(optionNames[i])) {
+                throw new RuntimeException("Could not set option " + optionNames[i] + " of " + type.getName()
+                        + ", found " + options[i].getName());
+            }
+            if (optionValues[i] instanceof OptionHandlerFactory) {
+                ((AbstractClassOption) options[i]).setCurrentObject(((OptionHandlerFactory) optionValues[i]).newInstance());
+            } else {
+                options[i].setValueViaCLIString((String) optionValues[i]);
+            }
+        }
+        return handler;
+    }
+}
@@ -21,6 +21,7 @@ package moa.streams;
 
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.io.BufferedReader;
@@ -30,6 +31,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
@@ -49,7 +52,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class ArffFileStream extends AbstractOptionHandler implements
-        InstanceStream, ConceptDriftGenerator, CapabilitiesHandler {
+        InstanceStream, ConceptDriftGenerator, CapabilitiesHandler, AutoCloseable {
 
     @Override
     public String getPurposeString() {
@@ -67,6 +70,13 @@ public class ArffFileStream extends AbstractOptionHandler implements
             "Class index of data. 0 for none or -1 for last attribute in file.",
             -1, -1, Integer.MAX_VALUE);
 
+    public IntOption readAheadOption = new IntOption("readAhead", 'r',
+            "Instances parsed ahead on a background thread (0 = parse on the calling thread with the generic ARFF reader).",
+            0, 0, Integer.MAX_VALUE);
+
+    /** Instances handed from the parser thread to the stream at a time. */
+    protected static final int PARSED_BLOCK_SIZE = 256;
+
     protected Instances instances;
 
     protected Reader fileReader;
@@ -79,6 +89,20 @@ public class ArffFileStream extends AbstractOptionHandler implements
 
     protected InputStreamProgressMonitor fileProgressMonitor;
 
+    protected transient boolean parsingAhead;
+
+    protected transient Thread parserThread;
+
+    protected transient BlockingQueue<ParsedBlock> parsedBlocks;
+
+    protected transient ParsedBlock currentBlock;
+
+    protected transient int currentBlockIndex;
+
+    protected transient long fileSize;
+
+    protected transient long bytesParsed;
+
     public ArffFileStream() {
     }
 
@@ -101,7 +125,9 @@ public class ArffFileStream extends AbstractOptionHandler implements
 
     @Override
     public long estimatedRemainingInstances() {
-        double progressFraction = this.fileProgressMonitor.getProgressFraction();
+        double progressFraction = this.parsingAhead
+                ? (double) this.bytesParsed / (double) this.fileSize
+                : this.fileProgressMonitor.getProgressFraction();
         if ((progressFraction > 0.0) && (this.numInstancesRead > 0)) {
             return (long) ((this.numInstancesRead / progressFraction) - this.numInstancesRead);
         }
@@ -128,14 +154,12 @@ public class ArffFileStream extends AbstractOptionHandler implements
     @Override
     public void restart() {
         try {
-            if (this.fileReader != null) {
-                this.fileReader.close();
-            }
+            close();
             InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
             this.fileProgressMonitor = new InputStreamProgressMonitor(
                     fileStream);
             this.fileReader = new BufferedReader(new InputStreamReader(
-                    this.fileProgressMonitor));
+                    this.fileProgressMonitor, ArffRecordReader.CHARSET));
             int classIndex = this.classIndexOption.getValue();
             this.instances = new Instances(this.fileReader, 1, classIndex);
             if (classIndex < 0) {
@@ -145,6 +169,13 @@ public class ArffFileStream extends AbstractOptionHandler implements
 				}
             this.numInstancesRead = 0;
             this.lastInstanceRead = null;
+            this.parsingAhead = this.readAheadOption.getValue() > 0;
+            if (this.parsingAhead) {
+                // the header is parsed above, the rows by an ArffRecordReader on its own thread
+                this.fileReader.close();
+                this.fileReader = null;
+                startParser();
+            }
             this.hitEndOfFile = !readNextInstanceFromFile();
         } catch (IOException ioe) {
             throw new RuntimeException("ArffFileStream restart failed.", ioe);
@@ -153,6 +184,9 @@ public class ArffFileStream extends AbstractOptionHandler implements
     }
 
     protected boolean readNextInstanceFromFile() {
+        if (this.parsingAhead) {
+            return readNextParsedInstance();
+        }
         try {
             if (this.instances.readInstance(this.fileReader)) {
                 this.lastInstanceRead = new InstanceExample(this.instances.instance(0));
@@ -171,6 +205,139 @@ public class ArffFileStream extends AbstractOptionHandler implements
         }
     }
 
+    protected void startParser() throws IOException {
+        ArffRecordReader reader = new ArffRecordReader(this.arffFileOption.getFile(), this.instances);
+        this.fileSize = reader.getSize();
+        this.bytesParsed = 0;
+        int blockSize = Math.min(PARSED_BLOCK_SIZE, this.readAheadOption.getValue());
+        BlockingQueue<ParsedBlock> queue = new ArrayBlockingQueue<ParsedBlock>(
+                Math.max(1, this.readAheadOption.getValue() / blockSize));
+        InstancesHeader dataset = new InstancesHeader(this.instances);
+        this.parsedBlocks = queue;
+        this.currentBlock = null;
+        this.currentBlockIndex = 0;
+        this.parserThread = new Thread(() -> parse(reader, dataset, queue, blockSize), "ArffFileStream");
+        this.parserThread.setDaemon(true);
+        this.parserThread.start();
+    }
+
+    /**
+     * Body of the parser thread. The last block is the first one that is not full, it carries the
+     * failure if parsing stopped on an error.
+     */
+    protected static void parse(ArffRecordReader reader, InstancesHeader dataset, BlockingQueue<ParsedBlock> queue,
+                                int blockSize) {
+        try {
+            ParsedBlock block;
+            do {
+                block = new ParsedBlock(blockSize);
+                try {
+                    Instance inst;
+                    while (block.size < blockSize && (inst = reader.readInstance()) != null) {
+                        inst.setDataset(dataset);
+                        block.instances[block.size++] = inst;
+                    }
+                    block.endPosition = reader.getPosition();
+                } catch (IOException | RuntimeException e) {
+                    block.failure = e;
+                }
+                queue.put(block);
+            } while (!block.isLast());
+        } catch (InterruptedException e) {
+            // the stream was restarted
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+
+    protected boolean readNextParsedInstance() {
+        while (this.currentBlock == null || this.currentBlockIndex == this.currentBlock.size) {
+            if (this.parsedBlocks == null) {
+                return false;
+            }
+            if (this.currentBlock != null && this.currentBlock.isLast()) {
+                Exception failure = this.currentBlock.failure;
+                stopParser();
+                if (failure != null) {
+                    throw new RuntimeException(
+                            "ArffFileStream failed to read instance from stream.", failure);
+                }
+                return false;
+            }
+            try {
+                this.currentBlock = this.parsedBlocks.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException("ArffFileStream was interrupted while waiting for instances.", e);
+            }
+            this.currentBlockIndex = 0;
+            this.bytesParsed = this.currentBlock.endPosition;
+        }
+        this.lastInstanceRead = new InstanceExample(this.currentBlock.instances[this.currentBlockIndex]);
+        this.currentBlock.instances[this.currentBlockIndex++] = null;
+        this.numInstancesRead++;
+        return true;
+    }
+
+    /**
+     * Stops the parser thread and waits for it to close its file.
+     */
+    protected void stopParser() {
+        if (this.parserThread != null) {
+            this.parserThread.interrupt();
+            try {
+                this.parserThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.parserThread = null;
+        }
+        this.parsedBlocks = null;
+        this.currentBlock = null;
+    }
+
+    /**
+     * Closes the file and stops the parser thread. A closed stream is read again after a restart.
+     */
+    @Override
+    public void close() {
+        if (this.fileReader != null) {
+            try {
+                this.fileReader.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+            this.fileReader = null;
+        }
+        stopParser();
+        this.hitEndOfFile = true;
+    }
+
+    /**
+     * Instances parsed ahead, with the file offset reached after the last of them.
+     */
+    protected static class ParsedBlock {
+
+        final Instance[] instances;
+
+        int size;
+
+        long endPosition;
+
+        Exception failure;
+
+        ParsedBlock(int capacity) {
+            this.instances = new Instance[capacity];
+        }
+
+        boolean isLast() {
+            return this.size < this.instances.length || this.failure != null;
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
@@ -0,0 +1,352 @@
+/*
+ *    ArffRecordReader.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstanceImpl;
+import com.yahoo.labs.samoa.instances.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the data section of an ARFF file, dense and sparse rows, straight from the bytes of a
+ * file channel. Tokens follow the rules of the StreamTokenizer set up by ArffLoader: whitespace
+ * and commas separate values, '%' starts a comment, values may be quoted and '?' is missing.
+ *
+ * <p>The header is not interpreted, the attributes are taken from the given Instances. Rows are
+ * returned as InstanceImpl, as Instances.readInstance does, without a dataset set.</p>
+ */
+public class ArffRecordReader {
+
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Encoding of the files, ArffFileStream reads the header with it too. The tokens are split on
+     * ASCII bytes, which does not work for encodings that are not a superset of ASCII.
+     */
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    protected static final int TT_EOF = -1;
+
+    protected static final int TT_EOL = '\n';
+
+    protected static final int TT_WORD = -3;
+
+    /** Powers of ten that are exact as doubles. */
+    protected static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    protected final Instances header;
+
+    protected final FileChannel channel;
+
+    protected final ByteBuffer buffer;
+
+    protected final byte[] bytes;
+
+    protected int position;
+
+    protected int limit;
+
+    /** File offset of the first byte in the buffer. */
+    protected long bufferStart;
+
+    protected byte[] token = new byte[64];
+
+    protected int tokenLength;
+
+    protected int[] sparseIndexes = new int[16];
+
+    protected double[] sparseValues = new double[16];
+
+    /**
+     * Opens the file and skips its header, up to and including the @data keyword.
+     */
+    public ArffRecordReader(File file, Instances header) throws IOException {
+        this.header = header;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bytes = this.buffer.array();
+        try {
+            skipHeader();
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return the instance, or null at the end of the file
+     */
+    public Instance readInstance() throws IOException {
+        int type = nextToken();
+        while (type == TT_EOL) {
+            type = nextToken();
+        }
+        if (type == TT_EOF) {
+            return null;
+        }
+        return type == '{' ? readSparseInstance() : readDenseInstance(type);
+    }
+
+    /**
+     * Number of bytes of the file consumed so far.
+     */
+    public long getPosition() {
+        return this.bufferStart + this.position;
+    }
+
+    public long getSize() throws IOException {
+        return this.channel.size();
+    }
+
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    protected Instance readDenseInstance(int type) throws IOException {
+        double[] values = new double[this.header.numAttributes()];
+        int numAttribute = 0;
+        while (type != TT_EOL && type != TT_EOF) {
+            if (type == TT_WORD) {
+                values[numAttribute] = parseValue(this.header.attribute(numAttribute));
+                numAttribute++;
+            }
+            type = nextToken();
+        }
+        return new InstanceImpl(1.0, values);
+    }
+
+    protected Instance readSparseInstance() throws IOException {
+        int numValues = 0;
+        int type = nextToken();
+        while (type != '}' && type != TT_EOL && type != TT_EOF) {
+            if (type == TT_WORD) {
+                int index = Integer.parseInt(tokenToString());
+                type = nextToken();
+                if (type != TT_WORD) {
+                    continue;
+                }
+                if (numValues == this.sparseIndexes.length) {
+                    this.sparseIndexes = Arrays.copyOf(this.sparseIndexes, 2 * numValues);
+                    this.sparseValues = Arrays.copyOf(this.sparseValues, 2 * numValues);
+                }
+                this.sparseIndexes[numValues] = index;
+                this.sparseValues[numValues] = parseValue(this.header.attribute(index));
+                numValues++;
+            }
+            type = nextToken();
+        }
+        // anything after the closing brace, e.g. an instance weight, is not supported
+        while (type != TT_EOL && type != TT_EOF) {
+            type = nextToken();
+        }
+        return new InstanceImpl(1.0, Arrays.copyOf(this.sparseValues, numValues),
+                Arrays.copyOf(this.sparseIndexes, numValues), this.header.numAttributes());
+    }
+
+    protected double parseValue(Attribute attribute) {
+        if (this.tokenLength == 1 && this.token[0] == '?') {
+            return Double.NaN;
+        }
+        if (attribute.isNumeric()) {
+            return parseDouble();
+        }
+        return attribute.indexOfValue(tokenToString());
+    }
+
+    /**
+     * Parses the token as a double. Plain decimals of at most 15 significant digits are
+     * converted exactly from their integer mantissa, everything else goes to Double.parseDouble.
+     */
+    protected double parseDouble() {
+        int i = 0;
+        boolean negative = false;
+        if (this.tokenLength > 0 && (this.token[0] == '-' || this.token[0] == '+')) {
+            negative = this.token[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int numDigits = 0;
+        int significantDigits = 0;
+        int fractionDigits = -1;
+        for (; i < this.tokenLength; i++) {
+            int c = this.token[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = 10 * mantissa + (c - '0');
+                numDigits++;
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < this.tokenLength || numDigits == 0 || significantDigits > 15
+                || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(tokenToString());
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    protected String tokenToString() {
+        return new String(this.token, 0, this.tokenLength, CHARSET);
+    }
+
+    protected int nextToken() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return TT_EOF;
+            }
+            if (c == '\n') {
+                return TT_EOL;
+            }
+            if (c == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                return TT_EOL;
+            }
+            if (c <= ' ' || c == ',') {
+                continue;
+            }
+            if (c == '%') {
+                while ((c = peek()) >= 0 && c != '\n' && c != '\r') {
+                    read();
+                }
+                continue;
+            }
+            if (c == '{' || c == '}') {
+                return c;
+            }
+            this.tokenLength = 0;
+            if (c == '"' || c == '\'') {
+                readQuoted(c);
+            } else {
+                append(c);
+                while ((c = peek()) > ' ' && c != ',' && c != '%' && c != '"' && c != '\''
+                        && c != '{' && c != '}') {
+                    append(read());
+                }
+            }
+            return TT_WORD;
+        }
+    }
+
+    protected void readQuoted(int quote) throws IOException {
+        int c;
+        while ((c = peek()) >= 0 && c != quote && c != '\n' && c != '\r') {
+            read();
+            if (c == '\\' && (c = peek()) >= 0 && c != '\n' && c != '\r') {
+                read();
+                switch (c) {
+                    case 'n': c = '\n'; break;
+                    case 't': c = '\t'; break;
+                    case 'r': c = '\r'; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    default: break;
+                }
+            }
+            append(c);
+        }
+        if (c == quote) {
+            read();
+        }
+    }
+
+    protected void skipHeader() throws IOException {
+        while (true) {
+            int c = read();
+            while (c >= 0 && c != '\n' && c <= ' ') {
+                c = read();
+            }
+            if (c < 0) {
+                return;
+            }
+            if (c == '@') {
+                this.tokenLength = 0;
+                while ((c = peek()) > ' ' && c != ',' && c != '%' && c != '{' && c != '}') {
+                    append(read());
+                }
+                if (this.tokenLength >= 4 && tokenToString().toUpperCase().startsWith("DATA")) {
+                    return;
+                }
+            }
+            while (c >= 0 && c != '\n') {
+                c = read();
+            }
+        }
+    }
+
+    protected void append(int c) {
+        if (this.tokenLength == this.token.length) {
+            this.token = Arrays.copyOf(this.token, 2 * this.tokenLength);
+        }
+        this.token[this.tokenLength++] = (byte) c;
+    }
+
+    protected int peek() throws IOException {
+        if (this.position == this.limit && !fill()) {
+            return -1;
+        }
+        return this.bytes[this.position] & 0xFF;
+    }
+
+    protected int read() throws IOException {
+        if (this.position == this.limit && !fill()) {
+            return -1;
+        }
+        return this.bytes[this.position++] & 0xFF;
+    }
+
+    protected boolean fill() throws IOException {
+        this.bufferStart += this.limit;
+        this.position = 0;
+        this.limit = 0;
+        this.buffer.clear();
+        int n;
+        do {
+            n = this.channel.read(this.buffer);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        this.limit = n;
+        return true;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ *    BinaryFileStream.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.FileOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstanceImpl;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.core.StringUtils;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream read from a binary instance file written by the task <code>WriteStreamToBinaryFile</code>.
+ *
+ * <p>The file holds the serialized stream header followed by the rows as little-endian primitives,
+ * either fixed width (weight and every attribute value) or sparse (weight, number of values, their
+ * attribute indexes and their values). Rows are read from memory-mapped windows of the file, so
+ * replaying a dataset does no text parsing at all.</p>
+ */
+public class BinaryFileStream extends AbstractOptionHandler implements InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read from a binary instance file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAGIC = 0x4D4F4142;
+
+    public static final int VERSION = 1;
+
+    public static final int LAYOUT_DENSE = 0;
+
+    public static final int LAYOUT_SPARSE = 1;
+
+    /** Bytes before the serialized header: magic, version, layout, attributes, instances, header length. */
+    public static final int PREAMBLE_SIZE = 28;
+
+    /** Offset of the instance count, written once all rows are. */
+    public static final int NUM_INSTANCES_OFFSET = 16;
+
+    protected static final int WINDOW_SIZE = 1 << 26;
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Binary instance file to load.", null, "bin", false);
+
+    /** Bytes mapped at a time, at least a row. */
+    protected int windowSize = WINDOW_SIZE;
+
+    protected transient FileChannel channel;
+
+    protected transient MappedByteBuffer window;
+
+    /** File offset of the first byte of the window. */
+    protected transient long windowStart;
+
+    protected transient long fileSize;
+
+    protected InstancesHeader header;
+
+    protected int layout;
+
+    protected int numAttributes;
+
+    protected long numInstances;
+
+    protected long numInstancesRead;
+
+    public BinaryFileStream() {
+    }
+
+    public BinaryFileStream(String binaryFileName) {
+        this.binaryFileOption.setValue(binaryFileName);
+        restart();
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        restart();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.numInstances - this.numInstancesRead;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.numInstancesRead < this.numInstances;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        Instance inst;
+        try {
+            inst = this.layout == LAYOUT_SPARSE ? readSparseInstance() : readDenseInstance();
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "BinaryFileStream failed to read instance from file.", ioe);
+        }
+        inst.setDataset(this.header);
+        this.numInstancesRead++;
+        if (this.numInstancesRead == this.numInstances) {
+            close();
+        }
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        close();
+        File file = this.binaryFileOption.getFile();
+        try {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.fileSize = this.channel.size();
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(preamble, 0);
+            if (preamble.getInt() != MAGIC) {
+                throw new IOException(file + " is not a binary instance file.");
+            }
+            int version = preamble.getInt();
+            if (version > VERSION) {
+                throw new IOException("Unsupported binary instance file version " + version + ".");
+            }
+            this.layout = preamble.getInt();
+            this.numAttributes = preamble.getInt();
+            this.numInstances = preamble.getLong();
+            ByteBuffer headerBytes = ByteBuffer.allocate(preamble.getInt());
+            readFully(headerBytes, PREAMBLE_SIZE);
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(headerBytes.array()))) {
+                this.header = (InstancesHeader) in.readObject();
+            } catch (ClassNotFoundException cnfe) {
+                throw new IOException("Could not read the header of " + file + ".", cnfe);
+            }
+            this.numInstancesRead = 0;
+            map(PREAMBLE_SIZE + headerBytes.capacity(), 0);
+        } catch (IOException ioe) {
+            close();
+            throw new RuntimeException("BinaryFileStream restart failed.", ioe);
+        }
+    }
+
+    protected Instance readDenseInstance() throws IOException {
+        ensureAvailable(8L * (this.numAttributes + 1));
+        double weight = this.window.getDouble();
+        double[] values = new double[this.numAttributes];
+        this.window.asDoubleBuffer().get(values);
+        this.window.position(this.window.position() + 8 * this.numAttributes);
+        return new InstanceImpl(weight, values);
+    }
+
+    protected Instance readSparseInstance() throws IOException {
+        ensureAvailable(12);
+        double weight = this.window.getDouble();
+        int numValues = this.window.getInt();
+        ensureAvailable(12L * numValues);
+        int[] indexes = new int[numValues];
+        this.window.asIntBuffer().get(indexes);
+        this.window.position(this.window.position() + 4 * numValues);
+        double[] values = new double[numValues];
+        this.window.asDoubleBuffer().get(values);
+        this.window.position(this.window.position() + 8 * numValues);
+        return new InstanceImpl(weight, values, indexes, this.numAttributes);
+    }
+
+    /**
+     * Moves the window to the current read position if fewer than size bytes are left in it.
+     */
+    protected void ensureAvailable(long size) throws IOException {
+        if (this.window.remaining() < size) {
+            map(this.windowStart + this.window.position(), size);
+        }
+    }
+
+    protected void map(long position, long minSize) throws IOException {
+        long size = Math.min(Math.max(this.windowSize, minSize), this.fileSize - position);
+        if (size < minSize || size > Integer.MAX_VALUE) {
+            throw new IOException("Row at offset " + position + " does not fit the file.");
+        }
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        this.window.order(ByteOrder.LITTLE_ENDIAN);
+        this.windowStart = position;
+    }
+
+    protected void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of binary instance file.");
+            }
+        }
+        buffer.flip();
+    }
+
+    protected void close() {
+        this.window = null;
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException ioe) {
+                // nothing left to read
+            }
+            this.channel = null;
+        }
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        StringUtils.appendIndented(sb, indent, "Binary instance file: ");
+        sb.append(this.binaryFileOption.getFile());
+        if (this.header != null) {
+            StringUtils.appendNewlineIndented(sb, indent, "Relation: ");
+            sb.append(this.header.getRelationName());
+            StringUtils.appendNewlineIndented(sb, indent, "Layout: ");
+            sb.append(this.layout == LAYOUT_SPARSE ? "sparse" : "dense");
+            StringUtils.appendNewlineIndented(sb, indent, "Attributes: ");
+            sb.append(this.numAttributes);
+            StringUtils.appendNewlineIndented(sb, indent, "Instances: ");
+            sb.append(this.numInstancesRead).append(" of ").append(this.numInstances).append(" read");
+        }
+    }
+}
@@ -25,8 +25,10 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.core.CPUTimeAccountant;
 import moa.core.Example;
 import moa.core.Measurement;
+import moa.core.MemoryMonitor;
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
@@ -36,6 +38,7 @@ import moa.learners.Learner;
 import moa.options.ClassOption;
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
 import moa.streams.ExampleStream;
 import moa.streams.InstanceStream;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -81,6 +84,10 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
             "Maximum number of seconds to test/train for (-1 = no limit).", -1,
             -1, Integer.MAX_VALUE);
 
+    public MultiChoiceOption timeLimitClockOption = new MultiChoiceOption("timeLimitClock", 'c',
+            "Clock the timeLimit is enforced against.",
+            CPUTimeAccountant.CLOCK_NAMES, CPUTimeAccountant.CLOCK_DESCRIPTIONS, CPUTimeAccountant.CLOCK_TASK_THREAD);
+
     public IntOption sampleFrequencyOption = new IntOption("sampleFrequency",
             'f',
             "How many instances between samples of the learning performance.",
@@ -91,6 +98,14 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
             "How many instances between memory bound checks.", 100000, 0,
             Integer.MAX_VALUE);
 
+    public MultiChoiceOption gcPolicyOption = new MultiChoiceOption("gcPolicy", 'g',
+            "When to force a garbage collection before measuring memory.",
+            MemoryMonitor.GC_POLICY_NAMES, MemoryMonitor.GC_POLICY_DESCRIPTIONS, MemoryMonitor.GC_POLICY_NONE);
+
+    public MultiChoiceOption ramHoursMemoryOption = new MultiChoiceOption("ramHoursMemory", 'H',
+            "Memory the RAM-Hours are computed from.",
+            MemoryMonitor.RAM_HOURS_MEMORY_NAMES, MemoryMonitor.RAM_HOURS_MEMORY_DESCRIPTIONS, MemoryMonitor.RAM_HOURS_MODEL_SIZE);
+
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv reslts to.", null, "csv", true);
 
@@ -142,8 +157,10 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        CPUTimeAccountant accountant = new CPUTimeAccountant();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
+        MemoryMonitor memoryMonitor = MemoryMonitor.getInstance();
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
@@ -165,7 +182,7 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
                 double RAMHoursIncrement = 0.0;
                 double modelMeasureByteSize = 0.0;
                 if (memCheckFrequencyOption.getValue() > 0) {
-                    System.gc();
+                    memoryMonitor.collectIfRequired(this.gcPolicyOption.getChosenIndex());
 
                     float timeTakenBymeasureByteSize = 0;
 //                    float timeTakenByFileWrite = 0;
@@ -224,12 +241,13 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
 //                            " GS : (" + modelMeasureByteSizeByGraphLayout+ " B) ("+ timeTakenByGraphLayout + " ms) "
                     );
 
-                    RAMHoursIncrement = modelMeasureByteSize / (1024.0 * 1024.0 * 1024.0); //GBs
+                    double ramBytes = this.ramHoursMemoryOption.getChosenIndex() == MemoryMonitor.RAM_HOURS_LIVE_HEAP ?
+                            memoryMonitor.getLiveHeapBytes() : modelMeasureByteSize;
+                    RAMHoursIncrement = ramBytes / (1024.0 * 1024.0 * 1024.0); //GBs
                 }
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                 RAMHours += RAMHoursIncrement;
                 lastEvaluateStartTime = evaluateTime;
-                System.gc();
                 learningCurve.insertEntry(new LearningEvaluation(
                         new Measurement[]{
                             new Measurement(
@@ -241,6 +259,12 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
                             : "") + "seconds)",
                             time),
                             new Measurement(
+                            "evaluation time (process cpu seconds)",
+                            TimingUtils.nanoTimeToSeconds(accountant.getProcessTime())),
+                            new Measurement(
+                            "evaluation time (wall seconds)",
+                            TimingUtils.nanoTimeToSeconds(accountant.getWallTime())),
+                            new Measurement(
                             "model cost (RAM-Hours)",
                             RAMHours)
                         },
@@ -274,8 +298,8 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(
+                        accountant.getTime(this.timeLimitClockOption.getChosenIndex()));
             }
         }
         if (immediateResultStream != null) {
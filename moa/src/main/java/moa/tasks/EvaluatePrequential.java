@@ -28,8 +28,10 @@ import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.MultiClassClassifier;
+import moa.core.CPUTimeAccountant;
 import moa.core.Example;
 import moa.core.Measurement;
+import moa.core.MemoryMonitor;
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
@@ -44,6 +46,7 @@ import moa.options.ClassOption;
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
 import moa.streams.ExampleStream;
 import com.yahoo.labs.samoa.instances.Instance;
 import moa.core.Utils;
@@ -86,6 +89,10 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
             "Maximum number of seconds to test/train for (-1 = no limit).", -1,
             -1, Integer.MAX_VALUE);
 
+    public MultiChoiceOption timeLimitClockOption = new MultiChoiceOption("timeLimitClock", 'c',
+            "Clock the timeLimit is enforced against.",
+            CPUTimeAccountant.CLOCK_NAMES, CPUTimeAccountant.CLOCK_DESCRIPTIONS, CPUTimeAccountant.CLOCK_TASK_THREAD);
+
     public IntOption sampleFrequencyOption = new IntOption("sampleFrequency",
             'f',
             "How many instances between samples of the learning performance.",
@@ -96,6 +103,14 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
             "How many instances between memory bound checks.", 100000, 0,
             Integer.MAX_VALUE);
 
+    public MultiChoiceOption gcPolicyOption = new MultiChoiceOption("gcPolicy", 'g',
+            "When to force a garbage collection before measuring memory.",
+            MemoryMonitor.GC_POLICY_NAMES, MemoryMonitor.GC_POLICY_DESCRIPTIONS, MemoryMonitor.GC_POLICY_NONE);
+
+    public MultiChoiceOption ramHoursMemoryOption = new MultiChoiceOption("ramHoursMemory", 'H',
+            "Memory the RAM-Hours are computed from.",
+            MemoryMonitor.RAM_HOURS_MEMORY_NAMES, MemoryMonitor.RAM_HOURS_MEMORY_DESCRIPTIONS, MemoryMonitor.RAM_HOURS_MODEL_SIZE);
+
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
@@ -190,8 +205,10 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        CPUTimeAccountant accountant = new CPUTimeAccountant();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
+        MemoryMonitor memoryMonitor = MemoryMonitor.getInstance();
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
@@ -218,7 +235,7 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
                 double RAMHoursIncrement = 0.0;
                 double modelMeasureByteSize = 0.0;
                 if (memCheckFrequencyOption.getValue() > 0) {
-                    System.gc();
+                    memoryMonitor.collectIfRequired(this.gcPolicyOption.getChosenIndex());
 
                     float timeTakenBymeasureByteSize = 0;
                     long t1 = 0;
@@ -226,7 +243,9 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
                     t1 = System.currentTimeMillis();
                     modelMeasureByteSize = learner.measureByteSize();
 //                    modelMeasureByteSize = GraphLayout.parseInstance(learner).totalSize();
-                    RAMHoursIncrement = modelMeasureByteSize / (1024.0 * 1024.0 * 1024.0); //GBs
+                    double ramBytes = this.ramHoursMemoryOption.getChosenIndex() == MemoryMonitor.RAM_HOURS_LIVE_HEAP ?
+                            memoryMonitor.getLiveHeapBytes() : modelMeasureByteSize;
+                    RAMHoursIncrement = ramBytes / (1024.0 * 1024.0 * 1024.0); //GBs
                     t2 = System.currentTimeMillis();
                     timeTakenBymeasureByteSize = (t2 - t1) / 1000F;
 
@@ -240,7 +259,6 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                 RAMHours += RAMHoursIncrement;
                 lastEvaluateStartTime = evaluateTime;
-                System.gc();
                 learningCurve.insertEntry(new LearningEvaluation(
                         new Measurement[]{
                             new Measurement(
@@ -252,6 +270,12 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
                             : "") + "seconds)",
                             time),
                             new Measurement(
+                            "evaluation time (process cpu seconds)",
+                            TimingUtils.nanoTimeToSeconds(accountant.getProcessTime())),
+                            new Measurement(
+                            "evaluation time (wall seconds)",
+                            TimingUtils.nanoTimeToSeconds(accountant.getWallTime())),
+                            new Measurement(
                             "model cost (RAM-Hours)",
                             RAMHours)
                         },
@@ -284,8 +308,8 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(
+                        accountant.getTime(this.timeLimitClockOption.getChosenIndex()));
             }
         }
         if (immediateResultStream != null) {
@@ -81,6 +81,10 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
             "Maximum number of seconds to test/train for (-1 = no limit).", -1,
             -1, Integer.MAX_VALUE);
 
+    public MultiChoiceOption timeLimitClockOption = new MultiChoiceOption("timeLimitClock", 'c',
+            "Clock the timeLimit is enforced against, the task thread clock stands for the process clock when the folds run in parallel.",
+            CPUTimeAccountant.CLOCK_NAMES, CPUTimeAccountant.CLOCK_DESCRIPTIONS, CPUTimeAccountant.CLOCK_TASK_THREAD);
+
     public IntOption sampleFrequencyOption = new IntOption("sampleFrequency",
             'f',
             "How many instances between samples of the learning performance.",
@@ -108,6 +112,14 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
     public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
             "Seed for random behaviour of the task.", 1);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of threads the folds are run on (-1 = one per processor, 0 or 1 = run folds in sequence). In parallel the CPU time and RAM-Hours are measured on the process clock.",
+            1, -1, Integer.MAX_VALUE);
+
+    public IntOption foldBatchSizeOption = new IntOption("foldBatchSize", 'b',
+            "Instances buffered for the fold threads between synchronisation points.",
+            1000, 1, Integer.MAX_VALUE);
+
 
     @Override
     public Class<?> getTaskResultType() {
@@ -157,101 +169,131 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
             }
         }
 
+        int numJobs = this.numberOfJobsOption.getValue();
+        boolean parallel = numJobs != 0 && numJobs != 1 && learners.length > 1;
+        CommitteeExecutor executor = parallel
+                ? new CommitteeExecutor(CommitteeExecutor.Strategy.DEDICATED_POOL, numJobs, 2) : null;
+        // read-only batch shared by the fold threads, refilled once they have all finished with it
+        int capacity = parallel ? this.foldBatchSizeOption.getValue() : 1;
+        Example[] batch = new Example[capacity];
+        int[] batchWeights = new int[capacity * learners.length];
+
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        CPUTimeAccountant accountant = new CPUTimeAccountant();
+        // the folds run on the pool threads when parallel, only the process clock counts their time
+        int cpuClock = parallel ? CPUTimeAccountant.CLOCK_PROCESS : CPUTimeAccountant.CLOCK_TASK_THREAD;
+        int timeLimitClock = this.timeLimitClockOption.getChosenIndex() == CPUTimeAccountant.CLOCK_TASK_THREAD
+                ? cpuClock : this.timeLimitClockOption.getChosenIndex();
+        long evaluateStartTime = accountant.getTime(cpuClock);
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
-        while (stream.hasMoreInstances()
-                && ((maxInstances < 0) || (instancesProcessed < maxInstances))
-                && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst; //.copy();
-            //testInst.setClassMissing();
-
-            for (int i = 0; i < learners.length; i++) {
-                evaluators[i].addResult(testInst, learners[i].getVotesForInstance(testInst));
-            }
-
-            for (int i = 0; i < learners.length; i++) {
-                int k = 1;
-                switch (this.validationMethodologyOption.getChosenIndex()) {
-                    case 0: //Cross-Validation;
-                        k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
-                        break;
-                    case 1: //Bootstrap;
-                        k = MiscUtils.poisson(1, random);
-                        break;
-                    case 2: //Split-Validation;
-                        k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
-                        break;
+        try {
+            while (stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed < maxInstances))
+                    && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+                // fill the batch up to the next sample boundary, drawing the fold weights in sequential order
+                long batchLimit = capacity;
+                if (this.sampleFrequencyOption.getValue() > 0) {
+                    batchLimit = Math.min(batchLimit, this.sampleFrequencyOption.getValue()
+                            - instancesProcessed % this.sampleFrequencyOption.getValue());
                 }
-                if (k > 0) {
-                    Example weightedInst = (Example) trainInst.copy();
-                    weightedInst.setWeight(trainInst.weight() * k);
-                    learners[i].trainOnInstance(weightedInst);
+                if (maxInstances >= 0) {
+                    batchLimit = Math.min(batchLimit, maxInstances - instancesProcessed);
                 }
-            }
-
-            instancesProcessed++;
-            if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-                double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
-                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-
-                for (int i = 0; i < learners.length; i++) {
-                    double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
-                    RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
-                    RAMHours += RAMHoursIncrement;
+                int batchSize = 0;
+                while (batchSize < batchLimit && stream.hasMoreInstances()) {
+                    batch[batchSize] = stream.nextInstance();
+                    for (int i = 0; i < learners.length; i++) {
+                        batchWeights[batchSize * learners.length + i] = foldWeight(i, learners.length,
+                                instancesProcessed + batchSize, random);
+                    }
+                    batchSize++;
                 }
 
-                lastEvaluateStartTime = evaluateTime;
-                learningCurve.insertEntry(new LearningEvaluation(
-                        getEvaluationMeasurements(
-                        new Measurement[]{
-                                new Measurement(
-                                        "learning evaluation instances",
-                                        instancesProcessed),
-                                new Measurement(
-                                        "evaluation time ("
-                                                + (preciseCPUTiming ? "cpu "
-                                                : "") + "seconds)",
-                                        time),
-                                new Measurement(
-                                        "model cost (RAM-Hours)",
-                                        RAMHours)
-                        }, evaluators)));
-
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
+                int size = batchSize;
+                if (parallel) {
+                    executor.forEach(learners.length, i -> runFold(learners[i], evaluators[i],
+                            batch, batchWeights, i, learners.length, size));
+                } else {
+                    for (int i = 0; i < learners.length; i++) {
+                        runFold(learners[i], evaluators[i], batch, batchWeights, i, learners.length, size);
                     }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
-                }
-            }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
-                if (monitor.taskShouldAbort()) {
-                    return null;
                 }
-                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
-                if (maxInstances > 0) {
-                    long maxRemaining = maxInstances - instancesProcessed;
-                    if ((estimatedRemainingInstances < 0)
-                            || (maxRemaining < estimatedRemainingInstances)) {
-                        estimatedRemainingInstances = maxRemaining;
+                Arrays.fill(batch, 0, size, null);
+
+                long instancesBefore = instancesProcessed;
+                instancesProcessed += size;
+                if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                        || stream.hasMoreInstances() == false) {
+                    long evaluateTime = accountant.getTime(cpuClock);
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+
+                    for (int i = 0; i < learners.length; i++) {
+                        double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                        RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                        RAMHours += RAMHoursIncrement;
+                    }
+
+                    lastEvaluateStartTime = evaluateTime;
+                    learningCurve.insertEntry(new LearningEvaluation(
+                            getEvaluationMeasurements(
+                            new Measurement[]{
+                                    new Measurement(
+                                            "learning evaluation instances",
+                                            instancesProcessed),
+                                    new Measurement(
+                                            "evaluation time ("
+                                                    + (preciseCPUTiming ? "cpu "
+                                                    : "") + "seconds)",
+                                            time),
+                                    new Measurement(
+                                            "evaluation time (process cpu seconds)",
+                                            TimingUtils.nanoTimeToSeconds(accountant.getProcessTime())),
+                                    new Measurement(
+                                            "evaluation time (wall seconds)",
+                                            TimingUtils.nanoTimeToSeconds(accountant.getWallTime())),
+                                    new Measurement(
+                                            "model cost (RAM-Hours)",
+                                            RAMHours)
+                            }, evaluators)));
+
+                    if (immediateResultStream != null) {
+                        if (firstDump) {
+                            immediateResultStream.println(learningCurve.headerToString());
+                            firstDump = false;
+                        }
+                        immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
+                        immediateResultStream.flush();
                     }
                 }
-                monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
-                        : (double) instancesProcessed
-                        / (double) (instancesProcessed + estimatedRemainingInstances));
-                if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                if (instancesProcessed / INSTANCES_BETWEEN_MONITOR_UPDATES
+                        != instancesBefore / INSTANCES_BETWEEN_MONITOR_UPDATES) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                    if (monitor.resultPreviewRequested()) {
+                        monitor.setLatestResultPreview(learningCurve.copy());
+                    }
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(
+                            accountant.getTime(timeLimitClock));
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
             }
         }
         if (immediateResultStream != null) {
@@ -260,6 +302,38 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
         return learningCurve;
     }
 
+    /**
+     * Training weight of an instance for a fold under the chosen validation methodology.
+     */
+    protected int foldWeight(int fold, int numFolds, long instanceIndex, Random random) {
+        switch (this.validationMethodologyOption.getChosenIndex()) {
+            case 0: //Cross-Validation;
+                return instanceIndex % numFolds == fold ? 0 : 1; //Test all except one
+            case 1: //Bootstrap;
+                return MiscUtils.poisson(1, random);
+            case 2: //Split-Validation;
+                return instanceIndex % numFolds == fold ? 1 : 0; //Test only one
+        }
+        return 1;
+    }
+
+    /**
+     * Tests then trains one fold on a batch of instances. The folds share the batch, so every fold trains
+     * on its own copy of an instance.
+     */
+    protected static void runFold(Learner learner, LearningPerformanceEvaluator evaluator, Example[] batch,
+                                  int[] weights, int fold, int numFolds, int size) {
+        for (int j = 0; j < size; j++) {
+            Example inst = batch[j];
+            evaluator.addResult(inst, learner.getVotesForInstance(inst));
+            int k = weights[j * numFolds + fold];
+            if (k > 0) {
+                Example weightedInst = (Example) inst.copy();
+                weightedInst.setWeight(inst.weight() * k);
+                learner.trainOnInstance(weightedInst);
+            }
+        }
+    }
 
     public Measurement[] getEvaluationMeasurements(Measurement[] modelMeasurements, LearningPerformanceEvaluator[] subEvaluators) {
         List<Measurement> measurementList = new LinkedList<Measurement>();
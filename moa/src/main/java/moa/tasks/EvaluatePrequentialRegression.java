@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 
+import moa.core.CPUTimeAccountant;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
@@ -40,6 +41,7 @@ import moa.options.ClassOption;
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
 
 import moa.classifiers.Regressor;
 import moa.streams.ExampleStream;
@@ -86,6 +88,10 @@ public class EvaluatePrequentialRegression extends RegressionMainTask {
             "Maximum number of seconds to test/train for (-1 = no limit).", -1,
             -1, Integer.MAX_VALUE);
 
+    public MultiChoiceOption timeLimitClockOption = new MultiChoiceOption("timeLimitClock", 'c',
+            "Clock the timeLimit is enforced against.",
+            CPUTimeAccountant.CLOCK_NAMES, CPUTimeAccountant.CLOCK_DESCRIPTIONS, CPUTimeAccountant.CLOCK_TASK_THREAD);
+
     public IntOption sampleFrequencyOption = new IntOption("sampleFrequency",
             'f',
             "How many instances between samples of the learning performance.",
@@ -190,6 +196,7 @@ public class EvaluatePrequentialRegression extends RegressionMainTask {
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        CPUTimeAccountant accountant = new CPUTimeAccountant();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         while (stream.hasMoreInstances()
@@ -230,6 +237,12 @@ public class EvaluatePrequentialRegression extends RegressionMainTask {
                             : "") + "seconds)",
                             time),
                             new Measurement(
+                            "evaluation time (process cpu seconds)",
+                            TimingUtils.nanoTimeToSeconds(accountant.getProcessTime())),
+                            new Measurement(
+                            "evaluation time (wall seconds)",
+                            TimingUtils.nanoTimeToSeconds(accountant.getWallTime())),
+                            new Measurement(
                             "model cost (RAM-Hours)",
                             RAMHours)
                         },
@@ -262,8 +275,8 @@ public class EvaluatePrequentialRegression extends RegressionMainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(
+                        accountant.getTime(this.timeLimitClockOption.getChosenIndex()));
             }
         }
         if (immediateResultStream != null) {
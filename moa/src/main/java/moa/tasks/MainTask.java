@@ -23,6 +23,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 
+import moa.classifiers.Classifier;
+import moa.core.CheckpointUtils;
+import moa.core.Checkpointable;
 import moa.core.ObjectRepository;
 import moa.core.SerializeUtils;
 import com.github.javacliparser.FileOption;
@@ -58,8 +61,13 @@ public abstract class MainTask extends AbstractTask {
                         + getTaskName() + " to file " + outputFile + "...",
                         -1.0);
                 try {
-                    SerializeUtils.writeToFile(outputFile,
-                            (Serializable) result);
+                    if (result instanceof Classifier && result instanceof Checkpointable) {
+                        // compact binary checkpoint, read back by ClassOption like a serialized file
+                        CheckpointUtils.writeToFile(outputFile, (Classifier) result);
+                    } else {
+                        SerializeUtils.writeToFile(outputFile,
+                                (Serializable) result);
+                    }
                 } catch (IOException ioe) {
                     throw new RuntimeException("Failed writing result of task "
                             + getTaskName() + " to file " + outputFile, ioe);
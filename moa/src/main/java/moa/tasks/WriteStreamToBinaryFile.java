@@ -0,0 +1,195 @@
+/*
+ *    WriteStreamToBinaryFile.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import moa.streams.BinaryFileStream;
+import moa.streams.InstanceStream;
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Task to output a stream to a binary instance file, read back by <code>BinaryFileStream</code>.
+ */
+public class WriteStreamToBinaryFile extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Outputs a stream to a binary instance file that BinaryFileStream replays without parsing.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int BUFFER_SIZE = 1 << 20;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to write.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Destination binary instance file.", null, "bin", true);
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'm',
+            "Maximum number of instances to write to file.", 10000000, 0,
+            Integer.MAX_VALUE);
+
+    public MultiChoiceOption rowLayoutOption = new MultiChoiceOption("rowLayout", 'r',
+            "How rows are stored.", new String[]{"Auto", "Dense", "Sparse"},
+            new String[]{"Sparse if the first instance of the stream is sparse, dense otherwise",
+                    "Weight and every attribute value",
+                    "Weight and the indexes and values of the non-zero values"}, 0);
+
+    protected transient ByteBuffer buffer;
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        File destFile = this.binaryFileOption.getFile();
+        if (destFile != null) {
+            try (FileChannel channel = FileChannel.open(destFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                monitor.setCurrentActivityDescription("Writing stream to binary file");
+                InstancesHeader header = stream.getHeader();
+                int numAttributes = header.numAttributes();
+                Instance first = stream.hasMoreInstances() && this.maxInstancesOption.getValue() > 0
+                        ? stream.nextInstance().getData() : null;
+                int layout = BinaryFileStream.LAYOUT_DENSE;
+                if (this.rowLayoutOption.getChosenIndex() == 2 || (this.rowLayoutOption.getChosenIndex() == 0
+                        && first != null && first.numValues() < numAttributes)) {
+                    layout = BinaryFileStream.LAYOUT_SPARSE;
+                }
+
+                ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(headerBytes)) {
+                    out.writeObject(new InstancesHeader(header));
+                }
+                this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE,
+                        BinaryFileStream.PREAMBLE_SIZE + headerBytes.size())).order(ByteOrder.LITTLE_ENDIAN);
+                this.buffer.putInt(BinaryFileStream.MAGIC);
+                this.buffer.putInt(BinaryFileStream.VERSION);
+                this.buffer.putInt(layout);
+                this.buffer.putInt(numAttributes);
+                this.buffer.putLong(0);
+                this.buffer.putInt(headerBytes.size());
+                this.buffer.put(headerBytes.toByteArray());
+
+                long numWritten = 0;
+                Instance inst = first;
+                while (inst != null) {
+                    if (layout == BinaryFileStream.LAYOUT_SPARSE) {
+                        writeSparseRow(channel, inst);
+                    } else {
+                        writeDenseRow(channel, inst, numAttributes);
+                    }
+                    numWritten++;
+                    inst = numWritten < this.maxInstancesOption.getValue() && stream.hasMoreInstances()
+                            ? stream.nextInstance().getData() : null;
+                }
+                flush(channel);
+
+                ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                count.putLong(numWritten).flip();
+                channel.write(count, BinaryFileStream.NUM_INSTANCES_OFFSET);
+            } catch (Exception ex) {
+                throw new RuntimeException(
+                        "Failed writing to file " + destFile, ex);
+            } finally {
+                this.buffer = null;
+            }
+            return "Stream written to binary file " + destFile;
+        }
+        throw new IllegalArgumentException("No destination file to write to.");
+    }
+
+    protected void writeDenseRow(FileChannel channel, Instance inst, int numAttributes) throws IOException {
+        reserve(channel, 8L * (numAttributes + 1));
+        this.buffer.putDouble(inst.weight());
+        for (int i = 0; i < numAttributes; i++) {
+            this.buffer.putDouble(inst.value(i));
+        }
+    }
+
+    /**
+     * Writes the values stored by a sparse instance as they are, and only the non-zero values of a
+     * dense one.
+     */
+    protected void writeSparseRow(FileChannel channel, Instance inst) throws IOException {
+        boolean skipZeros = inst.numValues() == inst.numAttributes();
+        int numValues = 0;
+        for (int i = 0; i < inst.numValues(); i++) {
+            if (!skipZeros || Double.doubleToRawLongBits(inst.valueSparse(i)) != 0L) {
+                numValues++;
+            }
+        }
+        reserve(channel, 12L + 12L * numValues);
+        this.buffer.putDouble(inst.weight());
+        this.buffer.putInt(numValues);
+        for (int i = 0; i < inst.numValues(); i++) {
+            if (!skipZeros || Double.doubleToRawLongBits(inst.valueSparse(i)) != 0L) {
+                this.buffer.putInt(inst.index(i));
+            }
+        }
+        for (int i = 0; i < inst.numValues(); i++) {
+            if (!skipZeros || Double.doubleToRawLongBits(inst.valueSparse(i)) != 0L) {
+                this.buffer.putDouble(inst.valueSparse(i));
+            }
+        }
+    }
+
+    /**
+     * Makes room for a row of the given size, flushing the buffer or growing it for very wide rows.
+     */
+    protected void reserve(FileChannel channel, long size) throws IOException {
+        if (this.buffer.remaining() < size) {
+            flush(channel);
+            if (this.buffer.capacity() < size) {
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Row of " + size + " bytes is too large.");
+                }
+                this.buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    protected void flush(FileChannel channel) throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+}
@@ -25,6 +25,8 @@ dataset=(elecNormNew)
 dataset=(elecNormNew airlines covtypeNorm RBF_f RBF_m LED_g LED_a AGR_a AGR_g spam_corpus kdd99 WISDM_ar_v1.1_transformed nomao SVHN.scale.t.libsvm.sparse_class_Nominal sector.scale.libsvm.class_Nominal_sparse gisette_scale_class_Nominal epsilon_normalized.t_class_Nominal)
 
 use_datasets_without_drifts=0
+# replay real datasets from <dataset>.bin, written once with WriteStreamToBinaryFile
+use_binary_cache=0
 # dataset=(AGR_a)
 # dataset=(AGR_g)
 # dataset=(LED_a)
@@ -261,6 +263,26 @@ do
       fi
     fi
 
+    if [[ $use_binary_cache -eq 1 && "$stream" == "-s (ArffFileStream -f "* ]]; then
+      arff_file="${stream#-s (ArffFileStream -f }"
+      arff_file="${arff_file%)}"
+      bin_file="${arff_file%.arff}.bin"
+      if [ ! -f "$bin_file" ]; then
+        # written next to the final file and moved in place once complete, DoTask exits with 0 when the task fails
+        tmp_bin_file="${bin_file}.tmp"
+        bin_result=$("$JCMD" -classpath "$CLASSPATH" moa.DoTask "WriteStreamToBinaryFile -s (ArffFileStream -f $arff_file) -f $tmp_bin_file")
+        if [[ $? -eq 0 && "$bin_result" == *"Stream written to binary file"* ]]; then
+          mv "$tmp_bin_file" "$bin_file"
+        else
+          echo "Writing $bin_file failed, reading $arff_file instead"
+          rm -f "$tmp_bin_file"
+        fi
+      fi
+      if [ -f "$bin_file" ]; then
+        stream="-s (BinaryFileStream -f $bin_file)"
+      fi
+    fi
+
     warmup_instances=$((total_number_of_instances /100))
     if [ $use_10_percent_sample_frequency -eq 1 ]; then
       sample_frequency=$((warmup_instances * 10))
@@ -0,0 +1,157 @@
+/*
+ *    BoostingTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.henrygouk.sgt.SquaredError;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.streams.generators.RandomTreeGenerator;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that the execution options of Boosting do not change the model.
+ */
+public class BoostingTest {
+
+	private static final int INSTANCES = 2000;
+
+	private static RandomTreeGenerator createStream() {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static Boosting createBoosting(RandomTreeGenerator stream, String options) {
+		Boosting boosting = new Boosting();
+		boosting.getOptions().setViaCLIString(options);
+		boosting.setModelContext(stream.getHeader());
+		boosting.prepareForUse();
+		return boosting;
+	}
+
+	/**
+	 * Scores every instance with both models before training them on it, as the prequential evaluation does, and
+	 * checks that the votes are the same up to delta and that the raw scores of the live models are the same.
+	 */
+	private static void assertSamePredictions(String expectedOptions, String actualOptions, double delta) {
+		RandomTreeGenerator stream = createStream();
+		Boosting expected = createBoosting(stream, expectedOptions);
+		Boosting actual = createBoosting(stream, actualOptions);
+		try {
+			for (int i = 0; i < INSTANCES; i++) {
+				Instance inst = stream.nextInstance().getData();
+				assertArrayEquals("instance " + i, expected.getVotesForInstance(inst), actual.getVotesForInstance(inst), delta);
+				assertArrayEquals("instance " + i, expected.getRawScoreForInstance(inst).getArrayCopy(),
+						actual.getRawScoreForInstance(inst).getArrayCopy(), 0.0);
+				expected.trainOnInstance(inst);
+				actual.trainOnInstance(inst);
+			}
+		} finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+	@Test
+	public void testPipelinedTrainingMatchesSequential() {
+		assertSamePredictions("-s 8 -j 0", "-s 8 -j 3 -P -Q 16", 0.0);
+	}
+
+	/**
+	 * The shared discretizer keeps the warm start and trains the stages on it once the bins are fixed, so that they
+	 * learn what stages replaying their own warm start learn.
+	 */
+	@Test
+	public void testSharedDiscretizationReplaysTheWarmStart() {
+		assertSamePredictions("-s 8 -j 0 -l (trees.StreamingGradientTreePredictor -R)", "-s 8 -j 0 -A", 0.0);
+		assertSamePredictions("-s 8 -j 0 -A", "-s 8 -j 3 -P -Q 16 -A", 0.0);
+	}
+
+	@Test
+	public void testCompiledModelMatchesLiveModel() {
+		// recompiled after every instance, so that both predict with the same trees
+		assertSamePredictions("-s 8 -j 0", "-s 8 -j 0 -F 1", 1e-12);
+	}
+
+	/**
+	 * addStageScoreToDerivatives updates the squared loss derivatives of the raw score of the stages before a stage
+	 * to those of the raw score including it, which is what computing them again gives.
+	 */
+	@Test
+	public void testIncrementalDerivativesMatchRecomputedOnes() {
+		Random random = new Random(1);
+		SquaredError objective = new SquaredError(true);
+		for (boolean negativeResidual : new boolean[] {false, true}) {
+			Boosting boosting = new Boosting();
+			boosting.learningRateOption.setValue(0.0125);
+			boosting.computeNegativeResidual.setValue(negativeResidual);
+			double learningRate = boosting.learningRateOption.getValue();
+			for (int t = 0; t < 100; t++) {
+				double[] groundTruth = {random.nextGaussian() * 10.0};
+				double[] rawScore = {random.nextGaussian() * 10.0};
+				double[] stageScore = {random.nextGaussian() * 10.0};
+
+				double[] gradients = new double[1];
+				double[] hessians = new double[1];
+				objective.computeDerivatives(groundTruth, rawScore, negativeResidual, false, gradients, hessians);
+				boosting.addStageScoreToDerivatives(stageScore, gradients, hessians);
+
+				double[] expectedGradients = new double[1];
+				double[] expectedHessians = new double[1];
+				objective.computeDerivatives(groundTruth, new double[] {rawScore[0] + learningRate * stageScore[0]},
+						negativeResidual, false, expectedGradients, expectedHessians);
+
+				assertArrayEquals(expectedGradients, gradients, 1e-9);
+				assertArrayEquals(expectedHessians, hessians, 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testCloseUnregistersMBean() throws MalformedObjectNameException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pattern = new ObjectName("moa:type=Boosting,*");
+		int registered = server.queryNames(pattern, null).size();
+
+		RandomTreeGenerator stream = createStream();
+		Boosting boosting = createBoosting(stream, "-s 4 -j 0 -J");
+		for (int i = 0; i < 100; i++) {
+			boosting.trainOnInstance(stream.nextInstance().getData());
+		}
+		assertEquals(registered + 1, server.queryNames(pattern, null).size());
+
+		// copies are not registered, closing one leaves the MBean of the original
+		Classifier copy = boosting.copy();
+		copy.trainOnInstance(stream.nextInstance().getData());
+		((Boosting) copy).close();
+		assertEquals(registered + 1, server.queryNames(pattern, null).size());
+
+		boosting.close();
+		assertEquals(registered, server.queryNames(pattern, null).size());
+	}
+}
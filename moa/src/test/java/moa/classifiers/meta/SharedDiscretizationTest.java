@@ -0,0 +1,126 @@
+/*
+ *    SharedDiscretizationTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.henrygouk.sgt.FeatureVector;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.sgt.AttributeDiscretizer;
+import moa.streams.ArffFileStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests that sparse rows read from an ARFF file are binned sparsely, into the same bins as their dense copies.
+ */
+public class SharedDiscretizationTest {
+
+	private static final int WARM_START = 20;
+
+	@Test
+	public void testSparseRowsMatchDenseRows() {
+		ArffFileStream stream = new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/small_sparse.arff").getPath(), -1);
+		stream.prepareForUse();
+		Instance first = stream.nextInstance().getData();
+
+		ArrayList<Integer> subspace = new ArrayList<>(Arrays.asList(4, 1, 3));
+		SubspaceProjection[] stages = {new SubspaceProjection(first, subspace, false, false)};
+		SharedDiscretization discretization = new SharedDiscretization(first, stages, false, new AttributeDiscretizer(4), WARM_START);
+
+		int checked = 0;
+		for (Instance inst = first; inst != null; inst = stream.hasMoreInstances() ? stream.nextInstance().getData() : null) {
+			FeatureVector features = discretization.encodeForTraining(inst, new double[] {inst.classValue()});
+			if (features == null) {
+				continue;
+			}
+			Instance dense = new DenseInstance(inst.weight(), inst.toDoubleArray());
+			dense.setDataset(inst.dataset());
+			FeatureVector denseFeatures = discretization.encode(dense);
+
+			assertTrue(features.isSparse());
+			assertFalse(denseFeatures.isSparse());
+			assertArrayEquals(denseFeatures.bins, toDense(discretization, features, -1));
+			assertArrayEquals(discretization.getStageFeatures(denseFeatures, 0).bins,
+					toDense(discretization, discretization.getStageFeatures(features, 0), 0));
+			checked++;
+		}
+		assertTrue(checked > 0);
+	}
+
+	@Test
+	public void testWarmStartIsReplayedOnceTheBinsAreFixed() {
+		ArffFileStream stream = new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/small_sparse.arff").getPath(), -1);
+		stream.prepareForUse();
+		Instance first = stream.nextInstance().getData();
+		ArrayList<Integer> subspace = new ArrayList<>(Arrays.asList(4, 1, 3));
+		SubspaceProjection[] stages = {new SubspaceProjection(first, subspace, false, false)};
+		SharedDiscretization discretization = new SharedDiscretization(first, stages, false, new AttributeDiscretizer(4), WARM_START);
+
+		ArrayList<Instance> warmStart = new ArrayList<>();
+		ArrayList<Instance> replayed = new ArrayList<>();
+		SharedDiscretization.WarmStartTrainer trainer = (inst, groundTruth, features) -> {
+			assertEquals(inst.classValue(), groundTruth[0], 0.0);
+			assertArrayEquals(discretization.encode(inst).bins, features.bins);
+			replayed.add(inst);
+		};
+		Instance inst = first;
+		for (int i = 0; i < WARM_START; i++) {
+			assertNull(discretization.encodeForTraining(inst, new double[] {inst.classValue()}));
+			discretization.replayWarmStart(trainer);
+			warmStart.add(inst);
+			inst = stream.nextInstance().getData();
+		}
+		assertTrue(replayed.isEmpty());
+
+		discretization.encodeForTraining(inst, new double[] {inst.classValue()});
+		discretization.replayWarmStart(trainer);
+		assertEquals(warmStart.size(), replayed.size());
+		for (int i = 0; i < warmStart.size(); i++) {
+			assertArrayEquals(warmStart.get(i).toDoubleArray(), replayed.get(i).toDoubleArray(), 0.0);
+		}
+		// only once
+		discretization.replayWarmStart(trainer);
+		assertEquals(warmStart.size(), replayed.size());
+	}
+
+	/**
+	 * The bins of a sparse vector of the shared features, or of the features of stage m when m is not -1, with the
+	 * bin of zero for the features it does not hold.
+	 */
+	private static int[] toDense(SharedDiscretization discretization, FeatureVector features, int m) {
+		int numFeatures = m == -1 ? discretization.getProjection().numValues() - 1 : discretization.views[m].length;
+		int[] bins = new int[numFeatures];
+		for (int f = 0; f < numFeatures; f++) {
+			int shared = m == -1 ? f : discretization.getSharedIndex(m, f);
+			bins[f] = discretization.getDiscretizer().getFeature(shared, 0.0);
+		}
+		for (int k = 0; k < features.indices.length; k++) {
+			bins[features.indices[k]] = features.bins[k];
+		}
+		return bins;
+	}
+}
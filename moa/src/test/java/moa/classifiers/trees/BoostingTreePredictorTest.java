@@ -0,0 +1,107 @@
+/*
+ *    BoostingTreePredictorTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.trees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.classifiers.core.splitcriteria.VarianceReductionSplitCriterion;
+import moa.streams.ArffFileStream;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that training a tree on an instance with a hessian ceiling gives the same tree as training it on the
+ * instance once per copy.
+ */
+public class BoostingTreePredictorTest {
+
+	private static final int MULTIPLE_ITERATION_BY_HESSIAN_CEILING = 4;
+
+	private static HoeffdingRegressionTree createTree(ArffFileStream stream) {
+		HoeffdingRegressionTree tree = new HoeffdingRegressionTree();
+		tree.getOptions().setViaCLIString("-n HoeffdingNumericAttributeClassObserver -d HoeffdingNominalAttributeClassObserver"
+				+ " -s VarianceReductionSplitCriterion -g 50");
+		tree.setModelContext(stream.getHeader());
+		tree.prepareForUse();
+		return tree;
+	}
+
+	/** Checks that the leaves of both trees would suggest the same splits. */
+	private static void assertSameSplitSuggestions(HoeffdingRegressionTree expected, HoeffdingRegressionTree actual) {
+		HoeffdingTree.FoundNode[] expectedLeaves = expected.findLearningNodes();
+		HoeffdingTree.FoundNode[] actualLeaves = actual.findLearningNodes();
+		assertEquals(expectedLeaves.length, actualLeaves.length);
+		SplitCriterion criterion = new VarianceReductionSplitCriterion();
+		for (int i = 0; i < expectedLeaves.length; i++) {
+			if (!(expectedLeaves[i].node instanceof HoeffdingTree.ActiveLearningNode)) {
+				continue;
+			}
+			AttributeSplitSuggestion[] expectedSuggestions = ((HoeffdingTree.ActiveLearningNode) expectedLeaves[i].node)
+					.getBestSplitSuggestions(criterion, expected);
+			AttributeSplitSuggestion[] actualSuggestions = ((HoeffdingTree.ActiveLearningNode) actualLeaves[i].node)
+					.getBestSplitSuggestions(criterion, actual);
+			assertEquals(expectedSuggestions.length, actualSuggestions.length);
+			for (int j = 0; j < expectedSuggestions.length; j++) {
+				assertEquals(expectedSuggestions[j].merit, actualSuggestions[j].merit, 0.0);
+				if (expectedSuggestions[j].splitTest != null) {
+					assertArrayEquals(expectedSuggestions[j].splitTest.getAttsTestDependsOn(),
+							actualSuggestions[j].splitTest.getAttsTestDependsOn());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testHessianCeilingMatchesRepeatedTraining() {
+		ArffFileStream stream = new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/regression.arff").getPath(), -1);
+		stream.prepareForUse();
+		HoeffdingRegressionTree expected = createTree(stream);
+		HoeffdingRegressionTree actual = createTree(stream);
+		Random random = new Random(1);
+		int numInstances = 0;
+		while (stream.hasMoreInstances()) {
+			Instance inst = stream.nextInstance().getData();
+			assertArrayEquals("instance " + numInstances, expected.getVotesForInstance(inst), actual.getVotesForInstance(inst), 0.0);
+
+			double hessian = random.nextDouble();
+			int copies = (int) Math.ceil(hessian * MULTIPLE_ITERATION_BY_HESSIAN_CEILING);
+			for (int i = 0; i < copies; i++) {
+				expected.trainOnInstance(inst);
+			}
+			TreeCommittee.modelUpdate(actual, inst, MULTIPLE_ITERATION_BY_HESSIAN_CEILING, hessian);
+
+			if (++numInstances % 100 == 0) {
+				assertSameSplitSuggestions(expected, actual);
+			}
+		}
+		assertSameSplitSuggestions(expected, actual);
+		assertTrue(expected.measureTreeDepth() > 1);
+		StringBuilder expectedTree = new StringBuilder();
+		StringBuilder actualTree = new StringBuilder();
+		expected.getModelDescription(expectedTree, 0);
+		actual.getModelDescription(actualTree, 0);
+		assertEquals(expectedTree.toString(), actualTree.toString());
+	}
+}
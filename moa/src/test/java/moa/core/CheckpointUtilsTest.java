@@ -0,0 +1,86 @@
+/*
+ *    CheckpointUtilsTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.classifiers.meta.Boosting;
+import moa.streams.ArffFileStream;
+import moa.streams.InstanceStream;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+/**
+ * Tests that a learner read back from a checkpoint predicts and learns like the one that was written.
+ */
+public class CheckpointUtilsTest {
+
+	private static final int INSTANCES = 1000;
+
+	private static Classifier roundTrip(Classifier learner) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CheckpointUtils.write(new CheckpointOutput(Channels.newChannel(bytes)), learner);
+		return CheckpointUtils.read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	 * Trains a Boosting model on the first instances of stream, checkpoints it, and checks that the original and
+	 * the restored model give the same votes on the next instances while both keep training.
+	 */
+	private static void assertSamePredictionsAfterRoundTrip(InstanceStream stream, String options) throws IOException {
+		Boosting learner = new Boosting();
+		learner.getOptions().setViaCLIString(options);
+		learner.setModelContext(stream.getHeader());
+		learner.prepareForUse();
+		for (int i = 0; i < INSTANCES && stream.hasMoreInstances(); i++) {
+			Instance inst = stream.nextInstance().getData();
+			learner.getVotesForInstance(inst);
+			learner.trainOnInstance(inst);
+		}
+
+		Classifier restored = roundTrip(learner);
+		for (int i = 0; i < INSTANCES && stream.hasMoreInstances(); i++) {
+			Instance inst = stream.nextInstance().getData();
+			assertArrayEquals("instance " + i, learner.getVotesForInstance(inst), restored.getVotesForInstance(inst), 0.0);
+			learner.trainOnInstance(inst);
+			restored.trainOnInstance(inst);
+		}
+	}
+
+	@Test
+	public void testStreamingGradientTreeStages() throws IOException {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.prepareForUse();
+		assertSamePredictionsAfterRoundTrip(stream, "-s 8 -j 0 -p -u 200");
+	}
+
+	@Test
+	public void testFIMTDDStages() throws IOException {
+		ArffFileStream stream = new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/regression.arff").getPath(), -1);
+		stream.prepareForUse();
+		assertSamePredictionsAfterRoundTrip(stream, "-s 4 -j 0 -w -l (trees.BoostingTreePredictor -l (trees.FIMTDD -e -p))");
+	}
+}
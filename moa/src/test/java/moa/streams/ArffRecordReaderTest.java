@@ -0,0 +1,178 @@
+/*
+ *    ArffRecordReaderTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.junit.Test;
+
+/**
+ * Tests that ArffRecordReader tokenizes rows as the generic ARFF reader does.
+ */
+public class ArffRecordReaderTest {
+
+	private static final String HEADER = "% a comment before the header\n"
+			+ "@relation test\n"
+			+ "@attribute x numeric\n"
+			+ "@attribute y numeric\n"
+			+ "@attribute colour {red, 'light blue', \"dark green\"}\n"
+			+ "@attribute class {a, b}\n"
+			+ "@data\n";
+
+	private static File createArff(String data) throws IOException {
+		File file = File.createTempFile("ArffRecordReaderTest", ".arff");
+		file.deleteOnExit();
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), ArffRecordReader.CHARSET)) {
+			writer.write(HEADER);
+			writer.write(data);
+		}
+		return file;
+	}
+
+	private static Instances readHeader(File file) throws IOException {
+		try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ArffRecordReader.CHARSET))) {
+			Instances header = new Instances(reader, 1, -1);
+			header.setClassIndex(header.numAttributes() - 1);
+			return header;
+		}
+	}
+
+	/** Reads every row, the values of the attributes in order. */
+	private static double[][] readRows(File file, int numRows) throws IOException {
+		Instances header = readHeader(file);
+		ArffRecordReader reader = new ArffRecordReader(file, header);
+		try {
+			double[][] rows = new double[numRows][];
+			for (int i = 0; i < numRows; i++) {
+				Instance inst = reader.readInstance();
+				inst.setDataset(header);
+				rows[i] = new double[header.numAttributes()];
+				for (int j = 0; j < rows[i].length; j++) {
+					rows[i][j] = inst.value(j);
+				}
+			}
+			assertNull(reader.readInstance());
+			return rows;
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testQuotedNominalsAndMissingValues() throws IOException {
+		double[][] rows = readRows(createArff("1,2,red,a\n"
+				+ "3,4,'light blue',b\n"
+				+ "5, 6, \"dark green\", a\n"
+				+ "?,7,?,b\n"), 4);
+		assertArrayEquals(new double[] {1, 2, 0, 0}, rows[0], 0.0);
+		assertArrayEquals(new double[] {3, 4, 1, 1}, rows[1], 0.0);
+		assertArrayEquals(new double[] {5, 6, 2, 0}, rows[2], 0.0);
+		assertArrayEquals(new double[] {Double.NaN, 7, Double.NaN, 1}, rows[3], 0.0);
+	}
+
+	@Test
+	public void testSparseRows() throws IOException {
+		double[][] rows = readRows(createArff("{0 1.5, 2 'light blue', 3 b}\n"
+				+ "{1 -2}\n"
+				+ "{}\n"), 3);
+		assertArrayEquals(new double[] {1.5, 0, 1, 1}, rows[0], 0.0);
+		assertArrayEquals(new double[] {0, -2, 0, 0}, rows[1], 0.0);
+		assertArrayEquals(new double[] {0, 0, 0, 0}, rows[2], 0.0);
+	}
+
+	@Test
+	public void testCommentsAndLineEndings() throws IOException {
+		double[][] rows = readRows(createArff("% a comment line\n"
+				+ "1,2,red,a % a comment after a row\n"
+				+ "\n"
+				+ "3,4,red,b\r\n"
+				+ "5,6,red,a\r"
+				+ "7,8,red,b"), 4);
+		for (int i = 0; i < rows.length; i++) {
+			assertEquals(2 * i + 1, rows[i][0], 0.0);
+			assertEquals(2 * i + 2, rows[i][1], 0.0);
+		}
+	}
+
+	@Test
+	public void testNumbersMatchDoubleParseDouble() throws IOException {
+		String[] numbers = {"0", "-0", "+1", "0.1", ".5", "5.", "-3.14159", "123456789012345",
+				"1234567890123456789", "0.30000000000000004", "1e-5", "-2.5E+3", "6.02214076e23",
+				"4.9E-324", "1.7976931348623157E308", "0.000000000000000000000001", "NaN", "Infinity"};
+		StringBuilder data = new StringBuilder();
+		for (String number : numbers) {
+			data.append(number).append(",0,red,a\n");
+		}
+		double[][] rows = readRows(createArff(data.toString()), numbers.length);
+		for (int i = 0; i < numbers.length; i++) {
+			// compares the bits, so that -0 and the last digit count
+			assertEquals(numbers[i], Double.doubleToRawLongBits(Double.parseDouble(numbers[i])),
+					Double.doubleToRawLongBits(rows[i][0]));
+		}
+	}
+
+	@Test
+	public void testReadAheadMatchesGenericReader() {
+		String path = ClassLoader.getSystemResource("moa/classifiers/data/small_sparse.arff").getPath();
+		ArffFileStream expected = new ArffFileStream(path, -1);
+		ArffFileStream actual = new ArffFileStream();
+		actual.arffFileOption.setValue(path);
+		actual.readAheadOption.setValue(16);
+		actual.prepareForUse();
+		try {
+			while (expected.hasMoreInstances()) {
+				assertArrayEquals(expected.nextInstance().getData().toDoubleArray(),
+						actual.nextInstance().getData().toDoubleArray(), 0.0);
+			}
+			assertFalse(actual.hasMoreInstances());
+		} finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+	@Test
+	public void testCloseStopsParser() {
+		ArffFileStream stream = new ArffFileStream();
+		stream.arffFileOption.setValue(ClassLoader.getSystemResource("moa/classifiers/data/small_sparse.arff").getPath());
+		stream.readAheadOption.setValue(16);
+		stream.prepareForUse();
+		stream.nextInstance();
+		// blocked on the full queue of parsed instances
+		Thread parser = stream.parserThread;
+		stream.close();
+		assertFalse(parser.isAlive());
+		assertFalse(stream.hasMoreInstances());
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ *    BinaryFileStreamTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.tasks.WriteStreamToBinaryFile;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests that an ARFF file written to a binary instance file is read back unchanged.
+ */
+public class BinaryFileStreamTest {
+
+	/** Smaller than a dense row of regression.arff, so that every row is read from a window of its own. */
+	private static final int SMALL_WINDOW_SIZE = 64;
+
+	private static String getResource(String name) {
+		return ClassLoader.getSystemResource("moa/classifiers/data/" + name).getPath();
+	}
+
+	private static File writeBinaryFile(String arffFile, String rowLayout) throws IOException {
+		File binaryFile = File.createTempFile("BinaryFileStreamTest", ".bin");
+		binaryFile.deleteOnExit();
+		WriteStreamToBinaryFile task = new WriteStreamToBinaryFile();
+		task.getOptions().setViaCLIString("-s (ArffFileStream -f " + arffFile + ") -f " + binaryFile + " -r " + rowLayout);
+		task.prepareForUse();
+		task.doTask();
+		return binaryFile;
+	}
+
+	/**
+	 * Reads the ARFF file and the binary file written from it side by side, the binary file mapped windowSize
+	 * bytes at a time.
+	 */
+	private static void assertSameInstances(String arffFile, String rowLayout, boolean sparse, int windowSize)
+			throws IOException {
+		ArffFileStream expected = new ArffFileStream(arffFile, -1);
+		BinaryFileStream actual = new BinaryFileStream();
+		actual.binaryFileOption.setValue(writeBinaryFile(arffFile, rowLayout).getPath());
+		actual.windowSize = windowSize;
+		actual.prepareForUse();
+		try {
+			assertEquals(expected.getHeader().numAttributes(), actual.getHeader().numAttributes());
+			assertEquals(expected.getHeader().classIndex(), actual.getHeader().classIndex());
+			int numInstances = 0;
+			while (expected.hasMoreInstances()) {
+				assertTrue(actual.hasMoreInstances());
+				Instance expectedInst = expected.nextInstance().getData();
+				Instance actualInst = actual.nextInstance().getData();
+				assertEquals(expectedInst.weight(), actualInst.weight(), 0.0);
+				assertArrayEquals("instance " + numInstances, expectedInst.toDoubleArray(), actualInst.toDoubleArray(), 0.0);
+				assertEquals(sparse, actualInst.numValues() < actualInst.numAttributes());
+				numInstances++;
+			}
+			assertFalse(actual.hasMoreInstances());
+			assertTrue(numInstances > 0);
+		} finally {
+			expected.close();
+		}
+	}
+
+	@Test
+	public void testDenseRows() throws IOException {
+		assertSameInstances(getResource("regression.arff"), "Dense", false, BinaryFileStream.WINDOW_SIZE);
+	}
+
+	@Test
+	public void testSparseRows() throws IOException {
+		assertSameInstances(getResource("small_sparse.arff"), "Auto", true, BinaryFileStream.WINDOW_SIZE);
+	}
+
+	@Test
+	public void testRowsAcrossWindows() throws IOException {
+		assertSameInstances(getResource("regression.arff"), "Dense", false, SMALL_WINDOW_SIZE);
+		assertSameInstances(getResource("small_sparse.arff"), "Sparse", true, SMALL_WINDOW_SIZE);
+	}
+
+	@Test
+	public void testDescription() throws IOException {
+		BinaryFileStream stream = new BinaryFileStream(writeBinaryFile(getResource("small_sparse.arff"), "Auto").getPath());
+		stream.nextInstance();
+		StringBuilder sb = new StringBuilder();
+		stream.getDescription(sb, 0);
+		assertTrue(sb.toString(), sb.toString().contains("Layout: sparse"));
+		assertTrue(sb.toString(), sb.toString().contains("Instances: 1 of 60 read"));
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ *    EvaluatePrequentialCVTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import moa.evaluation.preview.LearningCurve;
+
+import org.junit.Test;
+
+/**
+ * Tests that running the folds in parallel does not change the evaluation.
+ */
+public class EvaluatePrequentialCVTest {
+
+	private static final String TASK = "-l trees.HoeffdingTree -s generators.RandomTreeGenerator -i 5000 -f 1000 -w 5";
+
+	private static LearningCurve evaluate(String options) {
+		EvaluatePrequentialCV task = new EvaluatePrequentialCV();
+		task.getOptions().setViaCLIString(options);
+		task.prepareForUse();
+		return (LearningCurve) task.doTask();
+	}
+
+	/** Compares the accuracy and kappa columns of every entry, the timing columns depend on the threads. */
+	private static void assertSameEvaluation(String options) {
+		LearningCurve sequential = evaluate(options + " -j 1");
+		LearningCurve parallel = evaluate(options + " -j 4 -b 64");
+		assertEquals(sequential.numEntries(), parallel.numEntries());
+		assertTrue(sequential.numEntries() > 0);
+		int numCompared = 0;
+		for (int m = 0; m < sequential.getMeasurementNameCount(); m++) {
+			String name = sequential.getMeasurementName(m);
+			if (!name.contains("classifications correct") && !name.contains("Kappa")) {
+				continue;
+			}
+			assertEquals(name, parallel.getMeasurementName(m));
+			for (int i = 0; i < sequential.numEntries(); i++) {
+				assertEquals(name + " at entry " + i, sequential.getMeasurement(i, m), parallel.getMeasurement(i, m), 0.0);
+			}
+			numCompared++;
+		}
+		assertTrue(numCompared > 0);
+	}
+
+	@Test
+	public void testCrossValidation() {
+		assertSameEvaluation(TASK + " -a Cross-Validation");
+	}
+
+	@Test
+	public void testBootstrapValidation() {
+		assertSameEvaluation(TASK + " -a Bootstrap-Validation");
+	}
+
+	@Test
+	public void testSplitValidation() {
+		assertSameEvaluation(TASK + " -a Split-Validation");
+	}
+}